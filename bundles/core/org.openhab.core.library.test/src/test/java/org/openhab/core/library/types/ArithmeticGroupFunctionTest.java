@@ -17,6 +17,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.openhab.core.items.GenericItem;
 import org.openhab.core.items.GroupFunction;
+import org.openhab.core.items.GroupStateAccumulator;
+import org.openhab.core.items.IncrementalGroupFunction;
 import org.openhab.core.items.Item;
 import org.openhab.core.library.items.DimmerItem;
 import org.openhab.core.library.items.SwitchItem;
@@ -205,6 +207,58 @@ public class ArithmeticGroupFunctionTest {
 		Assert.assertEquals(new DecimalType("234.95"), state);
 	}
 	
+	@Test
+	public void testAccumulatorsMatchCalculation() {
+		TestItem[] testItems = {
+			new TestItem("TestItem1", new DecimalType("23.54")),
+			new TestItem("TestItem2", UnDefType.NULL),
+			new TestItem("TestItem3", new DecimalType("89")),
+			new TestItem("TestItem4", OnOffType.ON),
+			new TestItem("TestItem5", new DecimalType("-122.4"))
+		};
+		State[][] updates = {
+			{ new DecimalType("7"), OnOffType.OFF, new DecimalType("89"), OnOffType.ON, UnDefType.UNDEF },
+			{ new DecimalType("7.25"), new DecimalType("100"), OnOffType.ON, OnOffType.ON, new DecimalType("3") },
+			{ OnOffType.ON, OnOffType.ON, OnOffType.ON, OnOffType.ON, OnOffType.ON }
+		};
+		IncrementalGroupFunction[] functions = {
+			new ArithmeticGroupFunction.And(OnOffType.ON, OnOffType.OFF),
+			new ArithmeticGroupFunction.Or(OnOffType.ON, OnOffType.OFF),
+			new ArithmeticGroupFunction.NAnd(OnOffType.ON, OnOffType.OFF),
+			new ArithmeticGroupFunction.NOr(OnOffType.ON, OnOffType.OFF),
+			new ArithmeticGroupFunction.Sum(),
+			new ArithmeticGroupFunction.Avg(),
+			new ArithmeticGroupFunction.Min(),
+			new ArithmeticGroupFunction.Max()
+		};
+		
+		for(IncrementalGroupFunction function : functions) {
+			List<Item> members = new ArrayList<Item>();
+			GroupStateAccumulator<?> accumulator = function.createAccumulator();
+			for(TestItem item : testItems) {
+				item.setState(UnDefType.NULL);
+			}
+			for(TestItem item : testItems) {
+				members.add(item);
+				assertSameState(function.calculate(members), accumulator.add(item));
+			}
+			for(State[] states : updates) {
+				for(int i = 0; i < testItems.length; i++) {
+					testItems[i].setState(states[i]);
+					assertSameState(function.calculate(members), accumulator.update(testItems[i]));
+				}
+			}
+			members.remove(testItems[2]);
+			assertSameState(function.calculate(members), accumulator.remove(testItems[2]));
+		}
+	}
+	
+	private static void assertSameState(State expected, State actual) {
+		Assert.assertEquals(expected, actual);
+		// decimal states must also have the same scale
+		Assert.assertEquals(expected.toString(), actual.toString());
+	}
+	
 	class TestItem extends GenericItem {
 
 		public TestItem(String name, State state) {
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.library.types;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.State;
+import org.openhab.core.types.TypeParser;
+import org.openhab.core.types.TypeRegistry;
+import org.openhab.core.types.UnDefType;
+
+/**
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ */
+public class TypeRegistryTest {
+
+	@Test
+	public void testIsAccepted() {
+		List<Class<? extends State>> acceptedTypes = new ArrayList<Class<? extends State>>();
+		acceptedTypes.add(OnOffType.class);
+		acceptedTypes.add(DecimalType.class);
+		acceptedTypes.add(UnDefType.class);
+		
+		assertTrue(TypeRegistry.isAccepted(acceptedTypes, OnOffType.ON));
+		assertTrue(TypeRegistry.isAccepted(acceptedTypes, UnDefType.UNDEF));
+		assertTrue(TypeRegistry.isAccepted(acceptedTypes, new DecimalType(5)));
+		// subclasses of accepted types are accepted as well
+		assertTrue(TypeRegistry.isAccepted(acceptedTypes, new PercentType(50)));
+		assertFalse(TypeRegistry.isAccepted(acceptedTypes, new StringType("ON")));
+		assertFalse(TypeRegistry.isAccepted(acceptedTypes, OpenClosedType.OPEN));
+	}
+	
+	@Test
+	public void testValueOf() {
+		assertEquals(OnOffType.ON, TypeRegistry.valueOf(OnOffType.class, "ON"));
+		assertNull(TypeRegistry.valueOf(OnOffType.class, "on"));
+		assertNull(TypeRegistry.valueOf(OnOffType.class, null));
+		assertEquals(new DecimalType("22.5"), TypeRegistry.valueOf(DecimalType.class, "22.5"));
+		assertNull(TypeRegistry.valueOf(DecimalType.class, "abc"));
+		assertEquals(new StringType("abc"), TypeRegistry.valueOf(StringType.class, "abc"));
+	}
+	
+	@Test
+	public void testTypeParser() {
+		List<Class<? extends State>> stateTypes = new ArrayList<Class<? extends State>>();
+		stateTypes.add(OnOffType.class);
+		stateTypes.add(DecimalType.class);
+		stateTypes.add(StringType.class);
+		assertEquals(OnOffType.ON, TypeParser.parseState(stateTypes, "ON"));
+		assertEquals(new DecimalType(21), TypeParser.parseState(stateTypes, "21"));
+		assertEquals(new StringType("abc"), TypeParser.parseState(stateTypes, "abc"));
+		
+		List<Class<? extends Command>> commandTypes = new ArrayList<Class<? extends Command>>();
+		commandTypes.add(UpDownType.class);
+		commandTypes.add(StopMoveType.class);
+		assertEquals(StopMoveType.STOP, TypeParser.parseCommand(commandTypes, "STOP"));
+		assertNull(TypeParser.parseCommand(commandTypes, "ON"));
+		assertNull(TypeParser.parseCommand(commandTypes, null));
+	}
+
+}
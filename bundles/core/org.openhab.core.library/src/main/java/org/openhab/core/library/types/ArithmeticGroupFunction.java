@@ -11,8 +11,11 @@ package org.openhab.core.library.types;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.List;
+import java.util.TreeMap;
 
 import org.openhab.core.items.GroupFunction;
+import org.openhab.core.items.GroupStateAccumulator;
+import org.openhab.core.items.IncrementalGroupFunction;
 import org.openhab.core.items.Item;
 import org.openhab.core.types.State;
 import org.openhab.core.types.UnDefType;
@@ -38,7 +41,7 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 	 * @since 0.7.0
 	 *
 	 */
-	static class And implements GroupFunction {
+	static class And implements IncrementalGroupFunction {
 		
 		protected final State activeState;
 		protected final State passiveState;
@@ -100,6 +103,28 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 			return count;
 			
 		}
+
+		/**
+		 * @{inheritDoc
+		 */
+		public GroupStateAccumulator<?> createAccumulator() {
+			return new ActiveStateAccumulator(activeState) {
+				protected State calculateState() {
+					return getGroupState(getActiveCount(), getCount());
+				}
+			};
+		}
+		
+		/**
+		 * Determines the group state from the number of items in the 'activeState'.
+		 * 
+		 * @param activeCount the number of items in the 'activeState'
+		 * @param itemCount the number of all items
+		 * @return the group state
+		 */
+		protected State getGroupState(int activeCount, int itemCount) {
+			return itemCount > 0 && activeCount == itemCount ? activeState : passiveState;
+		}
 	}
 
 	/**
@@ -113,7 +138,7 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 	 * @since 0.7.0
 	 *
 	 */
-	static class Or implements GroupFunction {
+	static class Or implements IncrementalGroupFunction {
 
 		protected final State activeState;
 		protected final State passiveState;
@@ -167,6 +192,28 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 			}
 			return count;
 		}
+
+		/**
+		 * @{inheritDoc
+		 */
+		public GroupStateAccumulator<?> createAccumulator() {
+			return new ActiveStateAccumulator(activeState) {
+				protected State calculateState() {
+					return getGroupState(getActiveCount(), getCount());
+				}
+			};
+		}
+		
+		/**
+		 * Determines the group state from the number of items in the 'activeState'.
+		 * 
+		 * @param activeCount the number of items in the 'activeState'
+		 * @param itemCount the number of all items
+		 * @return the group state
+		 */
+		protected State getGroupState(int activeCount, int itemCount) {
+			return activeCount > 0 ? activeState : passiveState;
+		}
 	}
 	
 	/**
@@ -191,6 +238,12 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 			return notResult;
 		}
 		
+		@Override
+		protected State getGroupState(int activeCount, int itemCount) {
+			State result = super.getGroupState(activeCount, itemCount);
+			return result.equals(activeState) ? passiveState : activeState;
+		}
+		
 	}
 
 	/**
@@ -215,6 +268,12 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 			return notResult;
 		}
 		
+		@Override
+		protected State getGroupState(int activeCount, int itemCount) {
+			State result = super.getGroupState(activeCount, itemCount);
+			return result.equals(activeState) ? passiveState : activeState;
+		}
+		
 	}
 	
 	/**
@@ -224,7 +283,7 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 	 * @since 0.7.0
 	 *
 	 */
-	static class Avg implements GroupFunction {
+	static class Avg implements IncrementalGroupFunction {
 		
 		public Avg() {}
 
@@ -261,6 +320,21 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 				return null;
 			}
 		}
+
+		/**
+		 * @{inheritDoc
+		 */
+		public GroupStateAccumulator<?> createAccumulator() {
+			return new SumAccumulator() {
+				protected State calculateState() {
+					if(getNumberCount()>0) {
+						return new DecimalType(getSum().divide(new BigDecimal(getNumberCount()), RoundingMode.HALF_UP));
+					} else {
+						return UnDefType.UNDEF;
+					}
+				}
+			};
+		}
 	}
 
 	/**
@@ -270,7 +344,7 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 	 * @since 1.1.0
 	 *
 	 */
-	static class Sum implements GroupFunction {
+	static class Sum implements IncrementalGroupFunction {
 		
 		public Sum() {}
 
@@ -301,6 +375,17 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 				return null;
 			}
 		}
+
+		/**
+		 * @{inheritDoc
+		 */
+		public GroupStateAccumulator<?> createAccumulator() {
+			return new SumAccumulator() {
+				protected State calculateState() {
+					return new DecimalType(getSum());
+				}
+			};
+		}
 	}
 	
 	/**
@@ -310,7 +395,7 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 	 * @since 0.7.0
 	 *
 	 */
-	static class Min implements GroupFunction {
+	static class Min implements IncrementalGroupFunction {
 		
 		public Min() {}
 
@@ -346,7 +431,18 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 				return null;
 			}
 		}
-}
+
+		/**
+		 * @{inheritDoc
+		 */
+		public GroupStateAccumulator<?> createAccumulator() {
+			return new ValueAccumulator() {
+				protected State calculateState() {
+					return getValues().isEmpty() ? UnDefType.UNDEF : new DecimalType(getValues().firstKey());
+				}
+			};
+		}
+	}
 
 	/**
 	 * This calculates the maximum value of all item states of decimal type.
@@ -355,7 +451,7 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 	 * @since 0.7.0
 	 *
 	 */
-	static class Max implements GroupFunction {
+	static class Max implements IncrementalGroupFunction {
 		
 		public Max() {}
 
@@ -391,7 +487,122 @@ public interface ArithmeticGroupFunction extends GroupFunction {
 				return null;
 			}
 		}
+
+		/**
+		 * @{inheritDoc
+		 */
+		public GroupStateAccumulator<?> createAccumulator() {
+			return new ValueAccumulator() {
+				protected State calculateState() {
+					return getValues().isEmpty() ? UnDefType.UNDEF : new DecimalType(getValues().lastKey());
+				}
+			};
+		}
+	}
+
+	/**
+	 * Counts the members which are in the 'activeState'.
+	 */
+	static abstract class ActiveStateAccumulator extends GroupStateAccumulator<Boolean> {
+
+		private final State activeState;
+		private int activeCount = 0;
+
+		ActiveStateAccumulator(State activeState) {
+			this.activeState = activeState;
+		}
+
+		protected Boolean getContribution(Item item) {
+			return activeState.equals(item.getState());
+		}
+
+		protected void addContribution(Boolean active) {
+			if(active) activeCount++;
+		}
+
+		protected void removeContribution(Boolean active) {
+			if(active) activeCount--;
+		}
+
+		protected int getActiveCount() {
+			return activeCount;
+		}
+	}
+
+	/**
+	 * Keeps the running sum of all member states of decimal type. The scale of the
+	 * sum is the same as if it was calculated from all members.
+	 */
+	static abstract class SumAccumulator extends GroupStateAccumulator<BigDecimal> {
+
+		private BigDecimal sum = BigDecimal.ZERO;
+		private int numberCount = 0;
+		// the number of values per scale, used to determine the scale of the sum
+		private final TreeMap<Integer, Integer> scales = new TreeMap<Integer, Integer>();
+
+		protected BigDecimal getContribution(Item item) {
+			DecimalType itemState = (DecimalType) item.getStateAs(DecimalType.class);
+			return itemState!=null ? itemState.toBigDecimal() : null;
+		}
+
+		protected void addContribution(BigDecimal value) {
+			if(value!=null) {
+				sum = sum.add(value);
+				numberCount++;
+				increment(scales, value.scale());
+			}
+		}
+
+		protected void removeContribution(BigDecimal value) {
+			if(value!=null) {
+				sum = sum.subtract(value);
+				numberCount--;
+				decrement(scales, value.scale());
+			}
+		}
+
+		/**
+		 * @return the number of members with a state of decimal type
+		 */
+		protected int getNumberCount() {
+			return numberCount;
+		}
+
+		protected BigDecimal getSum() {
+			int scale = scales.isEmpty() ? 0 : Math.max(0, scales.lastKey());
+			// the sum is exact, so changing the scale never requires rounding
+			return sum.setScale(scale);
+		}
 	}
-	
-	
+
+	/**
+	 * Keeps all member states of decimal type sorted, so that the minimum and 
+	 * the maximum are always known.
+	 */
+	static abstract class ValueAccumulator extends GroupStateAccumulator<BigDecimal> {
+
+		private final TreeMap<BigDecimal, Integer> values = new TreeMap<BigDecimal, Integer>();
+
+		protected BigDecimal getContribution(Item item) {
+			DecimalType itemState = (DecimalType) item.getStateAs(DecimalType.class);
+			return itemState!=null ? itemState.toBigDecimal() : null;
+		}
+
+		protected void addContribution(BigDecimal value) {
+			if(value!=null) {
+				increment(values, value);
+			}
+		}
+
+		protected void removeContribution(BigDecimal value) {
+			if(value!=null) {
+				decrement(values, value);
+			}
+		}
+
+		protected TreeMap<BigDecimal, Integer> getValues() {
+			return values;
+		}
+	}
+
 }
@@ -84,7 +84,13 @@ public class DecimalType extends Number implements PrimitiveType, State,
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + ((value == null) ? 0 : value.hashCode());
+		// equals() ignores the scale of the value (e.g. 5 equals 5.0), so the hash code must do so as well
+		if (value != null) {
+			long bits = Double.doubleToLongBits(value.doubleValue());
+			result = prime * result + (int) (bits ^ (bits >>> 32));
+		} else {
+			result = prime * result;
+		}
 		return result;
 	}
 
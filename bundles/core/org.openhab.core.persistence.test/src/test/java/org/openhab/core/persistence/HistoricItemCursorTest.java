@@ -0,0 +1,251 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+import org.openhab.core.items.Item;
+import org.openhab.core.persistence.FilterCriteria.Ordering;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.types.State;
+
+/**
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ */
+public class HistoricItemCursorTest {
+
+	@Test
+	public void testIsUnlimited() {
+		assertTrue(HistoricItemCursor.isUnlimited(new FilterCriteria()));
+		assertFalse(HistoricItemCursor.isUnlimited(new FilterCriteria().setPageSize(10)));
+		assertFalse(HistoricItemCursor.isUnlimited(new FilterCriteria().setPageNumber(1)));
+	}
+
+	@Test
+	public void testIteratesAllPages() {
+		PagingService service = new PagingService(25);
+		HistoricItemCursor cursor = new HistoricItemCursor(service, new FilterCriteria().setItemName("Test"), 10);
+
+		// nothing is queried before the iteration starts
+		assertEquals(0, service.filters.size());
+
+		int expected = 0;
+		for(HistoricItem item : cursor) {
+			assertEquals(new DecimalType(expected++), item.getState());
+		}
+		assertEquals(25, expected);
+
+		assertEquals(3, service.filters.size());
+		for(int i = 0; i < 3; i++) {
+			FilterCriteria filter = service.filters.get(i);
+			assertEquals("Test", filter.getItemName());
+			assertEquals(i, filter.getPageNumber());
+			assertEquals(10, filter.getPageSize());
+		}
+	}
+
+	@Test
+	public void testFetchesPagesLazily() {
+		PagingService service = new PagingService(25);
+		Iterator<HistoricItem> it = new HistoricItemCursor(service, new FilterCriteria(), 10).iterator();
+
+		for(int i = 0; i < 10; i++) {
+			it.next();
+		}
+		assertEquals(1, service.filters.size());
+		assertTrue(it.hasNext());
+		assertEquals(2, service.filters.size());
+	}
+
+	@Test
+	public void testStopsAfterFullLastPage() {
+		PagingService service = new PagingService(20);
+		int count = 0;
+		for(Iterator<HistoricItem> it = new HistoricItemCursor(service, new FilterCriteria(), 10).iterator(); it.hasNext(); it.next()) {
+			count++;
+		}
+		assertEquals(20, count);
+		assertEquals(3, service.filters.size());
+	}
+
+	@Test
+	public void testFixesEndDate() {
+		PagingService service = new PagingService(15);
+		FilterCriteria filter = new FilterCriteria();
+		HistoricItemCursor cursor = new HistoricItemCursor(service, filter, 10);
+
+		// later changes of the filter do not affect the cursor
+		filter.setItemName("Other");
+
+		for(Iterator<HistoricItem> it = cursor.iterator(); it.hasNext(); it.next());
+
+		Date endDate = service.filters.get(0).getEndDate();
+		assertNotNull(endDate);
+		assertEquals(endDate, service.filters.get(1).getEndDate());
+		assertEquals(null, service.filters.get(1).getItemName());
+	}
+
+	@Test
+	public void testContinuesFromLastTimestamp() {
+		SortingService service = new SortingService(0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11);
+		FilterCriteria filter = new FilterCriteria().setOrdering(Ordering.ASCENDING).setBeginDate(new Date(0));
+		List<Long> timestamps = new ArrayList<Long>();
+		for(HistoricItem item : new HistoricItemCursor(service, filter, 5)) {
+			timestamps.add(item.getTimestamp().getTime());
+		}
+		assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 11L), timestamps);
+
+		// the following pages start at the last timestamp instead of skipping the previous pages
+		assertEquals(3, service.filters.size());
+		assertEquals(new Date(4), service.filters.get(1).getBeginDate());
+		assertEquals(new Date(9), service.filters.get(2).getBeginDate());
+		for(FilterCriteria pageFilter : service.filters) {
+			assertEquals(0, pageFilter.getPageNumber());
+		}
+	}
+
+	@Test
+	public void testContinuesFromLastTimestampDescending() {
+		SortingService service = new SortingService(0, 1, 2, 3, 4, 5, 6, 7);
+		List<Long> timestamps = new ArrayList<Long>();
+		for(HistoricItem item : new HistoricItemCursor(service, new FilterCriteria().setEndDate(new Date(100)), 3)) {
+			timestamps.add(item.getTimestamp().getTime());
+		}
+		assertEquals(Arrays.asList(7L, 6L, 5L, 4L, 3L, 2L, 1L, 0L), timestamps);
+		assertEquals(new Date(5), service.filters.get(1).getEndDate());
+		assertEquals(new Date(2), service.filters.get(2).getEndDate());
+	}
+
+	@Test
+	public void testReturnsEqualTimestampsOnlyOnce() {
+		// many items with the same timestamp span more than a page
+		SortingService service = new SortingService(1, 2, 2, 2, 2, 2, 2, 3, 3, 4);
+		FilterCriteria filter = new FilterCriteria().setOrdering(Ordering.ASCENDING);
+		List<Long> timestamps = new ArrayList<Long>();
+		for(HistoricItem item : new HistoricItemCursor(service, filter, 3)) {
+			timestamps.add(item.getTimestamp().getTime());
+		}
+		assertEquals(Arrays.asList(1L, 2L, 2L, 2L, 2L, 2L, 2L, 3L, 3L, 4L), timestamps);
+	}
+
+	/**
+	 * A service which returns the numbers from 0 to <code>size</code> as historic states
+	 * and remembers the filters of all queries. As the numbers are always returned in
+	 * ascending order, the cursor has to address the pages by their number.
+	 */
+	private static class PagingService implements QueryablePersistenceService {
+
+		final List<FilterCriteria> filters = new ArrayList<FilterCriteria>();
+		final int size;
+
+		PagingService(int size) {
+			this.size = size;
+		}
+
+		public String getName() {
+			return "paging";
+		}
+
+		public void store(Item item) {
+		}
+
+		public void store(Item item, String alias) {
+		}
+
+		public Iterable<HistoricItem> query(FilterCriteria filter) {
+			filters.add(filter);
+			List<HistoricItem> result = new ArrayList<HistoricItem>();
+			int start = filter.getPageNumber() * filter.getPageSize();
+			for(int i = start; i < size && i < start + filter.getPageSize(); i++) {
+				final int value = i;
+				result.add(new HistoricItem() {
+					public Date getTimestamp() {
+						return new Date(value);
+					}
+
+					public State getState() {
+						return new DecimalType(value);
+					}
+
+					public String getName() {
+						return "Test";
+					}
+				});
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * A service which stores items with the given timestamps, honors the time range and the
+	 * ordering of the filter, and remembers the filters of all queries.
+	 */
+	private static class SortingService implements QueryablePersistenceService {
+
+		final List<FilterCriteria> filters = new ArrayList<FilterCriteria>();
+		final long[] timestamps;
+
+		SortingService(long... timestamps) {
+			this.timestamps = timestamps;
+		}
+
+		public String getName() {
+			return "sorting";
+		}
+
+		public void store(Item item) {
+		}
+
+		public void store(Item item, String alias) {
+		}
+
+		public Iterable<HistoricItem> query(FilterCriteria filter) {
+			filters.add(filter);
+			List<HistoricItem> matches = new ArrayList<HistoricItem>();
+			for(int i = 0; i < timestamps.length; i++) {
+				final Date timestamp = new Date(timestamps[i]);
+				if((filter.getBeginDate()==null || !timestamp.before(filter.getBeginDate()))
+						&& (filter.getEndDate()==null || !timestamp.after(filter.getEndDate()))) {
+					final int value = i;
+					matches.add(new HistoricItem() {
+						public Date getTimestamp() {
+							return timestamp;
+						}
+
+						public State getState() {
+							return new DecimalType(value);
+						}
+
+						public String getName() {
+							return "Test";
+						}
+					});
+				}
+			}
+			if(filter.getOrdering()==Ordering.DESCENDING) {
+				Collections.reverse(matches);
+			}
+			int start = filter.getPageNumber() * filter.getPageSize();
+			return matches.subList(Math.min(start, matches.size()), Math.min(start + filter.getPageSize(), matches.size()));
+		}
+	}
+
+}
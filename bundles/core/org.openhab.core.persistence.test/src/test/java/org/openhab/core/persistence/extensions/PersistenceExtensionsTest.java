@@ -9,7 +9,9 @@
 package org.openhab.core.persistence.extensions;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.List;
 
@@ -19,8 +21,10 @@ import org.junit.Before;
 import org.junit.Test;
 import org.openhab.core.items.GenericItem;
 import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.persistence.AggregatingPersistenceService.Aggregate;
 import org.openhab.core.persistence.HistoricItem;
 import org.openhab.core.persistence.PersistenceService;
+import org.openhab.core.persistence.test.TestAggregatingPersistenceService;
 import org.openhab.core.persistence.test.TestPersistenceService;
 import org.openhab.core.types.Command;
 import org.openhab.core.types.State;
@@ -33,6 +37,7 @@ import org.openhab.core.types.State;
 public class PersistenceExtensionsTest {
 
 	private PersistenceService testPersistenceService = new TestPersistenceService();
+	private TestAggregatingPersistenceService aggregatingPersistenceService = new TestAggregatingPersistenceService();
 	private PersistenceExtensions ext;
 	private GenericItem item;
 	
@@ -40,6 +45,7 @@ public class PersistenceExtensionsTest {
 	public void setUp() {
 		ext = new PersistenceExtensions();
 		ext.addPersistenceService(testPersistenceService);
+		ext.addPersistenceService(aggregatingPersistenceService);
 		item = new GenericItem("Test") {
 			@Override
 			public List<Class<? extends State>> getAcceptedDataTypes() {
@@ -56,6 +62,7 @@ public class PersistenceExtensionsTest {
 	@After
 	public void tearDown() {
 		ext.removePersistenceService(testPersistenceService);	
+		ext.removePersistenceService(aggregatingPersistenceService);	
 	}
 	
 	@Test
@@ -103,4 +110,55 @@ public class PersistenceExtensionsTest {
 		DecimalType average = PersistenceExtensions.averageSince(item, new DateMidnight(2003, 1, 1), "test");
 		assertEquals("2100", average.toString());
 	}
+
+	@Test
+	public void testAggregatedMinimumAndMaximumSince() {
+		item.setState(new DecimalType(2008));
+		HistoricItem historicItem = PersistenceExtensions.minimumSince(item, new DateMidnight(2005, 1, 1), "aggregating");
+		assertEquals("2005", historicItem.getState().toString());
+		assertEquals(new DateMidnight(2005, 1, 1).toDate(), historicItem.getTimestamp());
+
+		historicItem = PersistenceExtensions.maximumSince(item, new DateMidnight(2005, 1, 1), "aggregating");
+		assertEquals("2012", historicItem.getState().toString());
+
+		historicItem = PersistenceExtensions.maximumSince(item, new DateMidnight(2012, 1, 1), "aggregating");
+		assertEquals("2008", historicItem.getState().toString());
+
+		assertTrue(aggregatingPersistenceService.requested.contains(Aggregate.MIN));
+		assertTrue(aggregatingPersistenceService.requested.contains(Aggregate.MAX));
+	}
+
+	@Test
+	public void testAggregatedAverageSince() {
+		item.setState(new DecimalType(3025));
+		DecimalType average = PersistenceExtensions.averageSince(item, new DateMidnight(2003, 1, 1), "aggregating");
+		assertEquals(2100, average.doubleValue(), 0.001);
+		assertTrue(aggregatingPersistenceService.requested.contains(Aggregate.AVG));
+	}
+
+	@Test
+	public void testAggregatedUpdatedAndChangedSince() {
+		assertTrue(PersistenceExtensions.updatedSince(item, new DateMidnight(2005, 1, 1), "aggregating"));
+		assertFalse(PersistenceExtensions.updatedSince(item, new DateMidnight(1940, 1, 1), "aggregating"));
+		assertTrue(PersistenceExtensions.changedSince(item, new DateMidnight(2005, 1, 1), "aggregating"));
+		assertTrue(aggregatingPersistenceService.requested.contains(Aggregate.FIRST));
+	}
+
+	@Test
+	public void testFallbackForUnsupportedAggregate() {
+		aggregatingPersistenceService.unsupported.add(Aggregate.AVG);
+		item.setState(new DecimalType(3025));
+		DecimalType average = PersistenceExtensions.averageSince(item, new DateMidnight(2003, 1, 1), "aggregating");
+		assertEquals("2100", average.toString());
+		assertFalse(aggregatingPersistenceService.requested.contains(Aggregate.AVG));
+	}
+
+	@Test
+	public void testFallbackForFailingAggregate() {
+		aggregatingPersistenceService.failing.add(Aggregate.MIN);
+		item.setState(new DecimalType(2008));
+		HistoricItem historicItem = PersistenceExtensions.minimumSince(item, new DateMidnight(2005, 1, 1), "aggregating");
+		assertEquals("2005", historicItem.getState().toString());
+		assertFalse(aggregatingPersistenceService.requested.contains(Aggregate.MIN));
+	}
 }
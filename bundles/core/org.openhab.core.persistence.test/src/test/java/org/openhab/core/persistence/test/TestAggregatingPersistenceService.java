@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence.test;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.persistence.AggregatingPersistenceService;
+import org.openhab.core.persistence.FilterCriteria;
+import org.openhab.core.persistence.FilterCriteria.Ordering;
+import org.openhab.core.persistence.HistoricItem;
+import org.openhab.core.types.State;
+
+/**
+ * A simple aggregating persistence service used for unit tests. It computes the
+ * aggregates from the states of the {@link TestPersistenceService} and remembers
+ * which aggregates have been requested.
+ * 
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ */
+public class TestAggregatingPersistenceService extends TestPersistenceService implements AggregatingPersistenceService {
+
+	public final Set<Aggregate> requested = new HashSet<Aggregate>();
+	
+	public final Set<Aggregate> unsupported = new HashSet<Aggregate>();
+	
+	public final Set<Aggregate> failing = new HashSet<Aggregate>();
+	
+	@Override
+	public String getName() {
+		return "aggregating";
+	}
+
+	@Override
+	public HistoricItem aggregate(String itemName, Aggregate aggregate, Date beginDate, Date endDate) {
+		if(unsupported.contains(aggregate)) {
+			throw new UnsupportedOperationException();
+		}
+		if(failing.contains(aggregate)) {
+			throw new IllegalStateException();
+		}
+		requested.add(aggregate);
+		
+		FilterCriteria filter = new FilterCriteria().setItemName(itemName).setBeginDate(beginDate)
+				.setEndDate(endDate).setOrdering(Ordering.ASCENDING);
+		HistoricItem result = null;
+		int count = 0;
+		double sum = 0;
+		for(HistoricItem historicItem : query(filter)) {
+			DecimalType value = (DecimalType) historicItem.getState();
+			DecimalType current = result!=null ? (DecimalType) result.getState() : null;
+			count++;
+			sum += value.doubleValue();
+			switch(aggregate) {
+				case FIRST: if(result==null) result = historicItem; break;
+				case LAST: result = historicItem; break;
+				case MIN: if(current==null || value.compareTo(current)<0) result = historicItem; break;
+				case MAX: if(current==null || value.compareTo(current)>0) result = historicItem; break;
+				default: break;
+			}
+		}
+		switch(aggregate) {
+			case COUNT: return createItem(new DecimalType(count));
+			case AVG: return count>0 ? createItem(new DecimalType(sum / count)) : null;
+			default: return result;
+		}
+	}
+
+	private HistoricItem createItem(final State state) {
+		return new HistoricItem() {
+			public Date getTimestamp() {
+				return new Date();
+			}
+			
+			public State getState() {
+				return state;
+			}
+			
+			public String getName() {
+				return "Test";
+			}
+		};
+	}
+
+}
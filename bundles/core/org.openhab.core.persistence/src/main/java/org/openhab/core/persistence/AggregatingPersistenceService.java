@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence;
+
+import java.util.Date;
+
+/**
+ * A queryable persistence service which is able to compute aggregates of the
+ * persisted states itself, e.g. within the database, so that the historic items
+ * do not have to be fetched one by one.
+ *
+ * <p>The persistence extensions use this interface if it is available and fall back
+ * to iterating over the result of {@link #query(FilterCriteria)} otherwise, or if the
+ * aggregate cannot be computed. A result of <code>null</code> always means that there
+ * are no states in the given period, so that errors must be thrown instead.</p>
+ *
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ */
+public interface AggregatingPersistenceService extends QueryablePersistenceService {
+
+	/** Enumeration with all supported aggregate functions */
+	public enum Aggregate {
+		/** the average of all numeric states */
+		AVG,
+		/** the historic item with the smallest numeric state */
+		MIN,
+		/** the historic item with the largest numeric state */
+		MAX,
+		/** the number of persisted states */
+		COUNT,
+		/** the oldest historic item */
+		FIRST,
+		/** the most recent historic item */
+		LAST
+	}
+
+	/**
+	 * Computes an aggregate of the states which have been persisted for an item
+	 * within a period of time.
+	 *
+	 * <p>For {@link Aggregate#AVG} and {@link Aggregate#COUNT} the state of the returned
+	 * item is a {@link org.openhab.core.library.types.DecimalType} and its timestamp is the
+	 * end of the period. For all other functions the returned item is the persisted one,
+	 * although its timestamp might be approximated by services which do not keep the exact
+	 * time of each value.</p>
+	 *
+	 * @param itemName the name of the item
+	 * @param aggregate the aggregate function to compute
+	 * @param beginDate the begin of the period or <code>null</code> for no limit
+	 * @param endDate the end of the period or <code>null</code> for the current time
+	 * @return the aggregate or <code>null</code>, if no state has been persisted in the
+	 * 		given period (except for {@link Aggregate#COUNT}, which returns 0 then)
+	 * @throws UnsupportedOperationException if the service cannot compute the aggregate
+	 * 		for the given item, so that the caller has to compute it from a query
+	 * @throws IllegalStateException if the aggregate could not be computed right now, e.g.
+	 * 		because the database is not reachable or the query failed
+	 */
+	HistoricItem aggregate(String itemName, Aggregate aggregate, Date beginDate, Date endDate);
+
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence;
+
+import java.util.Collection;
+
+/**
+ * A persistence service which is able to store many samples at once, e.g. within
+ * a single database transaction.
+ * 
+ * <p>The persistence manager hands over the item states to such services
+ * asynchronously: all samples that have accumulated in the queue of the service
+ * are passed in a single call instead of calling
+ * {@link #store(org.openhab.core.items.Item, String)} for each of them.</p>
+ * 
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ */
+public interface BatchPersistenceService extends PersistenceService {
+
+	/**
+	 * Stores the given samples. The samples are ordered by the time at which they 
+	 * have been taken.
+	 * 
+	 * @param samples the samples to persist
+	 */
+	void store(Collection<PersistenceSample> samples);
+
+}
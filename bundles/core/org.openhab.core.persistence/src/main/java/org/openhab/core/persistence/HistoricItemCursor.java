@@ -0,0 +1,209 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.openhab.core.persistence.FilterCriteria.Ordering;
+
+/**
+ * A cursor over the result of a query, which fetches the result page by page while it
+ * is iterated. Only a single page is kept in memory at any time, so that queries over
+ * long periods of time do not have to load all historic items at once.
+ *
+ * <p>{@link QueryablePersistenceService}s return a cursor for queries which do not limit
+ * the number of results (see {@link #isUnlimited(FilterCriteria)}). The pages are queried
+ * from the service with the same filter, but with a limited page size, so the service
+ * must honor {@link FilterCriteria#getPageSize()}. Instead of skipping the results of all
+ * previous pages, which gets slower with every page, each page continues from the timestamp
+ * of the last item of the previous page by moving the begin date (or, for a descending order,
+ * the end date) of the filter. If the first page is not ordered by the timestamps, the pages
+ * are addressed by {@link FilterCriteria#getPageNumber()} instead.</p>
+ *
+ * <p>If no end date is given, the end of the query is fixed to the time at which the
+ * iteration starts, so that newly stored items do not shift the following pages.</p>
+ *
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ */
+public class HistoricItemCursor implements Iterable<HistoricItem> {
+
+	/** the number of historic items which are fetched at once by default */
+	public static final int DEFAULT_PAGE_SIZE = 1000;
+
+	private final QueryablePersistenceService service;
+	private final FilterCriteria filter;
+	private final int pageSize;
+
+	/**
+	 * @param service the service to query the pages from
+	 * @param filter the filter of the query
+	 * @param pageSize the number of historic items to fetch at once
+	 */
+	public HistoricItemCursor(QueryablePersistenceService service, FilterCriteria filter, int pageSize) {
+		this.service = service;
+		this.filter = copy(filter);
+		this.pageSize = pageSize;
+	}
+
+	public HistoricItemCursor(QueryablePersistenceService service, FilterCriteria filter) {
+		this(service, filter, DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * Checks whether a query with the given filter returns all matching historic items
+	 * instead of a single page of them.
+	 *
+	 * @param filter the filter of the query
+	 * @return true, if the number of results is not limited by the filter
+	 */
+	public static boolean isUnlimited(FilterCriteria filter) {
+		return filter.getPageNumber()==0 && filter.getPageSize()==Integer.MAX_VALUE;
+	}
+
+	public Iterator<HistoricItem> iterator() {
+		final Date endDate = filter.getEndDate()!=null ? filter.getEndDate() : new Date();
+
+		return new Iterator<HistoricItem>() {
+
+			private Iterator<HistoricItem> page = Collections.<HistoricItem>emptyList().iterator();
+			private boolean lastPage = false;
+
+			/** the timestamp of the last returned item, from which the next page continues */
+			private Date key = null;
+			/** the number of returned items with the timestamp of the key */
+			private int keyCount = 0;
+
+			/** false, if the service does not return the items ordered by their timestamp */
+			private boolean keyset = true;
+			private int pageNumber = 0;
+
+			public boolean hasNext() {
+				while(!page.hasNext()) {
+					if(lastPage) {
+						return false;
+					}
+					page = fetchNextPage().iterator();
+				}
+				return true;
+			}
+
+			public HistoricItem next() {
+				if(!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return page.next();
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+
+			private List<HistoricItem> fetchNextPage() {
+				if(!keyset) {
+					List<HistoricItem> result = fetchPage(endDate, null, pageNumber++, pageSize);
+					lastPage = result.size() < pageSize;
+					return result;
+				}
+
+				// the items with the timestamp of the key are queried again, so they have to be skipped
+				int size = pageSize + keyCount;
+				List<HistoricItem> result = fetchPage(endDate, key, 0, size);
+				lastPage = result.size() < size;
+				if(key==null && !isOrdered(result)) {
+					keyset = false;
+					pageNumber = 1;
+					return result;
+				}
+				int skip = 0;
+				while(skip < keyCount && skip < result.size() && key.equals(result.get(skip).getTimestamp())) {
+					skip++;
+				}
+				result = result.subList(skip, result.size());
+				if(!result.isEmpty()) {
+					Date lastTimestamp = result.get(result.size() - 1).getTimestamp();
+					if(!lastTimestamp.equals(key)) {
+						key = lastTimestamp;
+						keyCount = 0;
+					}
+					for(int i = result.size() - 1; i >= 0 && key.equals(result.get(i).getTimestamp()); i--) {
+						keyCount++;
+					}
+				}
+				return result;
+			}
+		};
+	}
+
+	/**
+	 * Queries a single page from the service. The page either continues from the timestamp of the
+	 * last returned item, which lets the database seek to it instead of skipping all previous results,
+	 * or it is addressed by its number, if the service does not order the items by their timestamp.
+	 */
+	private List<HistoricItem> fetchPage(Date endDate, Date key, int pageNumber, int pageSize) {
+		FilterCriteria pageFilter = copy(filter)
+			.setEndDate(endDate)
+			.setPageNumber(pageNumber)
+			.setPageSize(pageSize);
+		if(key!=null) {
+			if(filter.getOrdering()==Ordering.ASCENDING) {
+				pageFilter.setBeginDate(key);
+			} else {
+				pageFilter.setEndDate(key);
+			}
+		}
+		List<HistoricItem> page = new ArrayList<HistoricItem>(pageSize < DEFAULT_PAGE_SIZE ? pageSize : DEFAULT_PAGE_SIZE);
+		Iterable<HistoricItem> result = service.query(pageFilter);
+		if(result!=null) {
+			for(HistoricItem item : result) {
+				page.add(item);
+			}
+		}
+		return page;
+	}
+
+	/**
+	 * Checks whether the items of a page are ordered by their timestamp as requested by the filter.
+	 */
+	private boolean isOrdered(List<HistoricItem> page) {
+		Date previous = null;
+		for(HistoricItem item : page) {
+			Date timestamp = item.getTimestamp();
+			if(timestamp==null) {
+				return false;
+			}
+			if(previous!=null) {
+				int order = timestamp.compareTo(previous);
+				if(filter.getOrdering()==Ordering.ASCENDING ? order < 0 : order > 0) {
+					return false;
+				}
+			}
+			previous = timestamp;
+		}
+		return true;
+	}
+
+	private static FilterCriteria copy(FilterCriteria filter) {
+		return new FilterCriteria()
+			.setItemName(filter.getItemName())
+			.setBeginDate(filter.getBeginDate())
+			.setEndDate(filter.getEndDate())
+			.setOperator(filter.getOperator())
+			.setState(filter.getState())
+			.setOrdering(filter.getOrdering())
+			.setPageNumber(filter.getPageNumber())
+			.setPageSize(filter.getPageSize());
+	}
+
+}
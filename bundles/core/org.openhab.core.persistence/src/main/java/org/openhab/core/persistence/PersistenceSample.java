@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence;
+
+import java.util.Date;
+
+import org.openhab.core.items.Item;
+import org.openhab.core.types.State;
+
+/**
+ * A persistence sample holds the state of an item at the point in time at which it
+ * was handed over for persistence. As the samples are written asynchronously, the
+ * item might already have a different state when the sample is stored, so
+ * {@link BatchPersistenceService}s should always use {@link #getState()} and
+ * {@link #getTimestamp()} instead of the current state of the item.
+ * 
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ */
+public final class PersistenceSample {
+
+	private final Item item;
+	private final String alias;
+	private final State state;
+	private final Date timestamp;
+	
+	public PersistenceSample(Item item, String alias, State state, Date timestamp) {
+		this.item = item;
+		this.alias = alias;
+		this.state = state;
+		this.timestamp = timestamp;
+	}
+	
+	/**
+	 * Creates a sample with the current state of the given item.
+	 * 
+	 * @param item the item to take the sample of
+	 * @param alias the alias under which the item should be persisted, might be <code>null</code>
+	 */
+	public PersistenceSample(Item item, String alias) {
+		this(item, alias, item.getState(), new Date());
+	}
+
+	/**
+	 * @return the item this sample has been taken of
+	 */
+	public Item getItem() {
+		return item;
+	}
+
+	/**
+	 * @return the alias under which the item should be persisted or <code>null</code>, 
+	 * if the item name should be used 
+	 */
+	public String getAlias() {
+		return alias;
+	}
+
+	/**
+	 * @return the name under which the sample should be persisted, i.e. the alias or the item name 
+	 */
+	public String getName() {
+		return alias!=null ? alias : item.getName();
+	}
+
+	/**
+	 * @return the state of the item at the time the sample has been taken
+	 */
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * @return the time at which the sample has been taken
+	 */
+	public Date getTimestamp() {
+		return timestamp;
+	}
+
+	@Override
+	public String toString() {
+		return getName() + "=" + state + " (" + timestamp + ")";
+	}
+	
+}
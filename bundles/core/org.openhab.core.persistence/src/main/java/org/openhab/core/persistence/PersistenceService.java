@@ -31,11 +31,10 @@ public interface PersistenceService {
 
 	/**
 	 * Stores the current value of the given item.
-	 * <p>Implementors should keep in mind that all registered 
-	 * {@link PersistenceService}s are called synchronously. Hence long running
-	 * operations should be processed asynchronously. E.g. <code>store</code>
-	 * adds things to a queue which is processed by some asynchronous workers
-	 * (Quartz Job, Thread, etc.).</p>  
+	 * <p>The persistence manager calls this method synchronously, as the state is read
+	 * from the item. Services which can store many values at once more efficiently
+	 * should implement {@link BatchPersistenceService}, whose samples are handed over
+	 * asynchronously.</p>  
 	 * 
 	 * @param item the item which state should be persisted.
 	 */
@@ -43,11 +42,10 @@ public interface PersistenceService {
 
 	/**
 	 * <p>Stores the current value of the given item under a specified alias.</p>
-	 * <p>Implementors should keep in mind that all registered 
-	 * {@link PersistenceService}s are called synchronously. Hence long running
-	 * operations should be processed asynchronously. E.g. <code>store</code>
-	 * adds things to a queue which is processed by some asynchronous workers
-	 * (Quartz Job, Thread, etc.).</p>  
+	 * <p>The persistence manager calls this method synchronously, as the state is read
+	 * from the item. Services which can store many values at once more efficiently
+	 * should implement {@link BatchPersistenceService}, whose samples are handed over
+	 * asynchronously.</p>  
 	 * 
 	 * @param item the item which state should be persisted.
 	 * @param alias the alias under which the item should be persisted.
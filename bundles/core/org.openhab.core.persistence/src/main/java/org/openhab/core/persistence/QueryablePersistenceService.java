@@ -19,7 +19,11 @@ public interface QueryablePersistenceService extends PersistenceService {
 		
 	/**
 	 * Queries the {@link PersistenceService} for data with a given filter criteria
-	 * 
+	 *
+	 * <p>The returned time series might be fetched lazily while it is iterated, e.g.
+	 * by a {@link HistoricItemCursor}. Hence implementations should not load all items
+	 * into memory at once, if the number of results is not limited by the filter.</p>
+	 *
 	 * @param filter the filter to apply to the query
 	 * @return a time series of items
 	 */
@@ -19,6 +19,8 @@ import java.util.Map;
 import org.joda.time.base.AbstractInstant;
 import org.openhab.core.items.Item;
 import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.persistence.AggregatingPersistenceService;
+import org.openhab.core.persistence.AggregatingPersistenceService.Aggregate;
 import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.core.persistence.HistoricItem;
 import org.openhab.core.persistence.PersistenceService;
@@ -158,9 +160,30 @@ public class PersistenceExtensions implements ManagedService {
 	 * @return true, if item state had changed
 	 */
 	static public Boolean changedSince(Item item, AbstractInstant timestamp, String serviceName) {
+		HistoricItem itemThen = historicState(item, timestamp, serviceName);
+		AggregatingPersistenceService aService = getAggregatingService(serviceName);
+		if(aService != null) {
+			try {
+				if(itemThen == null) {
+					return aService.aggregate(item.getName(), Aggregate.FIRST, timestamp.toDate(), null) != null;
+				} else if(itemThen.getState() instanceof DecimalType) {
+					// the state has not changed, if all states since then are equal to the one at that time
+					HistoricItem minimum = aService.aggregate(item.getName(), Aggregate.MIN, timestamp.toDate(), null);
+					if(minimum == null) {
+						return false;
+					}
+					HistoricItem maximum = aService.aggregate(item.getName(), Aggregate.MAX, timestamp.toDate(), null);
+					return !itemThen.getState().equals(minimum.getState()) || !itemThen.getState().equals(maximum.getState());
+				}
+			} catch(UnsupportedOperationException e) {
+				logger.debug("Service '{}' cannot aggregate the states of item '{}'", serviceName, item.getName());
+			} catch(IllegalStateException e) {
+				logger.warn("Service '{}' failed to aggregate the states of item '{}': {}", serviceName, item.getName(), e.getMessage());
+			}
+		}
+
 		Iterable<HistoricItem> result = getAllStatesSince(item, timestamp, serviceName);
 		Iterator<HistoricItem> it = result.iterator();
-		HistoricItem itemThen = historicState(item, timestamp);
 		if(itemThen == null) {
 			// Can't get the state at the start time
 			// If we've got results more recent that this, it must have changed
@@ -204,7 +227,7 @@ public class PersistenceExtensions implements ManagedService {
 	 * @return true, if item state was updated
 	 */
 	static public Boolean updatedSince(Item item, AbstractInstant timestamp, String serviceName) {
-		Iterable<HistoricItem> result = getAllStatesSince(item, timestamp, serviceName);
+		Iterable<HistoricItem> result = getAggregateSince(item, timestamp, serviceName, Aggregate.FIRST);
 		if(result.iterator().hasNext()) {
 			return true;
 		} else {
@@ -240,7 +263,7 @@ public class PersistenceExtensions implements ManagedService {
 	 * @return a historic item with the maximum state value since the given point in time
 	 */
 	static public HistoricItem maximumSince(final Item item, AbstractInstant timestamp, String serviceName) {
-		Iterable<HistoricItem> result = getAllStatesSince(item, timestamp, serviceName);
+		Iterable<HistoricItem> result = getAggregateSince(item, timestamp, serviceName, Aggregate.MAX);
 		Iterator<HistoricItem> it = result.iterator();
 		HistoricItem maximumHistoricItem = null;
 		DecimalType maximum = (DecimalType) item.getStateAs(DecimalType.class);
@@ -305,7 +328,7 @@ public class PersistenceExtensions implements ManagedService {
 	 * @return the historic item with the minimum state value since the given point in time
 	 */
 	static public HistoricItem minimumSince(final Item item, AbstractInstant timestamp, String serviceName) {
-		Iterable<HistoricItem> result = getAllStatesSince(item, timestamp, serviceName);
+		Iterable<HistoricItem> result = getAggregateSince(item, timestamp, serviceName, Aggregate.MIN);
 		Iterator<HistoricItem> it = result.iterator();
 		HistoricItem minimumHistoricItem = null;
 		DecimalType minimum = (DecimalType) item.getStateAs(DecimalType.class);
@@ -368,14 +391,35 @@ public class PersistenceExtensions implements ManagedService {
 	 * @return the average state value since the given point in time
 	 */
 	static public DecimalType averageSince(Item item, AbstractInstant timestamp, String serviceName) {
-		Iterable<HistoricItem> result = getAllStatesSince(item, timestamp, serviceName);
-		Iterator<HistoricItem> it = result.iterator();
-		
 		DecimalType value = (DecimalType) item.getStateAs(DecimalType.class);
 		if (value == null) {
 			value = DecimalType.ZERO;
 		}
 		
+		AggregatingPersistenceService aService = getAggregatingService(serviceName);
+		if(aService != null) {
+			try {
+				// the current state is part of the average as well
+				HistoricItem count = aService.aggregate(item.getName(), Aggregate.COUNT, timestamp.toDate(), null);
+				long quantity = count!=null ? ((DecimalType) count.getState()).longValue() : 0;
+				double sum = value.doubleValue();
+				HistoricItem average = quantity > 0 ? aService.aggregate(item.getName(), Aggregate.AVG, timestamp.toDate(), null) : null;
+				if(average != null) {
+					sum += ((DecimalType) average.getState()).doubleValue() * quantity;
+				} else {
+					quantity = 0;
+				}
+				return new DecimalType(sum / (quantity + 1));
+			} catch(UnsupportedOperationException e) {
+				logger.debug("Service '{}' cannot aggregate the states of item '{}'", serviceName, item.getName());
+			} catch(IllegalStateException e) {
+				logger.warn("Service '{}' failed to aggregate the states of item '{}': {}", serviceName, item.getName(), e.getMessage());
+			}
+		}
+
+		Iterable<HistoricItem> result = getAllStatesSince(item, timestamp, serviceName);
+		Iterator<HistoricItem> it = result.iterator();
+		
 		double average = value.doubleValue();
 		int quantity = 1;
 		while(it.hasNext()) {
@@ -391,6 +435,38 @@ public class PersistenceExtensions implements ManagedService {
 		return new DecimalType(average);
 	} 
 	
+	/**
+	 * Returns the given aggregate of the states since a certain point in time as a single
+	 * historic item, if the service is able to compute it, and all states since then otherwise. 
+	 */
+	static private Iterable<HistoricItem> getAggregateSince(Item item, AbstractInstant timestamp, String serviceName, Aggregate aggregate) {
+		AggregatingPersistenceService aService = getAggregatingService(serviceName);
+		if(aService != null) {
+			try {
+				HistoricItem result = aService.aggregate(item.getName(), aggregate, timestamp.toDate(), null);
+				if(result != null) {
+					return Collections.singletonList(result);
+				} else {
+					return Collections.emptyList();
+				}
+			} catch(UnsupportedOperationException e) {
+				logger.debug("Service '{}' cannot aggregate the states of item '{}'", serviceName, item.getName());
+			} catch(IllegalStateException e) {
+				logger.warn("Service '{}' failed to aggregate the states of item '{}': {}", serviceName, item.getName(), e.getMessage());
+			}
+		}
+		return getAllStatesSince(item, timestamp, serviceName);
+	}
+
+	static private AggregatingPersistenceService getAggregatingService(String serviceName) {
+		PersistenceService service = services.get(serviceName);
+		if (service instanceof AggregatingPersistenceService) {
+			return (AggregatingPersistenceService) service;
+		} else {
+			return null;
+		}
+	}
+
 	static private Iterable<HistoricItem> getAllStatesSince(Item item, AbstractInstant timestamp, String serviceName) {
 		PersistenceService service = services.get(serviceName);
 		if (service instanceof QueryablePersistenceService) {
@@ -11,9 +11,12 @@ package org.openhab.core.persistence.internal;
 import static org.quartz.JobBuilder.newJob;
 import static org.quartz.TriggerBuilder.newTrigger;
 
+import java.io.File;
 import java.text.DateFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -22,7 +25,9 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.commons.lang.StringUtils;
 import org.eclipse.emf.ecore.EObject;
 import org.openhab.core.events.AbstractEventSubscriber;
 import org.openhab.core.items.GenericItem;
@@ -32,10 +37,13 @@ import org.openhab.core.items.ItemNotFoundException;
 import org.openhab.core.items.ItemRegistry;
 import org.openhab.core.items.ItemRegistryChangeListener;
 import org.openhab.core.items.StateChangeListener;
+import org.openhab.core.persistence.BatchPersistenceService;
 import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.core.persistence.HistoricItem;
+import org.openhab.core.persistence.PersistenceSample;
 import org.openhab.core.persistence.PersistenceService;
 import org.openhab.core.persistence.QueryablePersistenceService;
+import org.openhab.core.persistence.internal.WriteBehindQueue.OverflowPolicy;
 import org.openhab.core.types.State;
 import org.openhab.core.types.UnDefType;
 import org.openhab.model.core.EventType;
@@ -49,6 +57,8 @@ import org.openhab.model.persistence.persistence.PersistenceConfiguration;
 import org.openhab.model.persistence.persistence.PersistenceModel;
 import org.openhab.model.persistence.persistence.Strategy;
 import org.openhab.model.persistence.scoping.GlobalStrategies;
+import org.osgi.service.cm.ConfigurationException;
+import org.osgi.service.cm.ManagedService;
 import org.quartz.CronScheduleBuilder;
 import org.quartz.Job;
 import org.quartz.JobDetail;
@@ -65,11 +75,15 @@ import org.slf4j.LoggerFactory;
  * This class is the central part of the persistence management and delegation. It reads the persistence
  * models, schedules timers and manages the invocation of {@link PersistenceService}s upon events.
  * 
+ * <p>The item states are handed over to {@link BatchPersistenceService}s asynchronously through a
+ * {@link WriteBehindQueue} per service, so that slow services do not delay the item updates. All
+ * other services are called directly, as they read the state from the item.</p>
+ * 
  * @author Kai Kreuzer
  * @since 1.0.0
  *
  */
-public class PersistenceManager extends AbstractEventSubscriber implements ModelRepositoryChangeListener, ItemRegistryChangeListener, StateChangeListener {
+public class PersistenceManager extends AbstractEventSubscriber implements ModelRepositoryChangeListener, ItemRegistryChangeListener, StateChangeListener, ManagedService {
 	
 	private static final Logger logger = LoggerFactory.getLogger(PersistenceManager.class);
 
@@ -80,9 +94,27 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 	
 	/*default */ ModelRepository modelRepository;
 
-	private ItemRegistry itemRegistry;
+	/*default */ ItemRegistry itemRegistry;
 
-	/*default */ Map<String, PersistenceService> persistenceServices = new HashMap<String, PersistenceService>();
+	/*default */ Map<String, PersistenceService> persistenceServices = new ConcurrentHashMap<String, PersistenceService>();
+	
+	/** keeps the write-behind queue of each batch persistence service */
+	private Map<String, WriteBehindQueue> queues = new ConcurrentHashMap<String, WriteBehindQueue>();
+	
+	/** the size of the write-behind queues, 0 if the services should be called synchronously */
+	private int queueSize = WriteBehindQueue.DEFAULT_QUEUE_SIZE;
+	
+	private int batchSize = WriteBehindQueue.DEFAULT_BATCH_SIZE;
+	
+	private OverflowPolicy overflowPolicy = WriteBehindQueue.DEFAULT_OVERFLOW_POLICY;
+	
+	private File spoolFolder = new File(WriteBehindQueue.DEFAULT_SPOOL_FOLDER);
+	
+	/** the routes of all items for change and update events, rebuilt lazily when it is outdated */
+	private volatile RoutingTable routingTable;
+	
+	/** is incremented whenever the persistence configurations or the items change */
+	private final AtomicLong configurationVersion = new AtomicLong();
 	
 	/** keeps a list of configurations for each persistence service */
 	protected Map<String, List<PersistenceConfiguration>> persistenceConfigurations = new ConcurrentHashMap<String, List<PersistenceConfiguration>>();
@@ -110,6 +142,9 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 	}
 	
 	public void deactivate() {
+		for(String serviceName : queues.keySet()) {
+			stopQueue(serviceName);
+		}
 	}
 	
 	
@@ -140,20 +175,74 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 	public void unsetItemRegistry(ItemRegistry itemRegistry) {
 		itemRegistry.removeItemRegistryChangeListener(this);
 		this.itemRegistry = null;
+		invalidateRoutingTable();
 	}
 
 	public void addPersistenceService(PersistenceService persistenceService) {
 		logger.debug("Initializing {} persistence service.", persistenceService.getName());
 		persistenceServices.put(persistenceService.getName(), persistenceService);
+		startQueue(persistenceService);
 		stopEventHandling(persistenceService.getName());
 		startEventHandling(persistenceService.getName());
 	}
 
 	public void removePersistenceService(PersistenceService persistenceService) {
 		stopEventHandling(persistenceService.getName());
+		stopQueue(persistenceService.getName());
 		persistenceServices.remove(persistenceService.getName());
 	}
 	
+	/**
+	 * Creates a new write-behind queue for the given service and replaces the existing one.
+	 * Services which do not support batches are always called synchronously.
+	 * 
+	 * @param persistenceService the service to create the queue for
+	 */
+	private synchronized void startQueue(PersistenceService persistenceService) {
+		WriteBehindQueue oldQueue = null;
+		if(queueSize > 0 && persistenceService instanceof BatchPersistenceService) {
+			WriteBehindQueue queue = new WriteBehindQueue((BatchPersistenceService) persistenceService, queueSize, batchSize, overflowPolicy, spoolFolder);
+			oldQueue = queues.put(persistenceService.getName(), queue);
+		} else {
+			oldQueue = queues.remove(persistenceService.getName());
+		}
+		if(oldQueue!=null) {
+			oldQueue.shutdown();
+		}
+	}
+
+	private synchronized void stopQueue(String serviceName) {
+		WriteBehindQueue queue = queues.remove(serviceName);
+		if(queue!=null) {
+			queue.shutdown();
+		}
+	}
+	
+	/**
+	 * Hands the current state of an item over to a persistence service. If the service has a 
+	 * write-behind queue, the state is added to the queue, otherwise the service is called directly. 
+	 * 
+	 * @param persistenceService the service to persist the item state with
+	 * @param item the item to persist
+	 * @param alias the alias under which the item should be persisted, might be <code>null</code>
+	 */
+	/*default */ void store(PersistenceService persistenceService, Item item, String alias) {
+		WriteBehindQueue queue = queues.get(persistenceService.getName());
+		if(queue!=null) {
+			queue.add(new PersistenceSample(item, alias));
+		} else {
+			persistenceService.store(item, alias);
+		}
+	}
+	
+	/**
+	 * @param serviceName the name of the persistence service
+	 * @return the write-behind queue of the service or <code>null</code>, if the service is called synchronously
+	 */
+	public WriteBehindQueue getQueue(String serviceName) {
+		return queues.get(serviceName);
+	}
+	
 	
 	public void modelChanged(String modelName, EventType type) {
 		if(modelName.endsWith(".persist")) {
@@ -188,6 +277,7 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 				}
 			}
 			createTimers(modelName);
+			invalidateRoutingTable();
 		}
 	}
 
@@ -200,6 +290,7 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 		persistenceConfigurations.remove(modelName);
 		defaultStrategies.remove(modelName);
 		removeTimers(modelName);
+		invalidateRoutingTable();
 	}
 
 	public void stateChanged(Item item, State oldState, State newState) {
@@ -217,20 +308,79 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 	 * @param onlyChanges true, if it has the change strategy, false otherwise
 	 */
 	private void handleStateEvent(Item item, boolean onlyChanges) {
-		synchronized (persistenceConfigurations) {
-			for(Entry<String, List<PersistenceConfiguration>> entry : persistenceConfigurations.entrySet()) {
-				String serviceName = entry.getKey();
-				if(persistenceServices.containsKey(serviceName)) {				
-					for(PersistenceConfiguration config : entry.getValue()) {
-						if(hasStrategy(serviceName, config, onlyChanges ? GlobalStrategies.CHANGE : GlobalStrategies.UPDATE)) {
-							if(appliesToItem(config, item)) {
-								persistenceServices.get(serviceName).store(item, config.getAlias());
-							}
+		ItemRoutes routes = getRoutingTable().get(item.getName());
+		if(routes!=null) {
+			for(Route route : onlyChanges ? routes.changeRoutes : routes.updateRoutes) {
+				PersistenceService persistenceService = persistenceServices.get(route.serviceName);
+				if(persistenceService!=null) {
+					store(persistenceService, item, route.alias);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Marks the routing table as outdated, so that it is rebuilt with the next event.
+	 */
+	private void invalidateRoutingTable() {
+		configurationVersion.incrementAndGet();
+	}
+	
+	/**
+	 * Returns the routing table and rebuilds it first, if the persistence configurations,
+	 * the items or the group memberships have changed since it has been built.
+	 * 
+	 * @return the current routing table
+	 */
+	private RoutingTable getRoutingTable() {
+		RoutingTable table = routingTable;
+		long version = configurationVersion.get();
+		long membershipVersion = GroupItem.getMembershipVersion();
+		if(table==null || table.version!=version || table.membershipVersion!=membershipVersion) {
+			table = buildRoutingTable(version, membershipVersion);
+			routingTable = table;
+		}
+		return table;
+	}
+
+	/**
+	 * Compiles the persistence configurations into a map from item names to the services, 
+	 * aliases and strategies the item has to be persisted with.
+	 * 
+	 * @param version the configuration version the table is built for
+	 * @param membershipVersion the group membership version the table is built for
+	 * @return the new routing table
+	 */
+	private RoutingTable buildRoutingTable(long version, long membershipVersion) {
+		RoutingTable table = new RoutingTable(version, membershipVersion);
+		if(itemRegistry==null) {
+			return table;
+		}
+		for(Entry<String, List<PersistenceConfiguration>> entry : persistenceConfigurations.entrySet()) {
+			String serviceName = entry.getKey();
+			for(PersistenceConfiguration config : entry.getValue()) {
+				boolean onChange = hasStrategy(serviceName, config, GlobalStrategies.CHANGE);
+				boolean onUpdate = hasStrategy(serviceName, config, GlobalStrategies.UPDATE);
+				if(onChange || onUpdate) {
+					Route route = new Route(serviceName, config.getAlias());
+					for(Item item : getAllItems(config)) {
+						ItemRoutes routes = table.get(item.getName());
+						if(routes==null) {
+							routes = new ItemRoutes();
+							table.put(item.getName(), routes);
+						}
+						if(onChange) {
+							routes.changeRoutes.add(route);
+						}
+						if(onUpdate) {
+							routes.updateRoutes.add(route);
 						}
 					}
 				}
 			}
 		}
+		logger.debug("Built persistence routing table for {} items", table.size());
+		return table;
 	}
 	
 	/**
@@ -242,7 +392,8 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 	 * @return true, if it has the given strategy
 	 */
 	protected boolean hasStrategy(String serviceName, PersistenceConfiguration config, Strategy strategy) {
-		if(defaultStrategies.get(serviceName).contains(strategy) && config.getStrategies().isEmpty()) {
+		List<Strategy> defaults = defaultStrategies.get(serviceName);
+		if(defaults!=null && defaults.contains(strategy) && config.getStrategies().isEmpty()) {
 			return true;
 		} else {
 			for(Strategy s : config.getStrategies()) {
@@ -339,6 +490,7 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 	}
 
 	public void itemAdded(Item item) {
+		invalidateRoutingTable();
 		initialize(item);
 		if (item instanceof GenericItem) {
 			GenericItem genericItem = (GenericItem) item;
@@ -390,6 +542,7 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 	}
 
 	public void itemRemoved(Item item) {
+		invalidateRoutingTable();
 		if (item instanceof GenericItem) {
 			GenericItem genericItem = (GenericItem) item;
 			genericItem.removeStateChangeListener(this);
@@ -460,4 +613,96 @@ public class PersistenceManager extends AbstractEventSubscriber implements Model
 	}
 		
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public void updated(Dictionary<String, ?> config) throws ConfigurationException {
+		int queueSize = WriteBehindQueue.DEFAULT_QUEUE_SIZE;
+		int batchSize = WriteBehindQueue.DEFAULT_BATCH_SIZE;
+		OverflowPolicy overflowPolicy = WriteBehindQueue.DEFAULT_OVERFLOW_POLICY;
+		File spoolFolder = new File(WriteBehindQueue.DEFAULT_SPOOL_FOLDER);
+		
+		if (config != null) {
+			queueSize = parseInt(config, "queueSize", queueSize, 0);
+			batchSize = parseInt(config, "batchSize", batchSize, 1);
+
+			String overflowString = (String) config.get("overflow");
+			if (StringUtils.isNotBlank(overflowString)) {
+				try {
+					overflowPolicy = OverflowPolicy.valueOf(overflowString.trim().toUpperCase());
+				} catch (IllegalArgumentException e) {
+					throw new ConfigurationException("overflow", "Unknown overflow policy '" + overflowString 
+							+ "', valid values are dropoldest, block and spill");
+				}
+			}
+			
+			String spoolFolderString = (String) config.get("spoolFolder");
+			if (StringUtils.isNotBlank(spoolFolderString)) {
+				spoolFolder = new File(spoolFolderString.trim());
+			}
+		}
+		
+		synchronized (this) {
+			this.queueSize = queueSize;
+			this.batchSize = batchSize;
+			this.overflowPolicy = overflowPolicy;
+			this.spoolFolder = spoolFolder;
+			for(PersistenceService persistenceService : persistenceServices.values()) {
+				startQueue(persistenceService);
+			}
+		}
+		logger.debug("Persistence queues configured with a size of {} and a batch size of {}", queueSize, batchSize);
+	}
+	
+	private int parseInt(Dictionary<String, ?> config, String key, int defaultValue, int minValue) throws ConfigurationException {
+		String value = (String) config.get(key);
+		if (StringUtils.isBlank(value)) {
+			return defaultValue;
+		}
+		try {
+			int result = Integer.parseInt(value.trim());
+			if (result < minValue) {
+				throw new ConfigurationException(key, "The value of '" + key + "' must be at least " + minValue);
+			}
+			return result;
+		} catch (NumberFormatException e) {
+			throw new ConfigurationException(key, "The value of '" + key + "' must be a number");
+		}
+	}
+
+	/**
+	 * Maps item names to the routes of the item. 
+	 */
+	@SuppressWarnings("serial")
+	private static class RoutingTable extends HashMap<String, ItemRoutes> {
+		final long version;
+		final long membershipVersion;
+		
+		RoutingTable(long version, long membershipVersion) {
+			this.version = version;
+			this.membershipVersion = membershipVersion;
+		}
+	}
+	
+	/**
+	 * Holds the routes of an item for change and update events.
+	 */
+	private static class ItemRoutes {
+		final List<Route> changeRoutes = new ArrayList<Route>(1);
+		final List<Route> updateRoutes = new ArrayList<Route>(1);
+	}
+	
+	/**
+	 * Defines the persistence service and alias an item state is stored with.
+	 */
+	private static class Route {
+		final String serviceName;
+		final String alias;
+		
+		Route(String serviceName, String alias) {
+			this.serviceName = serviceName;
+			this.alias = alias;
+		}
+	}
+
 }
@@ -0,0 +1,440 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.persistence.internal;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.commons.lang.StringUtils;
+import org.openhab.core.items.Item;
+import org.openhab.core.items.ItemNotFoundException;
+import org.openhab.core.items.ItemRegistry;
+import org.openhab.core.persistence.BatchPersistenceService;
+import org.openhab.core.persistence.PersistenceSample;
+import org.openhab.core.persistence.PersistenceService;
+import org.openhab.core.types.State;
+import org.openhab.core.types.TypeParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>The write-behind queue decouples a {@link BatchPersistenceService} from the threads
+ * that update the item states. Samples are put into a bounded queue and are handed
+ * over to the service by a dedicated writer thread; all samples which have accumulated
+ * in the queue (up to the configured batch size) are stored with a single call.</p>
+ *
+ * <p>Only batch services are queued: a plain {@link PersistenceService} reads the state
+ * of the item when it stores it, so it would persist a later state than the one of the
+ * sample.</p>
+ *
+ * <p>If the queue is full, the configured {@link OverflowPolicy} is applied. Samples
+ * that are spilled to disk are replayed as soon as the queue has been drained; they are
+ * kept in the spool file if the queue is shut down before, and are replayed when a queue
+ * for the same service is created again.</p>
+ *
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ */
+public class WriteBehindQueue implements Runnable {
+
+	private static final Logger logger = LoggerFactory.getLogger(WriteBehindQueue.class);
+
+	/**
+	 * Defines what happens with a new sample, if the queue is full.
+	 */
+	public enum OverflowPolicy {
+		/** the oldest queued sample is discarded */
+		DROPOLDEST,
+		/** the updating thread waits until there is space in the queue */
+		BLOCK,
+		/** the sample is written to a spool file and stored later on */
+		SPILL
+	}
+
+	public static final int DEFAULT_QUEUE_SIZE = 1000;
+
+	public static final int DEFAULT_BATCH_SIZE = 100;
+
+	public static final OverflowPolicy DEFAULT_OVERFLOW_POLICY = OverflowPolicy.DROPOLDEST;
+
+	public static final String DEFAULT_SPOOL_FOLDER = "etc/persistence";
+
+	/** the maximum time to wait for the writer thread to store the remaining samples on shutdown */
+	private static final long SHUTDOWN_TIMEOUT = 10000L;
+
+	/** the number of dropped samples after which another warning is logged */
+	private static final int DROP_LOG_INTERVAL = 1000;
+
+	private static final char SEPARATOR = '\t';
+
+	private final BatchPersistenceService service;
+
+	private final BlockingQueue<PersistenceSample> queue;
+
+	private final int batchSize;
+
+	private final OverflowPolicy overflowPolicy;
+
+	private final File spoolFile;
+
+	private final Thread writer;
+
+	private volatile boolean running = true;
+
+	/** guards the spool file and the spool writer */
+	private final Object spoolLock = new Object();
+
+	/** true, as long as there are spilled samples which have not been stored yet */
+	private boolean spooling;
+
+	private Writer spoolWriter;
+
+	private final AtomicInteger maxQueueSize = new AtomicInteger();
+	private final AtomicLong storedCount = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+	private final AtomicLong spilledCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+
+	/**
+	 * Creates a new write-behind queue and starts its writer thread.
+	 *
+	 * @param service the persistence service to hand the samples over to
+	 * @param queueSize the maximum number of samples that are held in memory
+	 * @param batchSize the maximum number of samples that are passed to the service at once
+	 * @param overflowPolicy the policy to apply if the queue is full
+	 * @param spoolFolder the folder to write spilled samples to
+	 */
+	public WriteBehindQueue(BatchPersistenceService service, int queueSize, int batchSize, OverflowPolicy overflowPolicy, File spoolFolder) {
+		this.service = service;
+		this.queue = new ArrayBlockingQueue<PersistenceSample>(queueSize);
+		this.batchSize = batchSize;
+		this.overflowPolicy = overflowPolicy;
+		this.spoolFile = new File(spoolFolder, service.getName() + ".spool");
+
+		// samples which have been spilled before have to be stored first
+		this.spooling = spoolFile.exists() || getReplayFile().exists();
+
+		this.writer = new Thread(this, "openHAB Persistence Writer (" + service.getName() + ")");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Adds a sample to the queue. Depending on the overflow policy, this method blocks
+	 * if the queue is full.
+	 *
+	 * @param sample the sample to store
+	 */
+	public void add(PersistenceSample sample) {
+		if(!running) {
+			// the queue is about to be replaced, so we store the sample directly
+			store(Collections.singletonList(sample));
+			return;
+		}
+		switch(overflowPolicy) {
+			case BLOCK:
+				try {
+					queue.put(sample);
+				} catch (InterruptedException e) {
+					droppedCount.incrementAndGet();
+					Thread.currentThread().interrupt();
+				}
+				break;
+			case SPILL:
+				synchronized(spoolLock) {
+					// as long as there are spilled samples, new samples are spilled as well to keep them in order
+					if(spooling || !queue.offer(sample)) {
+						spill(sample);
+					}
+				}
+				break;
+			default:
+				while(!queue.offer(sample)) {
+					if(queue.poll()!=null && droppedCount.incrementAndGet() % DROP_LOG_INTERVAL == 1) {
+						logger.warn("Persistence queue of service '{}' is full, dropped {} samples so far.",
+								service.getName(), droppedCount.get());
+					}
+				}
+		}
+		updateMaxQueueSize();
+	}
+
+	/**
+	 * Stops the writer thread after it has stored all queued samples. Samples which have
+	 * been spilled to disk and not yet been stored are kept for later.
+	 */
+	public void shutdown() {
+		running = false;
+		try {
+			writer.join(SHUTDOWN_TIMEOUT);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if(writer.isAlive()) {
+			logger.warn("Persistence service '{}' did not store its remaining {} samples in time.",
+					service.getName(), queue.size());
+		}
+		synchronized(spoolLock) {
+			closeSpoolWriter();
+		}
+		logger.debug("Persistence queue has been shut down: {}", this);
+	}
+
+	public void run() {
+		List<PersistenceSample> batch = new ArrayList<PersistenceSample>(batchSize);
+		while(running || !queue.isEmpty()) {
+			try {
+				PersistenceSample sample = queue.poll(1, TimeUnit.SECONDS);
+				if(sample!=null) {
+					batch.add(sample);
+					queue.drainTo(batch, batchSize - 1);
+					store(batch);
+					batch.clear();
+				}
+				if(running && queue.isEmpty()) {
+					replaySpool();
+				}
+			} catch (InterruptedException e) {
+				logger.debug("Persistence writer of service '{}' has been interrupted.", service.getName());
+				break;
+			} catch (RuntimeException e) {
+				logger.error("Persistence writer of service '{}' failed: {}", service.getName(), e.getMessage());
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Hands the given samples over to the persistence service.
+	 *
+	 * @param samples the samples to store
+	 */
+	private void store(List<PersistenceSample> samples) {
+		try {
+			service.store(samples);
+			storedCount.addAndGet(samples.size());
+		} catch(RuntimeException e) {
+			failedCount.addAndGet(samples.size());
+			logger.error("Persistence service '{}' failed to store {} samples: {}",
+					new Object[] { service.getName(), samples.size(), e.getMessage() });
+		}
+	}
+
+	private void updateMaxQueueSize() {
+		int size = queue.size();
+		int max = maxQueueSize.get();
+		while(size > max && !maxQueueSize.compareAndSet(max, size)) {
+			max = maxQueueSize.get();
+		}
+	}
+
+	/**
+	 * Appends a sample to the spool file. Must be called while holding the spool lock.
+	 *
+	 * @param sample the sample to write to disk
+	 */
+	private void spill(PersistenceSample sample) {
+		try {
+			if(spoolWriter==null) {
+				spoolFile.getParentFile().mkdirs();
+				spoolWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(spoolFile, true), "UTF-8"));
+			}
+			spoolWriter.write(Long.toString(sample.getTimestamp().getTime()));
+			spoolWriter.write(SEPARATOR);
+			spoolWriter.write(StringEscapeUtils.escapeJava(sample.getItem().getName()));
+			spoolWriter.write(SEPARATOR);
+			spoolWriter.write(sample.getAlias()!=null ? StringEscapeUtils.escapeJava(sample.getAlias()) : "");
+			spoolWriter.write(SEPARATOR);
+			spoolWriter.write(StringEscapeUtils.escapeJava(sample.getState().toString()));
+			spoolWriter.write('\n');
+			spoolWriter.flush();
+			spooling = true;
+			spilledCount.incrementAndGet();
+		} catch (IOException e) {
+			droppedCount.incrementAndGet();
+			logger.warn("Failed to spill sample of item '{}' to '{}': {}",
+					new Object[] { sample.getItem().getName(), spoolFile, e.getMessage() });
+		}
+	}
+
+	private void closeSpoolWriter() {
+		if(spoolWriter!=null) {
+			try {
+				spoolWriter.close();
+			} catch (IOException e) {
+				logger.debug("Failed to close spool file '{}': {}", spoolFile, e.getMessage());
+			}
+			spoolWriter = null;
+		}
+	}
+
+	private File getReplayFile() {
+		return new File(spoolFile.getPath() + ".replay");
+	}
+
+	/**
+	 * Stores all samples that have been spilled to disk. New samples are spilled to a new
+	 * spool file meanwhile, which is replayed afterwards, until no spilled samples are left.
+	 */
+	private void replaySpool() {
+		File replayFile = getReplayFile();
+		while(running) {
+			synchronized(spoolLock) {
+				if(!spooling) {
+					return;
+				}
+				if(!replayFile.exists()) {
+					closeSpoolWriter();
+					if(!spoolFile.exists()) {
+						spooling = false;
+						return;
+					}
+					if(!spoolFile.renameTo(replayFile)) {
+						logger.warn("Failed to replay spool file '{}'.", spoolFile);
+						return;
+					}
+				}
+			}
+
+			ItemRegistry itemRegistry = getItemRegistry();
+			if(itemRegistry==null) {
+				// we need the items to restore the samples, so try again later
+				return;
+			}
+			BufferedReader reader = null;
+			try {
+				reader = new BufferedReader(new InputStreamReader(new FileInputStream(replayFile), "UTF-8"));
+				List<PersistenceSample> batch = new ArrayList<PersistenceSample>(batchSize);
+				String line;
+				while((line = reader.readLine())!=null) {
+					PersistenceSample sample = parseSample(itemRegistry, line);
+					if(sample!=null) {
+						batch.add(sample);
+						if(batch.size() >= batchSize) {
+							store(batch);
+							batch.clear();
+						}
+					}
+				}
+				if(!batch.isEmpty()) {
+					store(batch);
+				}
+			} catch (IOException e) {
+				logger.warn("Failed to read spool file '{}': {}", replayFile, e.getMessage());
+			} finally {
+				if(reader!=null) {
+					try {
+						reader.close();
+					} catch (IOException e) {}
+				}
+			}
+			if(!replayFile.delete()) {
+				logger.warn("Failed to delete spool file '{}'.", replayFile);
+				return;
+			}
+		}
+	}
+
+	private PersistenceSample parseSample(ItemRegistry itemRegistry, String line) {
+		String[] fields = StringUtils.splitPreserveAllTokens(line, SEPARATOR);
+		if(fields.length!=4) {
+			logger.debug("Ignoring invalid line in spool file '{}': {}", spoolFile, line);
+			return null;
+		}
+		String itemName = StringEscapeUtils.unescapeJava(fields[1]);
+		try {
+			Item item = itemRegistry.getItem(itemName);
+			State state = TypeParser.parseState(item.getAcceptedDataTypes(), StringEscapeUtils.unescapeJava(fields[3]));
+			if(state==null) {
+				logger.debug("Ignoring spilled sample of item '{}' as its state cannot be restored.", itemName);
+				return null;
+			}
+			String alias = fields[2].length()==0 ? null : StringEscapeUtils.unescapeJava(fields[2]);
+			return new PersistenceSample(item, alias, state, new Date(Long.parseLong(fields[0])));
+		} catch (ItemNotFoundException e) {
+			logger.debug("Ignoring spilled sample of item '{}' as the item does not exist anymore.", itemName);
+		} catch (NumberFormatException e) {
+			logger.debug("Ignoring invalid line in spool file '{}': {}", spoolFile, line);
+		}
+		return null;
+	}
+
+	private ItemRegistry getItemRegistry() {
+		PersistenceManager persistenceManager = PersistenceManager.getInstance();
+		return persistenceManager!=null ? persistenceManager.itemRegistry : null;
+	}
+
+	/**
+	 * @return the number of samples that are currently waiting in memory
+	 */
+	public int getQueueSize() {
+		return queue.size();
+	}
+
+	/**
+	 * @return the maximum number of samples that have been waiting in memory at the same time
+	 */
+	public int getMaxQueueSize() {
+		return maxQueueSize.get();
+	}
+
+	/**
+	 * @return the number of samples that have been handed over to the persistence service
+	 */
+	public long getStoredCount() {
+		return storedCount.get();
+	}
+
+	/**
+	 * @return the number of samples that have been discarded because the queue was full
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * @return the number of samples that have been written to the spool file
+	 */
+	public long getSpilledCount() {
+		return spilledCount.get();
+	}
+
+	/**
+	 * @return the number of samples which the persistence service failed to store
+	 */
+	public long getFailedCount() {
+		return failedCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return "WriteBehindQueue [service=" + service.getName() + ", queueSize=" + getQueueSize()
+				+ ", maxQueueSize=" + getMaxQueueSize() + ", stored=" + getStoredCount()
+				+ ", dropped=" + getDroppedCount() + ", spilled=" + getSpilledCount()
+				+ ", failed=" + getFailedCount() + "]";
+	}
+
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.internal.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.core.binding.BindingChangeListener;
+import org.openhab.core.binding.BindingProvider;
+import org.openhab.core.binding.BindingSubscriptionRegistry;
+import org.openhab.core.events.AbstractEventSubscriber;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.State;
+import org.openhab.core.types.UnDefType;
+
+/**
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ */
+public class EventPublisherImplTest {
+	
+	private EventPublisherImpl eventPublisher;
+	
+	private TestSubscriber subscriber;
+	
+	@Before
+	public void setup() {
+		eventPublisher = new EventPublisherImpl();
+		subscriber = new TestSubscriber();
+		eventPublisher.addEventSubscriber(subscriber, null);
+	}
+	
+	@After
+	public void tearDown() {
+		eventPublisher.deactivate();
+	}
+	
+	@Test
+	public void testSendCommandIsSynchronous() {
+		eventPublisher.activate();
+		eventPublisher.sendCommand("Item1", TestCommand.TEST);
+		
+		assertEquals(1, subscriber.events.size());
+		assertEquals("Item1 command TEST", subscriber.events.get(0));
+	}
+
+	@Test
+	public void testPostedEventsAreDeliveredInOrder() throws InterruptedException {
+		eventPublisher.activate();
+		subscriber.latch = new CountDownLatch(3);
+		eventPublisher.postUpdate("Item1", UnDefType.UNDEF);
+		eventPublisher.postCommand("Item2", TestCommand.TEST);
+		eventPublisher.postUpdate("Item3", UnDefType.NULL);
+		
+		assertTrue(subscriber.latch.await(5, TimeUnit.SECONDS));
+		assertEquals("Item1 update " + UnDefType.UNDEF, subscriber.events.get(0));
+		assertEquals("Item2 command TEST", subscriber.events.get(1));
+		assertEquals("Item3 update " + UnDefType.NULL, subscriber.events.get(2));
+	}
+	
+	@Test
+	public void testRemovedSubscriberIsNotCalled() {
+		eventPublisher.removeEventSubscriber(subscriber, null);
+		eventPublisher.sendCommand("Item1", TestCommand.TEST);
+		assertTrue(subscriber.events.isEmpty());
+	}
+	
+	@Test
+	public void testFailingSubscriberDoesNotAffectOthers() {
+		eventPublisher.addEventSubscriber(new AbstractEventSubscriber() {
+			public void receiveCommand(String itemName, Command command) {
+				throw new IllegalStateException("test");
+			}
+		}, null);
+		TestSubscriber secondSubscriber = new TestSubscriber();
+		eventPublisher.addEventSubscriber(secondSubscriber, null);
+		
+		eventPublisher.sendCommand("Item1", TestCommand.TEST);
+		assertEquals(1, subscriber.events.size());
+		assertEquals(1, secondSubscriber.events.size());
+	}
+	
+	
+	@Test
+	public void testTopicsProperty() {
+		TestSubscriber commandSubscriber = new TestSubscriber();
+		Map<String, Object> properties = new HashMap<String, Object>();
+		properties.put(EventPublisherImpl.TOPICS_PROPERTY, "openhab/command/*");
+		eventPublisher.addEventSubscriber(commandSubscriber, properties);
+		
+		eventPublisher.postUpdate("Item1", UnDefType.UNDEF);
+		eventPublisher.sendCommand("Item1", TestCommand.TEST);
+		assertEquals(2, subscriber.events.size());
+		assertEquals(1, commandSubscriber.events.size());
+		assertEquals("Item1 command TEST", commandSubscriber.events.get(0));
+	}
+	
+	@Test
+	public void testItemRouting() {
+		TestSubscriber routedSubscriber = new TestSubscriber();
+		Map<String, Object> properties = new HashMap<String, Object>();
+		properties.put(EventPublisherImpl.ITEM_ROUTING_PROPERTY, Boolean.TRUE);
+		eventPublisher.addEventSubscriber(routedSubscriber, properties);
+		
+		TestBindingProvider provider = new TestBindingProvider();
+		provider.itemNames.add("Item1");
+		BindingSubscriptionRegistry registry = BindingSubscriptionRegistry.getInstance();
+		registry.addSubscriber(provider, routedSubscriber);
+		try {
+			eventPublisher.sendCommand("Item1", TestCommand.TEST);
+			eventPublisher.sendCommand("Item2", TestCommand.TEST);
+			assertEquals(1, routedSubscriber.events.size());
+			assertEquals("Item1 command TEST", routedSubscriber.events.get(0));
+			
+			provider.itemNames.add("Item2");
+			registry.bindingChanged(provider, "Item2");
+			eventPublisher.sendCommand("Item2", TestCommand.TEST);
+			assertEquals(2, routedSubscriber.events.size());
+			
+			provider.itemNames.clear();
+			registry.allBindingsChanged(provider);
+			eventPublisher.sendCommand("Item1", TestCommand.TEST);
+			eventPublisher.sendCommand("Item2", TestCommand.TEST);
+			assertEquals(2, routedSubscriber.events.size());
+			
+			// the unrouted subscriber has received all events
+			assertEquals(5, subscriber.events.size());
+		} finally {
+			registry.removeSubscriber(provider, routedSubscriber);
+		}
+	}
+	
+	
+	static class TestBindingProvider implements BindingProvider {
+		
+		Collection<String> itemNames = new ArrayList<String>();
+
+		public void addBindingChangeListener(BindingChangeListener listener) {
+		}
+
+		public void removeBindingChangeListener(BindingChangeListener listener) {
+		}
+
+		public boolean providesBindingFor(String itemName) {
+			return itemNames.contains(itemName);
+		}
+
+		public boolean providesBinding() {
+			return !itemNames.isEmpty();
+		}
+
+		public Collection<String> getItemNames() {
+			return itemNames;
+		}
+	}
+	
+	static class TestSubscriber extends AbstractEventSubscriber {
+		
+		List<String> events = new CopyOnWriteArrayList<String>();
+		
+		CountDownLatch latch = new CountDownLatch(0);
+
+		public void receiveCommand(String itemName, Command command) {
+			events.add(itemName + " command " + command);
+			latch.countDown();
+		}
+
+		public void receiveUpdate(String itemName, State newState) {
+			events.add(itemName + " update " + newState);
+			latch.countDown();
+		}
+	}
+	
+	enum TestCommand implements Command {
+		TEST;
+
+		public String format(String pattern) {
+			return String.format(pattern, this.toString());
+		}
+	}
+
+}
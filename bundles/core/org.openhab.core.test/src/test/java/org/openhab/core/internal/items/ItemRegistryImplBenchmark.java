@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.internal.items;
+
+import org.junit.Test;
+import org.openhab.core.internal.items.ItemRegistryImplTest.TestItem;
+import org.openhab.core.internal.items.ItemRegistryImplTest.TestItemProvider;
+import org.openhab.core.items.ItemNotFoundException;
+
+/**
+ * Measures the cost of item lookups by name and by wildcard pattern depending
+ * on the size of the registry. The build does not run it, as its name does not match
+ * the test class patterns of surefire. To run it, start it as a JUnit test from the IDE,
+ * or run <code>mvn test -Dtest=ItemRegistryImplBenchmark</code> in the org.openhab.core.test
+ * bundle.
+ * 
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ */
+public class ItemRegistryImplBenchmark {
+	
+	private static final int[] REGISTRY_SIZES = { 100, 1000, 4000, 10000 };
+
+	private static final int WARMUP_ITERATIONS = 100000;
+
+	private static final int MEASURE_ITERATIONS = 1000000;
+
+	@Test
+	public void benchmarkGetItem() throws ItemNotFoundException {
+		for(int size : REGISTRY_SIZES) {
+			ItemRegistryImpl registry = createRegistry(size);
+			String[] names = new String[size];
+			for(int i = 0; i < size; i++) {
+				names[i] = "Item_" + i;
+			}
+			
+			int hits = 0;
+			for(int i = 0; i < WARMUP_ITERATIONS; i++) {
+				if(registry.getItem(names[i % size])!=null) hits++;
+			}
+			long start = System.nanoTime();
+			for(int i = 0; i < MEASURE_ITERATIONS; i++) {
+				if(registry.getItem(names[i % size])!=null) hits++;
+			}
+			long duration = System.nanoTime() - start;
+			System.out.println(String.format("getItem() with %5d items: %8.1f ns/op (%d hits)", 
+					size, (double) duration / MEASURE_ITERATIONS, hits));
+		}
+	}
+
+	@Test
+	public void benchmarkGetItemsByPattern() {
+		for(int size : REGISTRY_SIZES) {
+			ItemRegistryImpl registry = createRegistry(size);
+			int iterations = MEASURE_ITERATIONS / size;
+			
+			int matches = 0;
+			for(int i = 0; i < iterations; i++) {
+				matches += registry.getItems("Item_1*").size();
+			}
+			long start = System.nanoTime();
+			for(int i = 0; i < iterations; i++) {
+				matches += registry.getItems("Item_1*").size();
+			}
+			long duration = System.nanoTime() - start;
+			System.out.println(String.format("getItems(pattern) with %5d items: %10.1f ns/op (%d matches)", 
+					size, (double) duration / iterations, matches));
+		}
+	}
+
+	private ItemRegistryImpl createRegistry(int size) {
+		TestItemProvider provider = new TestItemProvider();
+		for(int i = 0; i < size; i++) {
+			provider.items.add(new TestItem("Item_" + i));
+		}
+		ItemRegistryImpl registry = new ItemRegistryImpl();
+		registry.addItemProvider(provider);
+		return registry;
+	}
+
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.internal.items;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.core.items.GenericItem;
+import org.openhab.core.items.Item;
+import org.openhab.core.items.ItemNotFoundException;
+import org.openhab.core.items.ItemProvider;
+import org.openhab.core.items.ItemsChangeListener;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.State;
+
+/**
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ */
+public class ItemRegistryImplTest {
+	
+	private ItemRegistryImpl registry;
+	
+	private TestItemProvider provider;
+	
+	@Before
+	public void setup() {
+		registry = new ItemRegistryImpl();
+		provider = new TestItemProvider();
+		provider.items.add(new TestItem("Temperature_Living"));
+		provider.items.add(new TestItem("Temperature_Kitchen"));
+		provider.items.add(new TestItem("Light_Kitchen"));
+		registry.addItemProvider(provider);
+	}
+	
+	@Test
+	public void testGetItem() throws ItemNotFoundException {
+		assertEquals("Light_Kitchen", registry.getItem("Light_Kitchen").getName());
+	}
+
+	@Test(expected=ItemNotFoundException.class)
+	public void testGetUnknownItem() throws ItemNotFoundException {
+		registry.getItem("Unknown");
+	}
+	
+	@Test
+	public void testGetItemsByPattern() {
+		assertEquals(2, registry.getItems("Temperature_*").size());
+		assertEquals(2, registry.getItems("*_Kitchen").size());
+		assertEquals(1, registry.getItems("Light_Kitchen").size());
+		assertEquals(0, registry.getItems("Light_Living").size());
+		// the compiled pattern is cached, a second query must return the same result
+		assertEquals(2, registry.getItems("Temperature_*").size());
+	}
+
+	@Test
+	public void testItemAddedAndRemoved() throws ItemNotFoundException {
+		Item item = new TestItem("Light_Living");
+		registry.itemAdded(provider, item);
+		assertSame(item, registry.getItem("Light_Living"));
+		assertEquals(2, registry.getItems("Light_*").size());
+		
+		registry.itemRemoved(provider, item);
+		assertTrue(registry.getItems("Light_Living").isEmpty());
+	}
+	
+	@Test
+	public void testAllItemsChanged() throws ItemNotFoundException {
+		Item item = new TestItem("Light_Living");
+		provider.items.clear();
+		provider.items.add(item);
+		registry.allItemsChanged(provider, null);
+		
+		assertSame(item, registry.getItem("Light_Living"));
+		assertEquals(1, registry.getItems().size());
+		assertTrue(registry.getItems("Temperature_*").isEmpty());
+	}
+	
+	@Test
+	public void testRemoveItemProvider() {
+		registry.removeItemProvider(provider);
+		assertTrue(registry.getItems().isEmpty());
+		assertTrue(registry.getItems("*").isEmpty());
+	}
+	
+	@Test
+	public void testRemovalKeepsItemOfOtherProvider() throws ItemNotFoundException {
+		TestItemProvider otherProvider = new TestItemProvider();
+		Item otherItem = new TestItem("Light_Kitchen");
+		otherProvider.items.add(otherItem);
+		registry.addItemProvider(otherProvider);
+		
+		assertSame(otherItem, registry.getItem("Light_Kitchen"));
+		
+		// removing the shadowed item of the first provider must not remove the other one
+		registry.itemRemoved(provider, provider.items.get(2));
+		assertSame(otherItem, registry.getItem("Light_Kitchen"));
+	}
+	
+	@Test
+	public void testRemovalIndexesItemOfOtherProvider() throws ItemNotFoundException {
+		Item item = provider.items.get(2);
+		TestItemProvider otherProvider = new TestItemProvider();
+		Item otherItem = new TestItem("Light_Kitchen");
+		otherProvider.items.add(otherItem);
+		registry.addItemProvider(otherProvider);
+		
+		// removing the indexed item must make the item of the first provider available again
+		registry.itemRemoved(otherProvider, otherItem);
+		assertSame(item, registry.getItem("Light_Kitchen"));
+		
+		registry.addItemProvider(otherProvider);
+		registry.removeItemProvider(otherProvider);
+		assertSame(item, registry.getItem("Light_Kitchen"));
+	}
+	
+	@Test
+	public void testGetItemsByPatternReturnsItemsOfAllProviders() {
+		TestItemProvider otherProvider = new TestItemProvider();
+		otherProvider.items.add(new TestItem("Light_Kitchen"));
+		registry.addItemProvider(otherProvider);
+		
+		assertEquals(3, registry.getItems("*_Kitchen").size());
+	}
+	
+	
+	static class TestItemProvider implements ItemProvider {
+		
+		List<Item> items = new ArrayList<Item>();
+
+		public Collection<Item> getItems() {
+			return items;
+		}
+
+		public void addItemChangeListener(ItemsChangeListener listener) {
+		}
+
+		public void removeItemChangeListener(ItemsChangeListener listener) {
+		}
+	}
+	
+	static class TestItem extends GenericItem {
+
+		public TestItem(String name) {
+			super(name);
+		}
+
+		public List<Class<? extends State>> getAcceptedDataTypes() {
+			return null;
+		}
+
+		public List<Class<? extends Command>> getAcceptedCommandTypes() {
+			return null;
+		}
+	}
+
+}
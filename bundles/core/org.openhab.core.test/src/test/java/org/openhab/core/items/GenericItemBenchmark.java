@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.items;
+
+import org.junit.Test;
+import org.openhab.core.items.GenericItemTest.CountingListener;
+import org.openhab.core.items.GenericItemTest.TestItem;
+import org.openhab.core.types.State;
+import org.openhab.core.types.UnDefType;
+
+/**
+ * Measures the cost of setState() depending on the number of registered listeners.
+ * This is not part of the regular test run and is meant to be started manually,
+ * e.g. from the IDE.
+ * 
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ */
+public class GenericItemBenchmark {
+
+	private static final int[] LISTENER_COUNTS = { 0, 1, 5, 20, 50 };
+
+	private static final int WARMUP_ITERATIONS = 100000;
+
+	private static final int MEASURE_ITERATIONS = 1000000;
+
+	@Test
+	public void benchmarkSetState() {
+		State[] states = { UnDefType.NULL, UnDefType.UNDEF };
+		for(int count : LISTENER_COUNTS) {
+			TestItem item = new TestItem("item");
+			CountingListener[] listeners = new CountingListener[count];
+			for(int i = 0; i < count; i++) {
+				listeners[i] = new CountingListener();
+				item.addStateChangeListener(listeners[i]);
+			}
+			
+			for(int i = 0; i < WARMUP_ITERATIONS; i++) {
+				item.setState(states[i & 1]);
+			}
+			long start = System.nanoTime();
+			for(int i = 0; i < MEASURE_ITERATIONS; i++) {
+				item.setState(states[i & 1]);
+			}
+			long duration = System.nanoTime() - start;
+			System.out.println(String.format("setState() with %2d listeners: %8.1f ns/op", 
+					count, (double) duration / MEASURE_ITERATIONS));
+		}
+	}
+
+}
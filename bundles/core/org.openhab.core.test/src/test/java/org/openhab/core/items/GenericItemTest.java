@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.items;
+
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.State;
+import org.openhab.core.types.UnDefType;
+
+/**
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ */
+public class GenericItemTest {
+
+	@Test
+	public void testListenerIsNotifiedOnce() {
+		TestItem item = new TestItem("item");
+		CountingListener listener = new CountingListener();
+		item.addStateChangeListener(listener);
+		item.addStateChangeListener(listener);
+		
+		item.setState(UnDefType.UNDEF);
+		Assert.assertEquals(1, listener.updates);
+		Assert.assertEquals(1, listener.changes);
+		
+		item.setState(UnDefType.UNDEF);
+		Assert.assertEquals(2, listener.updates);
+		Assert.assertEquals(1, listener.changes);
+	}
+	
+	@Test
+	public void testRemovedListenerIsNotNotified() {
+		TestItem item = new TestItem("item");
+		CountingListener listener1 = new CountingListener();
+		CountingListener listener2 = new CountingListener();
+		item.addStateChangeListener(listener1);
+		item.addStateChangeListener(listener2);
+		item.removeStateChangeListener(listener1);
+		
+		item.setState(UnDefType.UNDEF);
+		Assert.assertEquals(0, listener1.updates);
+		Assert.assertEquals(1, listener2.updates);
+	}
+	
+	@Test
+	public void testListenersAddedDuringNotificationAreNotifiedNextTime() {
+		final TestItem item = new TestItem("item");
+		final CountingListener addedListener = new CountingListener();
+		item.addStateChangeListener(new CountingListener() {
+			@Override
+			public void stateUpdated(Item item, State state) {
+				super.stateUpdated(item, state);
+				((GenericItem) item).addStateChangeListener(addedListener);
+			}
+		});
+		
+		item.setState(UnDefType.UNDEF);
+		Assert.assertEquals(0, addedListener.updates);
+		item.setState(UnDefType.NULL);
+		Assert.assertEquals(1, addedListener.updates);
+	}
+	
+	static class CountingListener implements StateChangeListener {
+		int updates = 0;
+		int changes = 0;
+		
+		public void stateUpdated(Item item, State state) {
+			updates++;
+		}
+
+		public void stateChanged(Item item, State oldState, State newState) {
+			changes++;
+		}
+	}
+	
+	static class TestItem extends GenericItem {
+
+		public TestItem(String name) {
+			super(name);
+		}
+
+		@Override
+		public List<Class<? extends State>> getAcceptedDataTypes() {
+			return null;
+		}
+
+		@Override
+		public List<Class<? extends Command>> getAcceptedCommandTypes() {
+			return null;
+		}
+		
+	}
+
+}
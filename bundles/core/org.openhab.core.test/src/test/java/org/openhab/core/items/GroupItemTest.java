@@ -11,6 +11,9 @@ package org.openhab.core.items;
 import static org.junit.Assert.fail;
 
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.Assert;
 
@@ -18,6 +21,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.openhab.core.types.Command;
 import org.openhab.core.types.State;
+import org.openhab.core.types.UnDefType;
 
 
 /**
@@ -54,6 +58,82 @@ public class GroupItemTest {
 	}
 	
 	
+	@Test
+	public void testGetAllMembersAfterMembershipChange() {
+		GroupItem subGroup = (GroupItem) rootGroupItem.getMembers().get(3);
+		TestItem newMember = new TestItem("subGroup member 4");
+		subGroup.addMember(newMember);
+		Assert.assertEquals(6, rootGroupItem.getAllMembers().size());
+		Assert.assertTrue(rootGroupItem.getAllMembers().contains(newMember));
+		
+		subGroup.removeMember(newMember);
+		Assert.assertEquals(5, rootGroupItem.getAllMembers().size());
+		Assert.assertFalse(rootGroupItem.getAllMembers().contains(newMember));
+	}
+	
+	@Test
+	public void testEqualityStateIsUpdatedIncrementally() {
+		GroupItem group = new GroupItem("group");
+		TestItem member1 = new TestItem("member1");
+		TestItem member2 = new TestItem("member2");
+		group.addMember(member1);
+		group.addMember(member2);
+		
+		member1.setState(UnDefType.UNDEF);
+		Assert.assertEquals(UnDefType.UNDEF, group.getState());
+
+		member2.setState(UnDefType.UNDEF);
+		Assert.assertEquals(UnDefType.UNDEF, group.getState());
+		
+		member2.setState(UnDefType.NULL);
+		member1.setState(UnDefType.NULL);
+		Assert.assertEquals(UnDefType.NULL, group.getState());
+		
+		TestItem member3 = new TestItem("member3");
+		member3.setState(UnDefType.UNDEF);
+		group.addMember(member3);
+		member1.setState(UnDefType.NULL);
+		Assert.assertEquals(UnDefType.UNDEF, group.getState());
+		
+		group.removeMember(member3);
+		member1.setState(UnDefType.NULL);
+		Assert.assertEquals(UnDefType.NULL, group.getState());
+	}
+	
+	
+	@Test
+	public void testCoalescedGroupUpdates() throws InterruptedException {
+		GroupItem group = new GroupItem("group");
+		// the window is much longer than it takes to update all members
+		group.setCoalescingWindow(1000);
+		TestItem[] lights = new TestItem[60];
+		for (int i = 0; i < lights.length; i++) {
+			lights[i] = new TestItem("light" + i);
+			group.addMember(lights[i]);
+		}
+		final AtomicInteger updates = new AtomicInteger();
+		final CountDownLatch recalculated = new CountDownLatch(1);
+		// items only keep weak references to their listeners, so we must keep a strong one
+		StateChangeListener listener = new StateChangeListener() {
+			public void stateUpdated(Item item, State state) {
+				updates.incrementAndGet();
+				recalculated.countDown();
+			}
+			public void stateChanged(Item item, State oldState, State newState) {
+			}
+		};
+		group.addStateChangeListener(listener);
+		
+		for (TestItem light : lights) {
+			light.setState(UnDefType.UNDEF);
+		}
+		Assert.assertTrue(recalculated.await(10, TimeUnit.SECONDS));
+		
+		Assert.assertEquals(1, updates.get());
+		Assert.assertEquals(UnDefType.UNDEF, group.getState());
+		group.removeStateChangeListener(listener);
+	}
+	
 	class TestItem extends GenericItem {
 
 		public TestItem(String name) {
@@ -20,6 +20,11 @@ import org.openhab.core.types.State;
 /**
  * Base class for bindings which send events.
  * 
+ * If all providers of a binding register it at the {@link BindingSubscriptionRegistry}
+ * (as e.g. the generic binding providers do), the binding can be registered with the
+ * service property <code>event.itemrouting=true</code>. The event bus will then only
+ * pass events for bound items to it.
+ * 
  * @author Thomas.Eichstaedt-Engelen
  * @author Kai Kreuzer
  * @since 1.0.0
@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.binding;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.openhab.core.events.EventSubscriber;
+
+/**
+ * <p>The subscription registry keeps track of which bindings are bound to which items.
+ * It is filled by the binding providers: every binding which registers as a
+ * {@link BindingChangeListener} at a provider is subscribed to all item names that
+ * this provider has a binding configuration for.</p>
+ * 
+ * <p>The event bus uses this registry to route commands and updates only to those
+ * bindings that are bound to the item in question, instead of broadcasting them to
+ * all bindings, which then ask their providers whether they are interested.</p>
+ * 
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ */
+public final class BindingSubscriptionRegistry implements BindingChangeListener {
+	
+	private static final BindingSubscriptionRegistry instance = new BindingSubscriptionRegistry();
+	
+	private static final EventSubscriber[] NO_SUBSCRIBERS = new EventSubscriber[0];
+	
+	/** the subscribed bindings of each binding provider */
+	private final Map<BindingProvider, Set<EventSubscriber>> providerSubscribers = new HashMap<BindingProvider, Set<EventSubscriber>>();
+	
+	/** the bound item names of each binding provider that has any subscribers */
+	private final Map<BindingProvider, Set<String>> providerItemNames = new HashMap<BindingProvider, Set<String>>();
+	
+	/** the routing table, which maps item names to all subscribed bindings */
+	private final ConcurrentMap<String, EventSubscriber[]> itemSubscribers = new ConcurrentHashMap<String, EventSubscriber[]>();
+	
+	private BindingSubscriptionRegistry() {
+	}
+	
+	public static BindingSubscriptionRegistry getInstance() {
+		return instance;
+	}
+	
+	/**
+	 * Returns all bindings that are bound to the given item. The returned array
+	 * must not be modified.
+	 * 
+	 * @param itemName the name of the item
+	 * @return all subscribed bindings, never <code>null</code>
+	 */
+	public EventSubscriber[] getSubscribers(String itemName) {
+		EventSubscriber[] subscribers = itemSubscribers.get(itemName);
+		return subscribers != null ? subscribers : NO_SUBSCRIBERS;
+	}
+	
+	/**
+	 * Subscribes the given binding to all items, that the given provider has
+	 * a binding configuration for.
+	 * 
+	 * @param provider the binding provider
+	 * @param subscriber the binding to subscribe
+	 */
+	public synchronized void addSubscriber(BindingProvider provider, EventSubscriber subscriber) {
+		Set<EventSubscriber> subscribers = providerSubscribers.get(provider);
+		if(subscribers==null) {
+			subscribers = new HashSet<EventSubscriber>();
+			providerSubscribers.put(provider, subscribers);
+			providerItemNames.put(provider, new HashSet<String>(provider.getItemNames()));
+		}
+		if(subscribers.add(subscriber)) {
+			updateRoutes(providerItemNames.get(provider));
+		}
+	}
+	
+	/**
+	 * Removes the subscriptions of the given binding that result from the given provider.
+	 * 
+	 * @param provider the binding provider
+	 * @param subscriber the binding to unsubscribe
+	 */
+	public synchronized void removeSubscriber(BindingProvider provider, EventSubscriber subscriber) {
+		Set<EventSubscriber> subscribers = providerSubscribers.get(provider);
+		if(subscribers!=null && subscribers.remove(subscriber)) {
+			Set<String> itemNames = providerItemNames.get(provider);
+			if(subscribers.isEmpty()) {
+				// we do not need to track this provider any longer
+				providerSubscribers.remove(provider);
+				providerItemNames.remove(provider);
+			}
+			updateRoutes(itemNames);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized void bindingChanged(BindingProvider provider, String itemName) {
+		Set<String> itemNames = providerItemNames.get(provider);
+		if(itemNames!=null) {
+			if(provider.providesBindingFor(itemName)) {
+				itemNames.add(itemName);
+			} else {
+				itemNames.remove(itemName);
+			}
+			updateRoute(itemName);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized void allBindingsChanged(BindingProvider provider) {
+		if(providerItemNames.containsKey(provider)) {
+			Set<String> newItemNames = new HashSet<String>(provider.getItemNames());
+			Set<String> oldItemNames = providerItemNames.put(provider, newItemNames);
+			updateRoutes(oldItemNames);
+			updateRoutes(newItemNames);
+		}
+	}
+	
+	private void updateRoutes(Set<String> itemNames) {
+		for(String itemName : itemNames) {
+			updateRoute(itemName);
+		}
+	}
+	
+	private void updateRoute(String itemName) {
+		Set<EventSubscriber> subscribers = new LinkedHashSet<EventSubscriber>();
+		for(Entry<BindingProvider, Set<String>> entry : providerItemNames.entrySet()) {
+			if(entry.getValue().contains(itemName)) {
+				subscribers.addAll(providerSubscribers.get(entry.getKey()));
+			}
+		}
+		if(subscribers.isEmpty()) {
+			itemSubscribers.remove(itemName);
+		} else {
+			itemSubscribers.put(itemName, subscribers.toArray(new EventSubscriber[subscribers.size()]));
+		}
+	}
+
+}
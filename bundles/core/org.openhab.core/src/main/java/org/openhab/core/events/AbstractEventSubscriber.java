@@ -8,39 +8,43 @@
  */
 package org.openhab.core.events;
 
-import static org.openhab.core.events.EventConstants.TOPIC_PREFIX;
-import static org.openhab.core.events.EventConstants.TOPIC_SEPERATOR;
+import static org.openhab.core.events.EventConstants.COMMAND_TOPIC_PREFIX;
+import static org.openhab.core.events.EventConstants.UPDATE_TOPIC_PREFIX;
 
 import org.openhab.core.types.Command;
 import org.openhab.core.types.State;
-import org.openhab.core.types.EventType;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventHandler;
 
+/**
+ * Base class for event subscribers. Subclasses can either be registered as
+ * {@link EventSubscriber} services, in which case they are directly called by
+ * the in-process event bus, or as OSGi {@link EventHandler}s, which receive
+ * the events through the EventAdmin service.
+ * 
+ * @author Kai Kreuzer
+ * @since 0.1.0
+ */
 abstract public class AbstractEventSubscriber implements EventSubscriber, EventHandler {
 	
 	/**
 	 * {@inheritDoc}
 	 */
 	public void handleEvent(Event event) {  
-		String itemName = (String) event.getProperty("item");
-		
 		String topic = event.getTopic();
-		String[] topicParts = topic.split(TOPIC_SEPERATOR);
-		
-		if(!(topicParts.length > 2) || !topicParts[0].equals(TOPIC_PREFIX)) {
-			return; // we have received an event with an invalid topic
-		}
-		String operation = topicParts[1];
 		
-		if(operation.equals(EventType.UPDATE.toString())) {
+		if(isTopicOfType(topic, UPDATE_TOPIC_PREFIX)) {
 			State newState = (State) event.getProperty("state");
-			if(newState!=null) receiveUpdate(itemName, newState);
-		}
-		if(operation.equals(EventType.COMMAND.toString())) {
+			if(newState!=null) receiveUpdate((String) event.getProperty("item"), newState);
+		} else if(isTopicOfType(topic, COMMAND_TOPIC_PREFIX)) {
 			Command command = (Command) event.getProperty("command");
-			if(command!=null) receiveCommand(itemName, command);
+			if(command!=null) receiveCommand((String) event.getProperty("item"), command);
 		}
+		// else we have received an event with an invalid topic
+	}
+	
+	private static boolean isTopicOfType(String topic, String prefix) {
+		return topic.length() > prefix.length() && topic.startsWith(prefix);
 	}
 	
 	/**
@@ -8,6 +8,8 @@
  */
 package org.openhab.core.events;
 
+import org.openhab.core.types.EventType;
+
 /**
  * This interface defines constants required for using the OSGi Event Admin service.
  * 
@@ -20,4 +22,10 @@ public interface EventConstants {
 
 	public static final String TOPIC_SEPERATOR = "/";
 	
+	/** the topic prefix of all command events, i.e. "openhab/command/" */
+	public static final String COMMAND_TOPIC_PREFIX = TOPIC_PREFIX + TOPIC_SEPERATOR + EventType.COMMAND + TOPIC_SEPERATOR;
+
+	/** the topic prefix of all update events, i.e. "openhab/update/" */
+	public static final String UPDATE_TOPIC_PREFIX = TOPIC_PREFIX + TOPIC_SEPERATOR + EventType.UPDATE + TOPIC_SEPERATOR;
+	
 }
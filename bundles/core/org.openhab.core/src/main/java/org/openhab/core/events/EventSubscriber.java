@@ -13,6 +13,8 @@ import org.openhab.core.types.State;
 
 /**
  * An EventSubscriber receives events from the openHAB event bus for further processing.
+ * All services that are registered under this interface are directly called by the
+ * in-process event bus with the already parsed item name and command or state.
  * 
  * @author Kai Kreuzer
  * @since 0.1.0
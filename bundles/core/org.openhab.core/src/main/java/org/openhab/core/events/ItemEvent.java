@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.events;
+
+import org.openhab.core.types.Command;
+import org.openhab.core.types.EventType;
+import org.openhab.core.types.State;
+import org.openhab.core.types.Type;
+
+/**
+ * An ItemEvent is the pre-parsed representation of a message on the openHAB
+ * event bus. In contrast to OSGi events it does not need to be converted from
+ * or to a topic string and a property dictionary, so that it can be passed to
+ * {@link EventSubscriber}s without any further allocations.
+ * 
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ */
+public final class ItemEvent {
+
+	private final String itemName;
+	
+	private final EventType type;
+	
+	private final Type payload;
+	
+	private ItemEvent(String itemName, EventType type, Type payload) {
+		this.itemName = itemName;
+		this.type = type;
+		this.payload = payload;
+	}
+	
+	/**
+	 * Creates a new event for a command sent to an item.
+	 * 
+	 * @param itemName the name of the item the command is sent to
+	 * @param command the command
+	 * @return the new event
+	 */
+	public static ItemEvent createCommandEvent(String itemName, Command command) {
+		return new ItemEvent(itemName, EventType.COMMAND, command);
+	}
+
+	/**
+	 * Creates a new event for a status update of an item.
+	 * 
+	 * @param itemName the name of the item that has been updated
+	 * @param newState the new state of the item
+	 * @return the new event
+	 */
+	public static ItemEvent createUpdateEvent(String itemName, State newState) {
+		return new ItemEvent(itemName, EventType.UPDATE, newState);
+	}
+
+	/**
+	 * @return the name of the item this event is about
+	 */
+	public String getItemName() {
+		return itemName;
+	}
+
+	/**
+	 * @return the type of this event
+	 */
+	public EventType getType() {
+		return type;
+	}
+	
+	/**
+	 * @return the command of this event or <code>null</code>, if this is not a command event
+	 */
+	public Command getCommand() {
+		return type == EventType.COMMAND ? (Command) payload : null;
+	}
+
+	/**
+	 * @return the state of this event or <code>null</code>, if this is not an update event
+	 */
+	public State getState() {
+		return type == EventType.UPDATE ? (State) payload : null;
+	}
+	
+	/**
+	 * Passes this event to the according typed callback of the given subscriber.
+	 * 
+	 * @param subscriber the subscriber to notify
+	 */
+	public void dispatchTo(EventSubscriber subscriber) {
+		switch(type) {
+			case COMMAND: subscriber.receiveCommand(itemName, (Command) payload); break;
+			case UPDATE:  subscriber.receiveUpdate(itemName, (State) payload); break;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return itemName + " (" + type + ": " + payload + ")";
+	}
+	
+}
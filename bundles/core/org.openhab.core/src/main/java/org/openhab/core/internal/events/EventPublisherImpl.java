@@ -8,13 +8,22 @@
  */
 package org.openhab.core.internal.events;
 
-import static org.openhab.core.events.EventConstants.TOPIC_PREFIX;
-import static org.openhab.core.events.EventConstants.TOPIC_SEPERATOR;
+import static org.openhab.core.events.EventConstants.COMMAND_TOPIC_PREFIX;
+import static org.openhab.core.events.EventConstants.UPDATE_TOPIC_PREFIX;
 
+import java.util.Collection;
 import java.util.Dictionary;
 import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
 
+import org.openhab.core.binding.BindingSubscriptionRegistry;
 import org.openhab.core.events.EventPublisher;
+import org.openhab.core.events.EventSubscriber;
+import org.openhab.core.events.ItemEvent;
 import org.openhab.core.types.Command;
 import org.openhab.core.types.EventType;
 import org.openhab.core.types.State;
@@ -25,8 +34,21 @@ import org.slf4j.LoggerFactory;
 
 /**
  * This is the main implementation of the {@link EventPublisher} interface.
- * Through it, openHAB events can be sent to the OSGi EventAdmin service
- * in order to broadcast them.
+ * It is the in-process event bus of openHAB: all registered {@link EventSubscriber}s
+ * are directly called with pre-parsed {@link ItemEvent}s. Asynchronous events are
+ * queued and delivered in order by a single dispatcher thread.
+ * 
+ * Subscribers can restrict the events they receive by the service property
+ * <code>event.topics</code>, which is interpreted like for the OSGi EventAdmin
+ * (e.g. <code>openhab/command/*</code> for commands only). Bindings that set the
+ * service property <code>event.itemrouting</code> to <code>true</code> only
+ * receive events for the items they are bound to according to the
+ * {@link BindingSubscriptionRegistry}.
+ * 
+ * For compatibility with subscribers that are registered as OSGi EventHandlers, 
+ * all events are additionally sent to the OSGi EventAdmin service, if available.
+ * This bridge can be switched off by setting the system property 
+ * <code>openhab.eventadmin.bridge</code> to <code>false</code>.
  * 
  * @author Kai Kreuzer
  *
@@ -38,6 +60,44 @@ public class EventPublisherImpl implements EventPublisher {
 		
 	private EventAdmin eventAdmin;
 	
+	/** the name of the service property that enables the routing by item name */
+	public static final String ITEM_ROUTING_PROPERTY = "event.itemrouting";
+	
+	/** the name of the service property that defines the topics a subscriber is interested in */
+	public static final String TOPICS_PROPERTY = "event.topics";
+	
+	/** all subscribers that are called for every event */
+	private final Collection<Subscription> subscriptions = new CopyOnWriteArrayList<Subscription>();
+	
+	/** all subscribers that are only called for the items they are bound to */
+	private final Map<EventSubscriber, Subscription> routedSubscriptions = new ConcurrentHashMap<EventSubscriber, Subscription>();
+	
+	private final BindingSubscriptionRegistry subscriptionRegistry = BindingSubscriptionRegistry.getInstance();
+	
+	/** holds the asynchronous events until they are delivered by the dispatcher */
+	private final BlockingQueue<ItemEvent> eventQueue = new LinkedBlockingQueue<ItemEvent>();
+	
+	private volatile EventDispatcher dispatcher = null;
+	
+	private final boolean eventAdminBridgeEnabled = 
+		!"false".equalsIgnoreCase(System.getProperty("openhab.eventadmin.bridge"));
+	
+	
+	public void activate() {
+		dispatcher = new EventDispatcher();
+		dispatcher.start();
+		if(!eventAdminBridgeEnabled) {
+			logger.info("Events are not sent to the OSGi EventAdmin service.");
+		}
+	}
+	
+	public void deactivate() {
+		if(dispatcher!=null) {
+			dispatcher.shutdown();
+			dispatcher = null;
+		}
+		eventQueue.clear();
+	}
 	
 	public void setEventAdmin(EventAdmin eventAdmin) {
 		this.eventAdmin = eventAdmin;
@@ -47,12 +107,32 @@ public class EventPublisherImpl implements EventPublisher {
 		this.eventAdmin = null;
 	}
 	
+	public void addEventSubscriber(EventSubscriber subscriber, Map<String, Object> properties) {
+		Subscription subscription = new Subscription(subscriber, properties!=null ? properties.get(TOPICS_PROPERTY) : null);
+		if(properties!=null && isTrue(properties.get(ITEM_ROUTING_PROPERTY))) {
+			routedSubscriptions.put(subscriber, subscription);
+		} else {
+			subscriptions.add(subscription);
+		}
+	}
+
+	public void removeEventSubscriber(EventSubscriber subscriber, Map<String, Object> properties) {
+		routedSubscriptions.remove(subscriber);
+		for(Subscription subscription : subscriptions) {
+			if(subscription.subscriber==subscriber) {
+				subscriptions.remove(subscription);
+			}
+		}
+	}
+	
 
 	/* (non-Javadoc)
 	 * @see org.openhab.core.internal.events.EventPublisher#sendCommand(org.openhab.core.items.GenericItem, org.openhab.core.datatypes.DataType)
 	 */
 	public void sendCommand(String itemName, Command command) {
 		if (command != null) {
+			dispatch(ItemEvent.createCommandEvent(itemName, command));
+			EventAdmin eventAdmin = getBridgedEventAdmin();
 			if(eventAdmin!=null) eventAdmin.sendEvent(createCommandEvent(itemName, command));
 		} else {
 			logger.warn("given command is NULL, couldn't send command to '{}'", itemName);
@@ -64,6 +144,8 @@ public class EventPublisherImpl implements EventPublisher {
 	 */
 	public void postCommand(String itemName, Command command) {
 		if (command != null) {
+			post(ItemEvent.createCommandEvent(itemName, command));
+			EventAdmin eventAdmin = getBridgedEventAdmin();
 			if(eventAdmin!=null) eventAdmin.postEvent(createCommandEvent(itemName, command));
 		} else {
 			logger.warn("given command is NULL, couldn't post command to '{}'", itemName);
@@ -75,29 +157,156 @@ public class EventPublisherImpl implements EventPublisher {
 	 */
 	public void postUpdate(String itemName, State newState) {
 		if (newState != null) {
+			post(ItemEvent.createUpdateEvent(itemName, newState));
+			EventAdmin eventAdmin = getBridgedEventAdmin();
 			if(eventAdmin!=null) eventAdmin.postEvent(createUpdateEvent(itemName, newState));
 		} else {
 			logger.warn("given new state is NULL, couldn't post update for '{}'", itemName);
 		}
 	}
 	
+	/**
+	 * Queues the given event for asynchronous delivery. If the dispatcher is not
+	 * running (i.e. we have not been activated yet), the event is delivered directly.
+	 * 
+	 * @param event the event to post
+	 */
+	private void post(ItemEvent event) {
+		if(subscriptions.isEmpty() && routedSubscriptions.isEmpty()) {
+			return;
+		}
+		if(dispatcher!=null) {
+			eventQueue.offer(event);
+		} else {
+			dispatch(event);
+		}
+	}
+	
+	/**
+	 * Synchronously delivers the given event to all registered subscribers.
+	 * 
+	 * @param event the event to deliver
+	 */
+	protected void dispatch(ItemEvent event) {
+		for(Subscription subscription : subscriptions) {
+			subscription.deliver(event);
+		}
+		if(!routedSubscriptions.isEmpty()) {
+			for(EventSubscriber subscriber : subscriptionRegistry.getSubscribers(event.getItemName())) {
+				Subscription subscription = routedSubscriptions.get(subscriber);
+				// the binding might be bound to the item, but not be registered on this bus
+				if(subscription!=null) {
+					subscription.deliver(event);
+				}
+			}
+		}
+	}
+	
+	private static boolean isTrue(Object value) {
+		return value!=null && Boolean.valueOf(value.toString());
+	}
+	
+	private EventAdmin getBridgedEventAdmin() {
+		return eventAdminBridgeEnabled ? eventAdmin : null;
+	}
+	
 	private Event createUpdateEvent(String itemName, State newState) {
-		Dictionary<String, Object> properties = new Hashtable<String, Object>();
+		Dictionary<String, Object> properties = new Hashtable<String, Object>(4);
 		properties.put("item", itemName);
 		properties.put("state", newState);
-		return new Event(createTopic(EventType.UPDATE, itemName), properties);
+		return new Event(UPDATE_TOPIC_PREFIX + itemName, properties);
 	}
 
 	private Event createCommandEvent(String itemName, Command command) {
-		Dictionary<String, Object> properties = new Hashtable<String, Object>();
+		Dictionary<String, Object> properties = new Hashtable<String, Object>(4);
 		properties.put("item", itemName);
 		properties.put("command", command);
-		return new Event(createTopic(EventType.COMMAND, itemName) , properties);
+		return new Event(COMMAND_TOPIC_PREFIX + itemName, properties);
 	}
-
-	private String createTopic(EventType type, String itemName) {
-		return TOPIC_PREFIX + TOPIC_SEPERATOR + type + TOPIC_SEPERATOR + itemName;
+	
+	
+	/**
+	 * A subscription holds an event subscriber together with the event types
+	 * it is interested in.
+	 */
+	private static class Subscription {
+		
+		final EventSubscriber subscriber;
+		
+		final boolean commands;
+		
+		final boolean updates;
+		
+		/**
+		 * @param subscriber the subscriber
+		 * @param topics the value of the <code>event.topics</code> property, which can either 
+		 * be a single string, an array of strings or <code>null</code> for all events 
+		 */
+		Subscription(EventSubscriber subscriber, Object topics) {
+			this.subscriber = subscriber;
+			if(topics instanceof String[]) {
+				boolean commands = false;
+				boolean updates = false;
+				for(String topic : (String[]) topics) {
+					commands |= acceptsTopic(topic, EventType.COMMAND);
+					updates |= acceptsTopic(topic, EventType.UPDATE);
+				}
+				this.commands = commands;
+				this.updates = updates;
+			} else if(topics instanceof String) {
+				this.commands = acceptsTopic((String) topics, EventType.COMMAND);
+				this.updates = acceptsTopic((String) topics, EventType.UPDATE);
+			} else {
+				this.commands = true;
+				this.updates = true;
+			}
+		}
+		
+		private static boolean acceptsTopic(String topic, EventType type) {
+			String prefix = type == EventType.COMMAND ? COMMAND_TOPIC_PREFIX : UPDATE_TOPIC_PREFIX;
+			return topic.equals("*") || topic.startsWith(prefix)
+				|| (topic.endsWith("*") && prefix.startsWith(topic.substring(0, topic.length() - 1)));
+		}
+		
+		void deliver(ItemEvent event) {
+			if(event.getType() == EventType.COMMAND ? commands : updates) {
+				try {
+					event.dispatchTo(subscriber);
+				} catch (RuntimeException e) {
+					logger.error("Subscriber '" + subscriber.getClass().getName() + "' threw an exception while processing event '" + event + "'", e);
+				}
+			}
+		}
 	}
 	
+	/**
+	 * The dispatcher thread takes the asynchronous events from the queue and
+	 * delivers them to all subscribers in the order they have been posted.
+	 */
+	private class EventDispatcher extends Thread {
+		
+		private volatile boolean running = true;
+		
+		public EventDispatcher() {
+			super("openHAB Event Dispatcher");
+			setDaemon(true);
+		}
+		
+		public void shutdown() {
+			running = false;
+			interrupt();
+		}
+
+		@Override
+		public void run() {
+			while(running) {
+				try {
+					dispatch(eventQueue.take());
+				} catch (InterruptedException e) {
+					// we have been shut down
+				}
+			}
+		}
+	}
 	
 }
@@ -13,8 +13,10 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.regex.Pattern;
 
 import org.openhab.core.events.EventPublisher;
 import org.openhab.core.items.GenericItem;
@@ -43,6 +45,8 @@ import org.slf4j.LoggerFactory;
 public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 	
 	private static final Logger logger = LoggerFactory.getLogger(ItemRegistryImpl.class);
+	
+	private static final Pattern VALID_ITEM_NAME_PATTERN = Pattern.compile("[a-zA-Z0-9_]*");
 
 	/** if an EventPublisher service is available, we provide it to all items, so that they can communicate over the bus */
 	protected EventPublisher eventPublisher;
@@ -50,6 +54,16 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 	/** this is our local map in which we store all our items */
 	protected Map<ItemProvider, Collection<Item>> itemMap = new ConcurrentHashMap<ItemProvider, Collection<Item>>();
 	
+	/** name-keyed index over all items of all providers, which is kept in sync with the {@link #itemMap};
+	 *  if several providers offer an item with the same name, only one of them is indexed */
+	protected ConcurrentMap<String, Item> itemIndex = new ConcurrentHashMap<String, Item>();
+	
+	/** the maximum number of compiled wildcard patterns that are kept in the {@link #patternCache} */
+	private static final int MAX_CACHED_PATTERNS = 256;
+	
+	/** cache of compiled wildcard patterns, keyed by the pattern as passed to {@link #getItems(String)} */
+	protected Map<String, Pattern> patternCache = new ConcurrentHashMap<String, Pattern>();
+	
 	/** to keep track of all item change listeners */
 	protected Collection<ItemRegistryChangeListener> listeners = new CopyOnWriteArraySet<ItemRegistryChangeListener>();
 
@@ -63,6 +77,8 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 		}
 		// then release all items
 		itemMap.clear();
+		itemIndex.clear();
+		patternCache.clear();
     }
 
 	/* (non-Javadoc)
@@ -70,14 +86,11 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 	 */
     @Override
 	public Item getItem(String name) throws ItemNotFoundException {
-		for(Collection<Item> items : itemMap.values()) {
-			for(Item item : items) {
-				if(item.getName().equals(name)) {
-					return item;
-				}
-			}
+		Item item = name!=null ? itemIndex.get(name) : null;
+		if(item==null) {
+			throw new ItemNotFoundException(name);
 		}
-		throw new ItemNotFoundException(name);
+		return item;
 	}
 
 	/* (non-Javadoc)
@@ -111,22 +124,58 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 		return allItems;
 	}
 	
-	/* (non-Javadoc)
-	 * @see org.openhab.core.internal.items.ItemRegistry#getItems(java.lang.String)
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>A pattern without wildcards is looked up in the name index, so just like
+	 * {@link #getItem(String)} it returns only one item, even if several providers
+	 * offer an item with this name.</p>
 	 */
     @Override
 	public Collection<Item> getItems(String pattern) {
-		String regex = pattern.replace("?", ".?").replace("*", ".*?");
 		Collection<Item> matchedItems = new ArrayList<Item>();
+		if(isValidItemName(pattern)) {
+			// the pattern does not contain any wildcards, so we can directly use the index
+			Item item = itemIndex.get(pattern);
+			if(item!=null) {
+				matchedItems.add(item);
+			}
+			return matchedItems;
+		}
+		
+		Pattern compiledPattern = getCompiledPattern(pattern);
 		for(Collection<Item> items : itemMap.values()) {
 			for(Item item : items) {
-				if(item.getName().matches(regex)) {
+				if(compiledPattern.matcher(item.getName()).matches()) {
 					matchedItems.add(item);
 				}
 			}
 		}
         return matchedItems;
 	}
+	
+	/**
+	 * Returns the compiled regular expression for the given wildcard pattern.
+	 * Compiled patterns are cached, so that repeated queries (e.g. from sitemaps
+	 * or rules) do not need to compile them again.
+	 * 
+	 * @param pattern the wildcard pattern, where '?' and '*' are supported
+	 * @return the compiled pattern
+	 */
+	private Pattern getCompiledPattern(String pattern) {
+		Pattern compiledPattern = patternCache.get(pattern);
+		if(compiledPattern==null) {
+			String regex = pattern.replace("?", ".?").replace("*", ".*?");
+			compiledPattern = Pattern.compile(regex);
+			if(patternCache.size() >= MAX_CACHED_PATTERNS) {
+				// patterns are also created while typing (content assist), so we
+				// must not let the cache grow without limits
+				patternCache.clear();
+			}
+			patternCache.put(pattern, compiledPattern);
+		}
+		return compiledPattern;
+	}
 
 	public void addItemProvider(ItemProvider itemProvider) {
 		// only add this provider if it does not already exist
@@ -141,19 +190,20 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 
     @Override
 	public boolean isValidItemName(String name) {
-		return name.matches("[a-zA-Z0-9_]*");
+		return VALID_ITEM_NAME_PATTERN.matcher(name).matches();
 	}
 
 	public void removeItemProvider(ItemProvider itemProvider) {
 		if(itemMap.containsKey(itemProvider)) {
 			allItemsChanged(itemProvider, null);
 
-			for(Item item : itemMap.get(itemProvider)) {
+			// the provider is removed first, so that the index falls back to items of other providers
+			for(Item item : itemMap.remove(itemProvider)) {
 				if(item instanceof GenericItem) {
 					((GenericItem) item).dispose();
 				}
+				removeFromIndex(item);
 			}
-			itemMap.remove(itemProvider);
 
 			itemProvider.removeItemChangeListener(this);
 			logger.debug("Item provider '{}' has been removed.", itemProvider.getClass().getSimpleName());
@@ -190,10 +240,17 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 		}
 
 		Collection<Item> items = new CopyOnWriteArrayList<Item>();
-    	itemMap.put(provider, items);
+		Collection<Item> oldItems = itemMap.put(provider, items);
+		if(oldItems!=null) {
+			for(Item oldItem : oldItems) {
+				removeFromIndex(oldItem);
+			}
+		}
+
 		for(Item item : provider.getItems()) {
 			if(initializeItem(item)) {
 				items.add(item);
+				itemIndex.put(item.getName(), item);
 			}
 		}
 
@@ -209,6 +266,7 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 		if(items!=null) {
 			if(initializeItem(item)) {
 				items.add(item);
+				itemIndex.put(item.getName(), item);
 			} else {
 				return;
 			}
@@ -224,6 +282,7 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
         items = itemMap.get(provider);
 		if(items!=null) {
 			items.remove(item);
+			removeFromIndex(item);
 		}
 		for(ItemRegistryChangeListener listener : listeners) {
 			listener.itemRemoved(item);
@@ -240,6 +299,47 @@ public class ItemRegistryImpl implements ItemRegistry, ItemsChangeListener {
 		listeners.remove(listener);
 	}
 
+	/**
+	 * Removes the given item from the name index. If another provider has meanwhile
+	 * registered a different item under the same name, this entry is kept. If the
+	 * item was indexed and another provider still offers an item with the same name,
+	 * that item is indexed instead.
+	 * Note that we need to compare identities here as items of the same type, 
+	 * name and state are considered to be equal.
+	 * The item must already have been removed from the {@link #itemMap}.
+	 * 
+	 * @param item the item to remove from the index
+	 */
+	private void removeFromIndex(Item item) {
+		String name = item.getName();
+		Item indexedItem = itemIndex.get(name);
+		if(indexedItem==item) {
+			Item otherItem = findItem(name);
+			if(otherItem!=null) {
+				itemIndex.replace(name, indexedItem, otherItem);
+			} else {
+				itemIndex.remove(name, indexedItem);
+			}
+		}
+	}
+
+	/**
+	 * Searches the items of all providers for an item with the given name.
+	 * 
+	 * @param name the name of the item
+	 * @return the first item with the given name or <code>null</code>, if there is none
+	 */
+	private Item findItem(String name) {
+		for(Collection<Item> items : itemMap.values()) {
+			for(Item item : items) {
+				if(name.equals(item.getName())) {
+					return item;
+				}
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * an item should be initialized, which means that the event publisher is
 	 * injected and its implementation is notified that it has just been created,
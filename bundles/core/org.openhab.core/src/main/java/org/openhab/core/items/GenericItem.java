@@ -8,12 +8,9 @@
  */
 package org.openhab.core.items;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Set;
-import java.util.WeakHashMap;
-import java.util.concurrent.CopyOnWriteArraySet;
 
 import org.openhab.core.events.EventPublisher;
 import org.openhab.core.types.Command;
@@ -33,7 +30,15 @@ abstract public class GenericItem implements Item {
 	
 	protected EventPublisher eventPublisher;
 
-	protected Set<StateChangeListener> listeners = new CopyOnWriteArraySet<StateChangeListener>(Collections.newSetFromMap(new WeakHashMap<StateChangeListener, Boolean>()));
+	private static final ListenerReference[] NO_LISTENERS = new ListenerReference[0];
+
+	/** 
+	 * the weakly referenced listeners; the array is never modified, but replaced as a whole
+	 * whenever a listener is added or removed, so that it can be iterated without copying 
+	 */
+	private volatile ListenerReference[] listeners = NO_LISTENERS;
+	
+	private final Object listenerLock = new Object();
 	
 	protected List<String> groupNames = new ArrayList<String>();
 	
@@ -102,16 +107,28 @@ abstract public class GenericItem implements Item {
 
 	private void notifyListeners(State oldState, State newState) {
 		// if nothing has changed, we send update notifications
-		Set<StateChangeListener> clonedListeners = null;
-		clonedListeners = new CopyOnWriteArraySet<StateChangeListener>(listeners);
-		for(StateChangeListener listener : clonedListeners) {
-			listener.stateUpdated(this, newState);
+		ListenerReference[] snapshot = listeners;
+		boolean cleared = false;
+		for(ListenerReference reference : snapshot) {
+			StateChangeListener listener = reference.get();
+			if(listener!=null) {
+				listener.stateUpdated(this, newState);
+			} else {
+				cleared = true;
+			}
 		}
 		if(!oldState.equals(newState)) {
-			for(StateChangeListener listener : clonedListeners) {
-				listener.stateChanged(this, oldState, newState);
+			for(ListenerReference reference : snapshot) {
+				StateChangeListener listener = reference.get();
+				if(listener!=null) {
+					listener.stateChanged(this, oldState, newState);
+				}
 			}
 		}
+		if(cleared) {
+			// some listeners have been garbage collected
+			removeStateChangeListener(null);
+		}
 	}
 		
 	/**
@@ -125,14 +142,46 @@ abstract public class GenericItem implements Item {
 	}
 
 	public void addStateChangeListener(StateChangeListener listener) {
-		synchronized(listeners) {
-			listeners.add(listener);
+		synchronized(listenerLock) {
+			List<ListenerReference> references = getLiveListeners(null);
+			for(ListenerReference reference : references) {
+				if(reference.get()==listener) {
+					return;
+				}
+			}
+			references.add(new ListenerReference(listener));
+			listeners = references.toArray(new ListenerReference[references.size()]);
 		}
 	}
 	
 	public void removeStateChangeListener(StateChangeListener listener) {
-		synchronized(listeners) {
-			listeners.remove(listener);
+		synchronized(listenerLock) {
+			List<ListenerReference> references = getLiveListeners(listener);
+			listeners = references.isEmpty() ? NO_LISTENERS : references.toArray(new ListenerReference[references.size()]);
+		}
+	}
+	
+	/**
+	 * Returns the references to all listeners which have not been garbage collected yet.
+	 * 
+	 * @param excludedListener a listener which should not be contained in the result
+	 * @return a new list of listener references
+	 */
+	private List<ListenerReference> getLiveListeners(StateChangeListener excludedListener) {
+		ListenerReference[] snapshot = listeners;
+		List<ListenerReference> references = new ArrayList<ListenerReference>(snapshot.length + 1);
+		for(ListenerReference reference : snapshot) {
+			StateChangeListener listener = reference.get();
+			if(listener!=null && listener!=excludedListener) {
+				references.add(reference);
+			}
+		}
+		return references;
+	}
+	
+	private static final class ListenerReference extends WeakReference<StateChangeListener> {
+		ListenerReference(StateChangeListener listener) {
+			super(listener);
 		}
 	}
 	
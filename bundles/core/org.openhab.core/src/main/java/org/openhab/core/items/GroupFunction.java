@@ -8,7 +8,9 @@
  */
 package org.openhab.core.items;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.openhab.core.types.State;
 import org.openhab.core.types.UnDefType;
@@ -48,7 +50,7 @@ abstract public interface GroupFunction {
 	 * @since 0.7.0
 	 *
 	 */
-	static class Equality implements GroupFunction {
+	static class Equality implements IncrementalGroupFunction {
 
 		/**
 		 * @{inheritDoc
@@ -79,6 +81,36 @@ abstract public interface GroupFunction {
 				return null;
 			}
 		}
+
+		/**
+		 * @{inheritDoc
+		 */
+		public GroupStateAccumulator<?> createAccumulator() {
+			return new GroupStateAccumulator<State>() {
+				// counts how many members have a certain state
+				private final Map<State, Integer> stateCounts = new HashMap<State, Integer>();
+				
+				protected State getContribution(Item item) {
+					return item.getState();
+				}
+				
+				protected void addContribution(State state) {
+					increment(stateCounts, state);
+				}
+				
+				protected void removeContribution(State state) {
+					decrement(stateCounts, state);
+				}
+
+				protected State calculateState() {
+					if(stateCounts.size()==1) {
+						return stateCounts.keySet().iterator().next();
+					} else {
+						return UnDefType.UNDEF;
+					}
+				}
+			};
+		}
 	}
 
 }
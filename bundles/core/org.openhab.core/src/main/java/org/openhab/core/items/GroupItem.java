@@ -9,10 +9,17 @@
 package org.openhab.core.items;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.collections.ListUtils;
 import org.openhab.core.types.Command;
@@ -24,11 +31,37 @@ public class GroupItem extends GenericItem implements StateChangeListener {
 	
 	private static final Logger logger = LoggerFactory.getLogger(GroupItem.class);
 	
+	/** 
+	 * the system property that defines the default coalescing window in milliseconds 
+	 * for all groups (see {@link #setCoalescingWindow(long)})
+	 */
+	public static final String COALESCING_WINDOW_PROPERTY = "openhab.group.coalescingwindow";
+	
+	private static final long DEFAULT_COALESCING_WINDOW = Long.getLong(COALESCING_WINDOW_PROPERTY, 0L);
+	
+	private static ScheduledExecutorService coalescingScheduler;
+	
 	protected final GenericItem baseItem;
 	
 	protected final List<Item> members;
 	
 	protected GroupFunction function;
+	
+	/** 
+	 * is incremented whenever the members of any group change, so that
+	 * the cached members of all (parent) groups are recalculated 
+	 */
+	private static final AtomicLong membershipVersion = new AtomicLong();
+	
+	private volatile List<Item> allMembers;
+	
+	private volatile long allMembersVersion = -1;
+	
+	private GroupStateAccumulator<?> accumulator;
+	
+	private volatile long coalescingWindow = DEFAULT_COALESCING_WINDOW;
+	
+	private final AtomicBoolean recalculationScheduled = new AtomicBoolean(false);
 
 	public GroupItem(String name) {
 		this(name, null);
@@ -56,6 +89,27 @@ public class GroupItem extends GenericItem implements StateChangeListener {
 		return baseItem;
 	}
 
+	/**
+	 * Sets the time window in which updates of members are coalesced. If it is greater
+	 * than zero, a member update does not immediately set the group state; instead the
+	 * group state is set once at the end of the window, so that bursts of member updates
+	 * (e.g. when a scene switches all lights of a group) only result in a single
+	 * update of the group. If it is zero (the default), the group state is set
+	 * with every member update.
+	 * 
+	 * @param coalescingWindow the time window in milliseconds, 0 to disable coalescing
+	 */
+	public void setCoalescingWindow(long coalescingWindow) {
+		this.coalescingWindow = Math.max(0, coalescingWindow);
+	}
+	
+	/**
+	 * @return the time window in milliseconds in which updates of members are coalesced
+	 */
+	public long getCoalescingWindow() {
+		return coalescingWindow;
+	}
+
 	/**
 	 * Returns the direct members of this {@link GroupItem} regardless if these
 	 * members are {@link GroupItem}s as well.
@@ -74,9 +128,33 @@ public class GroupItem extends GenericItem implements StateChangeListener {
 	 * @return all members of this and all contained {@link GroupItem}s
 	 */
 	public List<Item> getAllMembers() {
-		Set<Item> allMembers = new HashSet<Item>();
-		collectMembers(allMembers, members);
-		return new ArrayList<Item>(allMembers);
+		return new ArrayList<Item>(getAllMembersInternal());
+	}
+	
+	/**
+	 * Returns a number which is incremented whenever the members of any group change.
+	 * This allows to cache information that is derived from the group memberships.
+	 * 
+	 * @return the current version of the group memberships
+	 */
+	public static long getMembershipVersion() {
+		return membershipVersion.get();
+	}
+	
+	/**
+	 * Returns the cached list of all members, which must not be modified.
+	 */
+	private List<Item> getAllMembersInternal() {
+		long version = membershipVersion.get();
+		List<Item> result = allMembers;
+		if(result==null || allMembersVersion!=version) {
+			Set<Item> memberSet = new LinkedHashSet<Item>();
+			collectMembers(memberSet, members);
+			result = Collections.unmodifiableList(new ArrayList<Item>(memberSet));
+			allMembers = result;
+			allMembersVersion = version;
+		}
+		return result;
 	}
 	
 	private void collectMembers(Set<Item> allMembers, List<Item> members) {
@@ -92,6 +170,11 @@ public class GroupItem extends GenericItem implements StateChangeListener {
 
 	public void addMember(Item item) {
 		members.add(item);
+		membershipVersion.incrementAndGet();
+		GroupStateAccumulator<?> accumulator = getAccumulator();
+		if (accumulator != null) {
+			accumulator.add(item);
+		}
 		if (item instanceof GenericItem) {
 			GenericItem genericItem = (GenericItem) item;
 			genericItem.addStateChangeListener(this);
@@ -100,12 +183,73 @@ public class GroupItem extends GenericItem implements StateChangeListener {
 	
 	public void removeMember(Item item) {
 		members.remove(item);
+		membershipVersion.incrementAndGet();
+		GroupStateAccumulator<?> accumulator = getAccumulator();
+		if (accumulator != null && !members.contains(item)) {
+			accumulator.remove(item);
+		}
 		if (item instanceof GenericItem) {
 			GenericItem genericItem = (GenericItem) item;
 			genericItem.removeStateChangeListener(this);
 		}
 	}
 	
+	/**
+	 * Returns the accumulator which aggregates the member states, if the group
+	 * function supports incremental calculation.
+	 * 
+	 * @return the accumulator or <code>null</code>, if the group state must be calculated from all members
+	 */
+	private synchronized GroupStateAccumulator<?> getAccumulator() {
+		if (accumulator == null && function instanceof IncrementalGroupFunction) {
+			accumulator = ((IncrementalGroupFunction) function).createAccumulator();
+			for (Item member : members) {
+				accumulator.add(member);
+			}
+		}
+		return accumulator;
+	}
+	
+	private void memberUpdated(Item member) {
+		GroupStateAccumulator<?> accumulator = getAccumulator();
+		long window = coalescingWindow;
+		if (window <= 0) {
+			setState(accumulator != null ? accumulator.update(member) : function.calculate(members));
+		} else {
+			// the contribution of the member is updated right away, but the 
+			// group state is only set once at the end of the window
+			if (accumulator != null) {
+				accumulator.update(member);
+			}
+			if (recalculationScheduled.compareAndSet(false, true)) {
+				getCoalescingScheduler().schedule(new Runnable() {
+					public void run() {
+						recalculationScheduled.set(false);
+						GroupStateAccumulator<?> accumulator = getAccumulator();
+						try {
+							setState(accumulator != null ? accumulator.getState() : function.calculate(members));
+						} catch (RuntimeException e) {
+							logger.error("Error while calculating the state of group '{}'", getName(), e);
+						}
+					}
+				}, window, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+	
+	private static synchronized ScheduledExecutorService getCoalescingScheduler() {
+		if (coalescingScheduler == null) {
+			coalescingScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "openHAB Group State Coalescer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return coalescingScheduler;
+	}
+	
 	/** 
 	 * The accepted data types of a group item is the same as of the underlying base item.
 	 * If none is defined, the intersection of all sets of accepted data types of all group
@@ -182,7 +326,7 @@ public class GroupItem extends GenericItem implements StateChangeListener {
 	 */
 	@Override
 	public State getStateAs(Class<? extends State> typeClass) {
-		State newState = function.getStateAs(getAllMembers(), typeClass);
+		State newState = function.getStateAs(getAllMembersInternal(), typeClass);
 		if(newState==null && baseItem!=null) {
 			// we use the transformation method from the base item
 			baseItem.setState(state);
@@ -210,13 +354,13 @@ public class GroupItem extends GenericItem implements StateChangeListener {
 	 * @{inheritDoc
 	 */
 	public void stateChanged(Item item, State oldState, State newState) {
-		setState(function.calculate(members));
+		// nothing to do here, as stateUpdated() has already been called for the new state
 	}
 
 	/**
 	 * @{inheritDoc
 	 */
 	public void stateUpdated(Item item, State state) {
-		setState(function.calculate(members));
+		memberUpdated(item);
 	}
 }
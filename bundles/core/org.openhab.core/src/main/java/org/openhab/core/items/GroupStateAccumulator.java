@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.items;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.openhab.core.types.State;
+
+/**
+ * An accumulator keeps the aggregated state of the members of a group. It remembers
+ * the contribution of every member, so that an update of a member only requires
+ * to remove its old contribution and to add the new one.
+ * 
+ * @param <V> the type of the contribution of a single member
+ * 
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ *
+ */
+public abstract class GroupStateAccumulator<V> {
+	
+	private final Map<Item, V> contributions = new IdentityHashMap<Item, V>();
+	
+	/**
+	 * Adds a member to the aggregation.
+	 * 
+	 * @param item the new member
+	 * @return the new group state
+	 */
+	public synchronized State add(Item item) {
+		if(!contributions.containsKey(item)) {
+			V contribution = getContribution(item);
+			contributions.put(item, contribution);
+			addContribution(contribution);
+		}
+		return calculateState();
+	}
+	
+	/**
+	 * Removes a member from the aggregation.
+	 * 
+	 * @param item the removed member
+	 * @return the new group state
+	 */
+	public synchronized State remove(Item item) {
+		if(contributions.containsKey(item)) {
+			removeContribution(contributions.remove(item));
+		}
+		return calculateState();
+	}
+
+	/**
+	 * Takes the current state of a member into account.
+	 * 
+	 * @param item the member whose state has been updated
+	 * @return the new group state
+	 */
+	public synchronized State update(Item item) {
+		if(contributions.containsKey(item)) {
+			V contribution = getContribution(item);
+			removeContribution(contributions.put(item, contribution));
+			addContribution(contribution);
+		}
+		return calculateState();
+	}
+	
+	/**
+	 * @return the current group state
+	 */
+	public synchronized State getState() {
+		return calculateState();
+	}
+
+	/**
+	 * @return the number of members in the aggregation
+	 */
+	protected int getCount() {
+		return contributions.size();
+	}
+
+	/**
+	 * Increments the counter of a key in a map of counters.
+	 */
+	protected static <K> void increment(Map<K, Integer> counts, K key) {
+		Integer count = counts.get(key);
+		counts.put(key, count==null ? 1 : count + 1);
+	}
+
+	/**
+	 * Decrements the counter of a key in a map of counters and removes
+	 * the key, if it is not counted anymore.
+	 */
+	protected static <K> void decrement(Map<K, Integer> counts, K key) {
+		Integer count = counts.get(key);
+		if(count!=null) {
+			if(count > 1) {
+				counts.put(key, count - 1);
+			} else {
+				counts.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Determines what a member contributes to the group state.
+	 * 
+	 * @param item the member
+	 * @return the contribution of the member, may be <code>null</code>
+	 */
+	protected abstract V getContribution(Item item);
+	
+	/**
+	 * Adds the contribution of a member to the aggregated value.
+	 * 
+	 * @param contribution the contribution of the member
+	 */
+	protected abstract void addContribution(V contribution);
+
+	/**
+	 * Removes the contribution of a member from the aggregated value.
+	 * 
+	 * @param contribution the contribution of the member as it has been added before
+	 */
+	protected abstract void removeContribution(V contribution);
+	
+	/**
+	 * @return the group state for the current aggregated value
+	 */
+	protected abstract State calculateState();
+	
+}
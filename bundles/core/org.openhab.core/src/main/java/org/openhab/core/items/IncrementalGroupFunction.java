@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.items;
+
+/**
+ * Group functions which implement this interface are able to maintain the group state
+ * incrementally: instead of recalculating the state from all members whenever a single
+ * member changes, the {@link GroupItem} only passes the changed member to a
+ * {@link GroupStateAccumulator}.
+ * 
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ *
+ */
+public interface IncrementalGroupFunction extends GroupFunction {
+
+	/**
+	 * Creates a new, empty accumulator for this function. Each group item
+	 * uses its own accumulator.
+	 * 
+	 * @return a new accumulator
+	 */
+	public GroupStateAccumulator<?> createAccumulator();
+	
+}
@@ -8,8 +8,6 @@
  */
 package org.openhab.core.types;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.List;
 
 /**
@@ -34,16 +32,9 @@ public class TypeParser {
 	 * @return the corresponding State instance or <code>null</code>
 	 */
 	public static State parseState(List<Class<? extends State>> types, String s) {
-		for(Class<? extends Type> type : types) {
-			try {									
-				Method valueOf = type.getMethod("valueOf", String.class);
-				State state = (State) valueOf.invoke(type, s);
-				if(state!=null) return state;
-			} catch (NoSuchMethodException e) {
-			} catch (IllegalArgumentException e) {
-			} catch (IllegalAccessException e) {
-			} catch (InvocationTargetException e) {
-			}
+		for(Class<? extends State> type : types) {
+			State state = (State) TypeRegistry.valueOf(type, s);
+			if(state!=null) return state;
 		}
 		return null;
 	}
@@ -63,15 +54,8 @@ public class TypeParser {
 	public static Command parseCommand(List<Class<? extends Command>> types, String s) {
 		if(s!=null) {
 			for(Class<? extends Command> type : types) {
-				try {									
-					Method valueOf = type.getMethod("valueOf", String.class);
-					Command value = (Command) valueOf.invoke(type, s);
-					if(value!=null) return value;
-				} catch (NoSuchMethodException e) {
-				} catch (IllegalArgumentException e) {
-				} catch (IllegalAccessException e) {
-				} catch (InvocationTargetException e) {
-				}		
+				Command value = (Command) TypeRegistry.valueOf(type, s);
+				if(value!=null) return value;
 			}
 		}
 		return null;
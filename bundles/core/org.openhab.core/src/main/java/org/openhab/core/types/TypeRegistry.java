@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.core.types;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The type registry keeps the information about type classes, which is otherwise
+ * determined through reflection: whether a type accepts values of its subclasses
+ * and how a value of the type is created from a string. This information is
+ * determined only once for every type class and then reused for all further calls.
+ * 
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ *
+ */
+public final class TypeRegistry {
+
+	private static final ConcurrentMap<Class<?>, TypeInfo> typeInfos = new ConcurrentHashMap<Class<?>, TypeInfo>();
+	
+	private TypeRegistry() {}
+	
+	/**
+	 * Checks whether a value is accepted by a list of types. This is the case, if its class
+	 * is contained in the list or if it is a subclass of a contained type, which is not an enum
+	 * and which can be instantiated.
+	 * 
+	 * @param acceptedTypes the accepted types, e.g. the accepted data types of an item
+	 * @param value the value to check
+	 * @return true, if the value is accepted
+	 */
+	public static boolean isAccepted(List<? extends Class<? extends Type>> acceptedTypes, Type value) {
+		Class<? extends Type> valueClass = value.getClass();
+		// the exact type is checked first, as this is the common case
+		for (int i = 0; i < acceptedTypes.size(); i++) {
+			if (acceptedTypes.get(i) == valueClass) {
+				return true;
+			}
+		}
+		for (int i = 0; i < acceptedTypes.size(); i++) {
+			Class<? extends Type> acceptedType = acceptedTypes.get(i);
+			if (getTypeInfo(acceptedType).acceptsSubclasses && acceptedType.isAssignableFrom(valueClass)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Creates a value of the given type from a string through the static <code>valueOf(String)</code>
+	 * method of the type.
+	 * 
+	 * @param type the type of the value to create
+	 * @param s the string to parse
+	 * @return the value or <code>null</code>, if the string is not valid for the type. Note that
+	 * the value can be of a supertype, if the type inherits the valueOf method.
+	 */
+	public static Type valueOf(Class<? extends Type> type, String s) {
+		return (Type) getTypeInfo(type).valueOf(s);
+	}
+	
+	private static TypeInfo getTypeInfo(Class<?> type) {
+		TypeInfo typeInfo = typeInfos.get(type);
+		if (typeInfo == null) {
+			typeInfo = new TypeInfo(type);
+			TypeInfo existing = typeInfos.putIfAbsent(type, typeInfo);
+			if (existing != null) {
+				typeInfo = existing;
+			}
+		}
+		return typeInfo;
+	}
+	
+	/**
+	 * Holds the information about a single type class.
+	 */
+	private static class TypeInfo {
+		
+		/** true, if values of subclasses are accepted for this type */
+		final boolean acceptsSubclasses;
+		
+		/** the constants of an enum type by their name */
+		final Map<String, Object> enumConstants;
+		
+		/**
+		 * the static valueOf(String) method of a non-enum type; it is invoked reflectively, as
+		 * the runtimes this bundle supports have no lambdas and not all of them method handles
+		 */
+		final Method valueOfMethod;
+		
+		TypeInfo(Class<?> type) {
+			if (type.isEnum()) {
+				acceptsSubclasses = false;
+				enumConstants = new HashMap<String, Object>();
+				for (Object constant : type.getEnumConstants()) {
+					enumConstants.put(((Enum<?>) constant).name(), constant);
+				}
+				valueOfMethod = null;
+			} else {
+				acceptsSubclasses = isInstantiable(type);
+				enumConstants = null;
+				valueOfMethod = getValueOfMethod(type);
+			}
+		}
+		
+		Object valueOf(String s) {
+			if (enumConstants != null) {
+				return s != null ? enumConstants.get(s) : null;
+			}
+			if (valueOfMethod != null) {
+				try {
+					return valueOfMethod.invoke(null, s);
+				} catch (IllegalArgumentException e) {
+				} catch (IllegalAccessException e) {
+				} catch (InvocationTargetException e) {
+				}
+			}
+			return null;
+		}
+		
+		private static boolean isInstantiable(Class<?> type) {
+			if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+				return false;
+			}
+			try {
+				return Modifier.isPublic(type.getConstructor().getModifiers());
+			} catch (NoSuchMethodException e) {
+				return false;
+			}
+		}
+		
+		private static Method getValueOfMethod(Class<?> type) {
+			try {
+				Method method = type.getMethod("valueOf", String.class);
+				return Modifier.isStatic(method.getModifiers()) ? method : null;
+			} catch (NoSuchMethodException e) {
+				return null;
+			}
+		}
+	}
+	
+}
@@ -22,9 +22,13 @@ import org.atmosphere.cpr.AtmosphereServlet;
 import org.openhab.core.events.EventPublisher;
 import org.openhab.core.items.ItemRegistry;
 import org.openhab.io.net.http.SecureHttpContext;
+import org.openhab.io.rest.internal.filter.GzipResponseFilter;
+import org.openhab.io.rest.internal.listeners.StateVersionListener;
 import org.openhab.io.rest.internal.resources.ItemResource;
 import org.openhab.io.rest.internal.resources.RootResource;
 import org.openhab.io.rest.internal.resources.SitemapResource;
+import org.openhab.io.rest.internal.resources.StateResource;
+import org.openhab.io.rest.internal.resources.StreamResource;
 import org.openhab.io.servicediscovery.DiscoveryService;
 import org.openhab.io.servicediscovery.ServiceDescription;
 import org.openhab.model.core.ModelRepository;
@@ -135,6 +139,8 @@ public class RESTApplication extends Application {
     		httpPort = Integer.parseInt(bundleContext.getProperty("jetty.port"));
     		httpSSLPort = Integer.parseInt(bundleContext.getProperty("jetty.port.ssl"));
     		
+    		StateVersionListener.getInstance().register(itemUIRegistry, modelRepository);
+
     		Servlet atmosphereServlet = new AtmosphereServlet();
 
 			httpService.registerServlet(REST_SERVLET_ALIAS,
@@ -158,6 +164,10 @@ public class RESTApplication extends Application {
             httpService.unregister(REST_SERVLET_ALIAS);
             logger.info("Stopped REST API");
         }
+
+        if (itemUIRegistry != null && modelRepository != null) {
+        	StateVersionListener.getInstance().unregister(itemUIRegistry, modelRepository);
+        }
         
         if (discoveryService != null) {
  			discoveryService.unregisterService(getDefaultServiceDescription());
@@ -181,6 +191,8 @@ public class RESTApplication extends Application {
         result.add(RootResource.class);
         result.add(ItemResource.class);
         result.add(SitemapResource.class);
+        result.add(StreamResource.class);
+        result.add(StateResource.class);
         return result;
     }
 
@@ -203,6 +215,7 @@ public class RESTApplication extends Application {
         jerseyServletParams.put("org.atmosphere.cpr.CometSupport.maxInactiveActivity", "3000000");
         
         jerseyServletParams.put("com.sun.jersey.spi.container.ResourceFilter", "org.atmosphere.core.AtmosphereFilter");
+        jerseyServletParams.put("com.sun.jersey.spi.container.ContainerResponseFilters", GzipResponseFilter.class.getName());
         
         // required because of bug http://java.net/jira/browse/JERSEY-361
         jerseyServletParams.put(FeaturesAndProperties.FEATURE_XMLROOTELEMENT_PROCESSING, "true");
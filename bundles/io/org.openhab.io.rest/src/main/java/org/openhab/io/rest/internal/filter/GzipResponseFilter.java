@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.rest.internal.filter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.ws.rs.core.HttpHeaders;
+
+import org.atmosphere.cpr.HeaderConfig;
+
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import com.sun.jersey.spi.container.ContainerResponseWriter;
+
+/**
+ * This filter compresses the responses to plain (i.e. not suspended) requests with gzip, if the
+ * client accepts it. The response is buffered first, so that small responses, for which the
+ * compression does not pay off, can be sent uncompressed.
+ *
+ * <p>Requests through Atmosphere are left untouched, as their responses are streamed.</p>
+ *
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ */
+public class GzipResponseFilter implements ContainerResponseFilter {
+
+	private static final String GZIP = "gzip";
+
+	/** the minimum size of a response in bytes to be compressed */
+	private static final int MIN_SIZE = 1024;
+
+	@Override
+	public ContainerResponse filter(ContainerRequest request, ContainerResponse response) {
+		if(response.getEntity()!=null && response.getStatus()==200 && acceptsGzip(request) && !isAtmosphereRequest(request)
+				&& !response.getHttpHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)) {
+			response.getHttpHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+			response.setContainerResponseWriter(new GzipResponseWriter(response.getContainerResponseWriter()));
+		}
+		return response;
+	}
+
+	private static boolean acceptsGzip(ContainerRequest request) {
+		String acceptEncoding = request.getHeaderValue(HttpHeaders.ACCEPT_ENCODING);
+		return acceptEncoding!=null && acceptEncoding.toLowerCase().contains(GZIP);
+	}
+
+	private static boolean isAtmosphereRequest(ContainerRequest request) {
+		String transport = request.getHeaderValue(HeaderConfig.X_ATMOSPHERE_TRANSPORT);
+		return (transport!=null && !transport.isEmpty()) || request.getHeaderValue(HeaderConfig.WEBSOCKET_UPGRADE)!=null;
+	}
+
+	/**
+	 * Buffers the entity and decides on completion whether it is written compressed.
+	 */
+	private static class GzipResponseWriter implements ContainerResponseWriter {
+
+		private final ContainerResponseWriter writer;
+
+		private ContainerResponse response;
+
+		private ByteArrayOutputStream buffer;
+
+		GzipResponseWriter(ContainerResponseWriter writer) {
+			this.writer = writer;
+		}
+
+		@Override
+		public OutputStream writeStatusAndHeaders(long contentLength, ContainerResponse response) throws IOException {
+			this.response = response;
+			this.buffer = new ByteArrayOutputStream(contentLength > 0 ? (int) contentLength : MIN_SIZE);
+			return buffer;
+		}
+
+		@Override
+		public void finish() throws IOException {
+			if(response==null) {
+				writer.finish();
+				return;
+			}
+			byte[] content = buffer.toByteArray();
+			if(content.length >= MIN_SIZE) {
+				ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 4);
+				GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+				gzip.write(content);
+				gzip.close();
+				content = compressed.toByteArray();
+				response.getHttpHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, GZIP);
+			}
+			OutputStream out = writer.writeStatusAndHeaders(content.length, response);
+			out.write(content);
+			writer.finish();
+		}
+	}
+
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.rest.internal.filter;
+
+import java.util.Set;
+
+import org.atmosphere.cpr.AtmosphereResource;
+import org.atmosphere.cpr.BroadcastFilter.BroadcastAction.ACTION;
+import org.atmosphere.cpr.PerRequestBroadcastFilter;
+import org.openhab.io.rest.internal.listeners.StreamStateChangeListener.StateDelta;
+import org.openhab.io.rest.internal.resources.StreamResource;
+
+/**
+ * This filter delivers the state changes on the item state stream only to those clients
+ * which have subscribed to the item. The message is unwrapped once for all clients, so that
+ * each client is sent the very same serialized message.
+ *
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ */
+public class StreamSubscriptionFilter implements PerRequestBroadcastFilter {
+
+	@Override
+	public BroadcastAction filter(Object originalMessage, Object message) {
+		if(message instanceof StateDelta) {
+			return new BroadcastAction(ACTION.CONTINUE, ((StateDelta) message).getMessage());
+		}
+		return new BroadcastAction(ACTION.CONTINUE, message);
+	}
+
+	@Override
+	public BroadcastAction filter(AtmosphereResource resource, Object originalMessage, Object message) {
+		if(originalMessage instanceof StateDelta) {
+			Set<String> itemNames = StreamResource.getSubscription(resource.getRequest());
+			if(itemNames==null || !itemNames.contains(((StateDelta) originalMessage).getItemName())) {
+				return new BroadcastAction(ACTION.ABORT, message);
+			}
+		}
+		return new BroadcastAction(ACTION.CONTINUE, message);
+	}
+
+}
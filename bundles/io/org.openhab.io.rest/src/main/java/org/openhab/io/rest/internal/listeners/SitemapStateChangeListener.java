@@ -74,31 +74,40 @@ public class SitemapStateChangeListener extends ResourceStateChangeListener {
         	String[] pathSegments = pathInfo.substring(1).split("/");
 
             if(pathSegments.length>=3) {
-            	String sitemapName = pathSegments[1];
-            	String pageName = pathSegments[2];
-
-            	Sitemap sitemap = (Sitemap) RESTApplication.getModelRepository().getModel(sitemapName + ".sitemap");
-            	if(sitemap!=null) {
-            		List<Widget> children = null;
-            		if(pageName.equals(sitemapName)) {
-            			children = sitemap.getChildren();
-            		} else {            		
-	            		Widget widget = RESTApplication.getItemUIRegistry().getWidget(sitemap, pageName);
-	            		if(widget instanceof LinkableWidget) {
-	            			LinkableWidget page = (LinkableWidget) widget;
-	            			children = RESTApplication.getItemUIRegistry().getChildren(page);
-	            		}
-            		}
-            		if(children!=null) {
-	            		return getRelevantItemNamesForWidgets(children);
-            		}
-				}
+            	return getRelevantItemNames(pathSegments[1], pathSegments[2]);
             }
         }
         return new HashSet<String>();
 	}
 
-	private Set<String> getRelevantItemNamesForWidgets(List<Widget> children) {
+	/**
+	 * Returns the names of all items which are shown on a page of a sitemap.
+	 * 
+	 * @param sitemapName the name of the sitemap
+	 * @param pageName the id of the page
+	 * @return a set of item names, which is empty if the page does not exist
+	 */
+	public static Set<String> getRelevantItemNames(String sitemapName, String pageName) {
+    	Sitemap sitemap = (Sitemap) RESTApplication.getModelRepository().getModel(sitemapName + ".sitemap");
+    	if(sitemap!=null) {
+    		List<Widget> children = null;
+    		if(pageName.equals(sitemapName)) {
+    			children = sitemap.getChildren();
+    		} else {            		
+        		Widget widget = RESTApplication.getItemUIRegistry().getWidget(sitemap, pageName);
+        		if(widget instanceof LinkableWidget) {
+        			LinkableWidget page = (LinkableWidget) widget;
+        			children = RESTApplication.getItemUIRegistry().getChildren(page);
+        		}
+    		}
+    		if(children!=null) {
+        		return getRelevantItemNamesForWidgets(children);
+    		}
+		}
+        return new HashSet<String>();
+	}
+
+	private static Set<String> getRelevantItemNamesForWidgets(List<Widget> children) {
 		Set<String> itemNames = new HashSet<String>();
 		for(Widget child : children) {
 			if (child instanceof Frame) {
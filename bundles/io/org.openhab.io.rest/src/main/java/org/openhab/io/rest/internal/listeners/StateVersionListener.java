@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.rest.internal.listeners;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ws.rs.core.EntityTag;
+
+import org.openhab.core.items.GenericItem;
+import org.openhab.core.items.GroupItem;
+import org.openhab.core.items.Item;
+import org.openhab.core.items.ItemRegistryChangeListener;
+import org.openhab.core.items.StateChangeListener;
+import org.openhab.core.types.State;
+import org.openhab.model.core.EventType;
+import org.openhab.model.core.ModelRepository;
+import org.openhab.model.core.ModelRepositoryChangeListener;
+import org.openhab.ui.items.ItemUIRegistry;
+
+/**
+ * This listener keeps track of the versions of the item states, so that the REST resources
+ * can tag their responses and answer conditional requests of polling clients with
+ * <code>304 Not Modified</code>.
+ *
+ * <p>All versions are taken from a single monotonic counter. It is incremented for every state
+ * change, which is then also recorded as the version of the item. It is also incremented
+ * whenever items are added or removed or a sitemap changes; such a structural change therefore
+ * outdates all tags. As the counter starts again after a restart, the tags also contain the
+ * time of the start.</p>
+ *
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ */
+public class StateVersionListener implements StateChangeListener, ItemRegistryChangeListener, ModelRepositoryChangeListener {
+
+	/** the only instance; it is kept here as items only hold weak references to their listeners */
+	private static final StateVersionListener instance = new StateVersionListener();
+
+	private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+	private final AtomicLong counter = new AtomicLong();
+
+	private final Map<String, Long> itemVersions = new ConcurrentHashMap<String, Long>();
+
+	private volatile long structureVersion;
+
+	private volatile ItemUIRegistry itemUIRegistry;
+
+	private StateVersionListener() {
+	}
+
+	public static StateVersionListener getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Starts to track the items of the given registry and the sitemaps of the given repository.
+	 *
+	 * @param itemUIRegistry the registry to get the items from
+	 * @param modelRepository the repository which holds the sitemaps
+	 */
+	public void register(ItemUIRegistry itemUIRegistry, ModelRepository modelRepository) {
+		this.itemUIRegistry = itemUIRegistry;
+		itemUIRegistry.addItemRegistryChangeListener(this);
+		modelRepository.addModelRepositoryChangeListener(this);
+		for(Item item : itemUIRegistry.getItems()) {
+			itemAdded(item);
+		}
+	}
+
+	/**
+	 * Stops to track the items of the given registry and the sitemaps of the given repository.
+	 *
+	 * @param itemUIRegistry the registry to get the items from
+	 * @param modelRepository the repository which holds the sitemaps
+	 */
+	public void unregister(ItemUIRegistry itemUIRegistry, ModelRepository modelRepository) {
+		itemUIRegistry.removeItemRegistryChangeListener(this);
+		modelRepository.removeModelRepositoryChangeListener(this);
+		for(Item item : itemUIRegistry.getItems()) {
+			itemRemoved(item);
+		}
+		this.itemUIRegistry = null;
+	}
+
+	/**
+	 * Returns the current version of all item states.
+	 *
+	 * @return the global version
+	 */
+	public long getVersion() {
+		return counter.get();
+	}
+
+	/**
+	 * Returns the version of a single item. For a group item, this includes the states
+	 * of its direct members.
+	 *
+	 * @param item the item to get the version for
+	 * @return the version of the item
+	 */
+	public long getVersion(Item item) {
+		long version = Math.max(structureVersion, getItemVersion(item.getName()));
+		if(item instanceof GroupItem) {
+			for(Item member : ((GroupItem) item).getMembers()) {
+				version = Math.max(version, getItemVersion(member.getName()));
+			}
+		}
+		return version;
+	}
+
+	/**
+	 * Creates the entity tag for a response in a certain version.
+	 *
+	 * @param version the version of the content
+	 * @param variant a string which identifies the representation of the content, e.g. the media type
+	 * @return a weak entity tag, so that the tag also matches compressed representations
+	 */
+	public EntityTag getEntityTag(long version, String variant) {
+		return new EntityTag(epoch + "-" + Long.toString(version, Character.MAX_RADIX) + "-"
+				+ Integer.toHexString(variant.hashCode()), true);
+	}
+
+	private long getItemVersion(String itemName) {
+		Long version = itemVersions.get(itemName);
+		return version!=null ? version : 0L;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void stateChanged(Item item, State oldState, State newState) {
+		itemVersions.put(item.getName(), counter.incrementAndGet());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void stateUpdated(Item item, State state) {
+		// only changes result in a new version
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void allItemsChanged(Collection<String> oldItemNames) {
+		itemVersions.clear();
+		structureVersion = counter.incrementAndGet();
+		ItemUIRegistry itemUIRegistry = this.itemUIRegistry;
+		if(itemUIRegistry!=null) {
+			for(Item item : itemUIRegistry.getItems()) {
+				if(item instanceof GenericItem) {
+					((GenericItem) item).addStateChangeListener(this);
+				}
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void itemAdded(Item item) {
+		if(item instanceof GenericItem) {
+			((GenericItem) item).addStateChangeListener(this);
+		}
+		structureVersion = counter.incrementAndGet();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void itemRemoved(Item item) {
+		if(item instanceof GenericItem) {
+			((GenericItem) item).removeStateChangeListener(this);
+		}
+		itemVersions.remove(item.getName());
+		structureVersion = counter.incrementAndGet();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void modelChanged(String modelName, EventType type) {
+		if(modelName.endsWith(".sitemap")) {
+			structureVersion = counter.incrementAndGet();
+		}
+	}
+
+}
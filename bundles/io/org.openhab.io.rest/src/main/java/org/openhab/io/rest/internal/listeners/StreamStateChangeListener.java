@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.rest.internal.listeners;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import org.atmosphere.cache.UUIDBroadcasterCache;
+import org.atmosphere.cpr.Broadcaster;
+import org.atmosphere.cpr.BroadcasterFactory;
+import org.atmosphere.jersey.JerseyBroadcaster;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.openhab.core.items.GenericItem;
+import org.openhab.core.items.Item;
+import org.openhab.core.items.StateChangeListener;
+import org.openhab.core.types.State;
+import org.openhab.io.rest.internal.filter.StreamSubscriptionFilter;
+import org.openhab.io.rest.internal.resources.ItemResource;
+import org.openhab.io.rest.internal.resources.StreamResource;
+import org.openhab.io.rest.internal.resources.beans.ItemStateBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This listener pushes the state changes of items to the clients of the item state stream.
+ *
+ * <p>All streams share a single broadcaster. Each state change is serialized exactly once and
+ * the same message is then delivered to all clients which have subscribed to the item; the
+ * subscriptions are evaluated by the {@link StreamSubscriptionFilter}.</p>
+ *
+ * <p>The listener is registered on an item when a client subscribes to it for the first time.
+ * As long as no client is connected, state changes are dropped without being serialized.</p>
+ *
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ */
+public class StreamStateChangeListener implements StateChangeListener {
+
+	private static final Logger logger = LoggerFactory.getLogger(StreamStateChangeListener.class);
+
+	/** the id of the broadcaster all streams are attached to */
+	public static final String BROADCASTER_ID = "/" + StreamResource.PATH_STREAM;
+
+	/** the only instance; it is kept here as items only hold weak references to their listeners */
+	private static final StreamStateChangeListener instance = new StreamStateChangeListener();
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	private volatile Broadcaster broadcaster;
+
+	private StreamStateChangeListener() {
+	}
+
+	public static StreamStateChangeListener getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Returns the broadcaster of the item state stream. It is configured when it is used
+	 * for the first time (or has been recreated, e.g. because the REST servlet has been restarted).
+	 *
+	 * @return the broadcaster which all streams are attached to
+	 */
+	public synchronized Broadcaster getBroadcaster() {
+		Broadcaster current = BroadcasterFactory.getDefault().lookup(JerseyBroadcaster.class, BROADCASTER_ID, true);
+		if(current!=broadcaster) {
+			current.getBroadcasterConfig().setBroadcasterCache(new UUIDBroadcasterCache());
+			current.getBroadcasterConfig().addFilter(new StreamSubscriptionFilter());
+			broadcaster = current;
+		}
+		return current;
+	}
+
+	/**
+	 * Makes sure that the state changes of the given items are pushed to the stream.
+	 *
+	 * @param itemNames the names of the items a client has subscribed to
+	 */
+	public void observe(Collection<String> itemNames) {
+		for(String itemName : itemNames) {
+			Item item = ItemResource.getItem(itemName);
+			if(item instanceof GenericItem) {
+				((GenericItem) item).addStateChangeListener(this);
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void stateChanged(Item item, State oldState, State newState) {
+		Broadcaster broadcaster = this.broadcaster;
+		if(broadcaster==null || broadcaster.getAtmosphereResources().isEmpty()) {
+			return;
+		}
+		try {
+			String message = serialize(new ItemStateBean(item.getName(), newState.toString(), System.currentTimeMillis()));
+			broadcaster.broadcast(new StateDelta(item.getName(), message));
+		} catch (IOException e) {
+			logger.error("Cannot serialize the state of item '{}': {}", item.getName(), e.getMessage());
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void stateUpdated(Item item, State state) {
+		// only changes are pushed to the stream
+	}
+
+	/**
+	 * Serializes a bean as it is sent on the stream.
+	 *
+	 * @param bean the bean to serialize
+	 * @return the JSON representation of the bean
+	 * @throws IOException if the bean cannot be serialized
+	 */
+	public static String serialize(Object bean) throws IOException {
+		return mapper.writeValueAsString(bean);
+	}
+
+	/**
+	 * A serialized state change of a single item, which is broadcasted to all streams.
+	 */
+	public static class StateDelta {
+
+		private final String itemName;
+		private final String message;
+
+		public StateDelta(String itemName, String message) {
+			this.itemName = itemName;
+			this.message = message;
+		}
+
+		public String getItemName() {
+			return itemName;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+		@Override
+		public String toString() {
+			return message;
+		}
+	}
+
+}
@@ -25,9 +25,12 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
@@ -50,6 +53,7 @@ import org.openhab.core.types.TypeParser;
 import org.openhab.io.rest.RESTApplication;
 import org.openhab.io.rest.internal.broadcaster.GeneralBroadcaster;
 import org.openhab.io.rest.internal.listeners.ItemStateChangeListener;
+import org.openhab.io.rest.internal.listeners.StateVersionListener;
 import org.openhab.io.rest.internal.resources.beans.GroupItemBean;
 import org.openhab.io.rest.internal.resources.beans.ItemBean;
 import org.openhab.io.rest.internal.resources.beans.ItemListBean;
@@ -66,6 +70,10 @@ import com.sun.jersey.api.json.JSONWithPadding;
  * <p>The typical content types are plain text for status values and XML or JSON(P) for more complex data
  * structures</p>
  * 
+ * <p>Plain requests for items are answered with an entity tag, which changes with the states of the items.
+ * Polling clients can send it in an <code>If-None-Match</code> header to receive a <code>304 Not Modified</code>
+ * response as long as nothing has changed.</p>
+ * 
  * <p>This resource is registered with the Jersey servlet.</p>
  *
  * @author Kai Kreuzer
@@ -84,15 +92,22 @@ public class ItemResource {
     @Produces( { MediaType.WILDCARD })
     public Response getItems(
     		@Context HttpHeaders headers,
+    		@Context Request request,
     		@QueryParam("type") String type, 
     		@QueryParam("jsoncallback") @DefaultValue("callback") String callback) {
 		logger.debug("Received HTTP GET request at '{}' for media type '{}'.", new String[] { uriInfo.getPath(), type });
 
 		String responseType = MediaTypeHelper.getResponseMediaType(headers.getAcceptableMediaTypes(), type);
 		if(responseType!=null) {
+			EntityTag entityTag = StateVersionListener.getInstance().getEntityTag(
+					StateVersionListener.getInstance().getVersion(), responseType + callback + uriInfo.getBaseUri());
+			ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+			if(notModified!=null) {
+				return notModified.build();
+			}
 	    	Object responseObject = responseType.equals(MediaTypeHelper.APPLICATION_X_JAVASCRIPT) ?
 	    			new JSONWithPadding(new ItemListBean(getItemBeans()), callback) : new ItemListBean(getItemBeans());
-	    	return Response.ok(responseObject, responseType).build();
+	    	return Response.ok(responseObject, responseType).tag(entityTag).build();
 		} else {
 			return Response.notAcceptable(null).build();
 		}
@@ -127,6 +142,7 @@ public class ItemResource {
     @Produces( { MediaType.WILDCARD })
     public SuspendResponse<Response>  getItemData(
     		@Context HttpHeaders headers,
+    		@Context Request request,
     		@PathParam("itemname") String itemname, 
     		@QueryParam("type") String type, 
     		@QueryParam("jsoncallback") @DefaultValue("callback") String callback,
@@ -136,9 +152,21 @@ public class ItemResource {
 		if(atmosphereTransport==null || atmosphereTransport.isEmpty()) {
 			final String responseType = MediaTypeHelper.getResponseMediaType(headers.getAcceptableMediaTypes(), type);
 			if(responseType!=null) {
-		    	final Object responseObject = responseType.equals(MediaTypeHelper.APPLICATION_X_JAVASCRIPT) ?
-		    			new JSONWithPadding(getItemDataBean(itemname), callback) : getItemDataBean(itemname);
-		    	throw new WebApplicationException(Response.ok(responseObject, responseType).build());  
+				Item item = getItem(itemname);
+				if(item!=null) {
+					EntityTag entityTag = StateVersionListener.getInstance().getEntityTag(
+							StateVersionListener.getInstance().getVersion(item), responseType + callback + uriInfo.getBaseUri());
+					ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+					if(notModified!=null) {
+						throw new WebApplicationException(notModified.build());
+					}
+			    	final Object responseObject = responseType.equals(MediaTypeHelper.APPLICATION_X_JAVASCRIPT) ?
+			    			new JSONWithPadding(getItemDataBean(itemname), callback) : getItemDataBean(itemname);
+			    	throw new WebApplicationException(Response.ok(responseObject, responseType).tag(entityTag).build());
+				} else {
+					logger.info("Received HTTP GET request at '{}' for the unknown item '{}'.", uriInfo.getPath(), itemname);
+					throw new WebApplicationException(404);
+				}
 		
 			} else {
 				throw new WebApplicationException(Response.notAcceptable(null).build());
@@ -180,19 +208,8 @@ public class ItemResource {
 	@Consumes(MediaType.TEXT_PLAIN)	
 	public Response postItemCommand(@PathParam("itemname") String itemname, String value) {
     	Item item = getItem(itemname);
-    	Command command = null;
     	if(item!=null) {
-    		// support for TOGGLE, see https://code.google.com/p/openhab/issues/detail?id=336
-    		if("toggle".equalsIgnoreCase(value) && 
-    				(item instanceof SwitchItem || 
-    				 item instanceof RollershutterItem)) {
-    			if(OnOffType.ON.equals(item.getStateAs(OnOffType.class))) command = OnOffType.OFF;
-    			if(OnOffType.OFF.equals(item.getStateAs(OnOffType.class))) command = OnOffType.ON;
-    			if(UpDownType.UP.equals(item.getStateAs(UpDownType.class))) command = UpDownType.DOWN;
-    			if(UpDownType.DOWN.equals(item.getStateAs(UpDownType.class))) command = UpDownType.UP;
-    		} else {
-    			command = TypeParser.parseCommand(item.getAcceptedCommandTypes(), value);
-    		}
+    		Command command = parseCommand(item, value);
     		if(command!=null) {
     			logger.debug("Received HTTP POST request at '{}' with value '{}'.", uriInfo.getPath(), value);
     			RESTApplication.getEventPublisher().postCommand(itemname, command);
@@ -207,6 +224,29 @@ public class ItemResource {
     	}
 	}
 
+    /**
+     * Parses the command for an item, which has been sent as a string.
+     * 
+     * @param item the item to send the command to
+     * @param value the string representation of the command
+     * @return the command or <code>null</code>, if the value is no valid command for the item
+     */
+    static public Command parseCommand(Item item, String value) {
+    	Command command = null;
+		// support for TOGGLE, see https://code.google.com/p/openhab/issues/detail?id=336
+		if("toggle".equalsIgnoreCase(value) && 
+				(item instanceof SwitchItem || 
+				 item instanceof RollershutterItem)) {
+			if(OnOffType.ON.equals(item.getStateAs(OnOffType.class))) command = OnOffType.OFF;
+			if(OnOffType.OFF.equals(item.getStateAs(OnOffType.class))) command = OnOffType.ON;
+			if(UpDownType.UP.equals(item.getStateAs(UpDownType.class))) command = UpDownType.DOWN;
+			if(UpDownType.DOWN.equals(item.getStateAs(UpDownType.class))) command = UpDownType.UP;
+		} else {
+			command = TypeParser.parseCommand(item.getAcceptedCommandTypes(), value);
+		}
+		return command;
+    }
+
     public static ItemBean createItemBean(Item item, boolean drillDown, String uriPath) {
     	ItemBean bean;
     	if(item instanceof GroupItem && drillDown) {
@@ -60,6 +60,8 @@ public class RootResource {
 	    
 	    bean.links.put("items", uriInfo.getBaseUriBuilder().path(ItemResource.PATH_ITEMS).build().toASCIIString());
 	    bean.links.put("sitemaps", uriInfo.getBaseUriBuilder().path(SitemapResource.PATH_SITEMAPS).build().toASCIIString());
+	    bean.links.put("stream", uriInfo.getBaseUriBuilder().path(StreamResource.PATH_STREAM).build().toASCIIString());
+	    bean.links.put("states", uriInfo.getBaseUriBuilder().path(StateResource.PATH_STATES).build().toASCIIString());
 	    
 	    return bean;
 	}
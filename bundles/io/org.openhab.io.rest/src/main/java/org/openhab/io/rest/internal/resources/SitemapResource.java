@@ -22,9 +22,12 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 
@@ -42,6 +45,7 @@ import org.openhab.core.items.Item;
 import org.openhab.io.rest.RESTApplication;
 import org.openhab.io.rest.internal.broadcaster.GeneralBroadcaster;
 import org.openhab.io.rest.internal.listeners.SitemapStateChangeListener;
+import org.openhab.io.rest.internal.listeners.StateVersionListener;
 import org.openhab.io.rest.internal.resources.beans.MappingBean;
 import org.openhab.io.rest.internal.resources.beans.PageBean;
 import org.openhab.io.rest.internal.resources.beans.SitemapBean;
@@ -74,6 +78,9 @@ import com.sun.jersey.api.json.JSONWithPadding;
  * 
  * <p>The typical content types are XML or JSON.</p>
  * 
+ * <p>Plain requests for pages are answered with an entity tag, which changes with the state of any item,
+ * so that polling clients can use <code>If-None-Match</code> to avoid receiving the same page again.</p>
+ * 
  * <p>This resource is registered with the Jersey servlet.</p>
  *
  * @author Kai Kreuzer
@@ -135,6 +142,7 @@ public class SitemapResource {
 	@Produces( { MediaType.WILDCARD })
     public SuspendResponse<Response> getPageData(
     		@Context HttpHeaders headers,
+    		@Context Request restRequest,
     		@PathParam("sitemapname") String sitemapname,
     		@PathParam("pageid") String pageId,
     		@QueryParam("type") String type, 
@@ -145,9 +153,16 @@ public class SitemapResource {
 		if(atmosphereTransport==null || atmosphereTransport.isEmpty()) {
 			String responseType = MediaTypeHelper.getResponseMediaType(headers.getAcceptableMediaTypes(), type);
 			if(responseType!=null) {
+				// labels, icons and the visibility of widgets may depend on any item, so we use the global version
+				EntityTag entityTag = StateVersionListener.getInstance().getEntityTag(
+						StateVersionListener.getInstance().getVersion(), responseType + callback + uriInfo.getBaseUri());
+				ResponseBuilder notModified = restRequest.evaluatePreconditions(entityTag);
+				if(notModified!=null) {
+					throw new WebApplicationException(notModified.build());
+				}
 		    	Object responseObject = responseType.equals(MediaTypeHelper.APPLICATION_X_JAVASCRIPT) ?
 		    			new JSONWithPadding(getPageBean(sitemapname, pageId, uriInfo.getBaseUriBuilder().build()), callback) : getPageBean(sitemapname, pageId, uriInfo.getBaseUriBuilder().build());
-		    	throw new WebApplicationException(Response.ok(responseObject, responseType).header(ATMOS_TIMEOUT_HEADER, DEFAULT_TIMEOUT_SECS + "").build());
+		    	throw new WebApplicationException(Response.ok(responseObject, responseType).tag(entityTag).header(ATMOS_TIMEOUT_HEADER, DEFAULT_TIMEOUT_SECS + "").build());
 			} else {
 				throw new WebApplicationException(Response.notAcceptable(null).build());
 			}
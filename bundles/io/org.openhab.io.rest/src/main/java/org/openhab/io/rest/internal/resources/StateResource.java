@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.rest.internal.resources;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.UriInfo;
+
+import org.openhab.core.events.EventPublisher;
+import org.openhab.core.items.Item;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.State;
+import org.openhab.core.types.Type;
+import org.openhab.core.types.TypeParser;
+import org.openhab.io.rest.RESTApplication;
+import org.openhab.io.rest.internal.resources.beans.ItemStateBean;
+import org.openhab.io.rest.internal.resources.beans.ItemStateListBean;
+import org.openhab.io.rest.internal.resources.beans.ItemUpdateBean;
+import org.openhab.io.rest.internal.resources.beans.ItemUpdateListBean;
+import org.openhab.ui.items.ItemUIRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.jersey.api.json.JSONWithPadding;
+
+/**
+ * <p>This class acts as a REST resource for the states of many items at once. It saves clients,
+ * which synchronize a large number of items, one request per item.</p>
+ *
+ * <p>A GET request returns the states of a comma separated list of <code>items</code> (or of all items,
+ * if no list is given); unknown items are left out. A POST request takes a list of updates, each of
+ * which either sends a <code>command</code> to an item or sets its <code>state</code>. All updates are
+ * checked before any of them is sent to the event bus; the response contains each update together with
+ * the status code, which the request for the single item would have returned.</p>
+ *
+ * <p>The typical content types are XML or JSON(P).</p>
+ *
+ * <p>This resource is registered with the Jersey servlet.</p>
+ *
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ */
+@Path(StateResource.PATH_STATES)
+public class StateResource {
+
+	private static final Logger logger = LoggerFactory.getLogger(StateResource.class);
+
+	/** The URI path to this resource */
+	public static final String PATH_STATES = "states";
+
+	@Context UriInfo uriInfo;
+
+	@GET
+	@Produces( { MediaType.WILDCARD })
+	public Response getStates(
+			@Context HttpHeaders headers,
+			@QueryParam("items") String items,
+			@QueryParam("type") String type,
+			@QueryParam("jsoncallback") @DefaultValue("callback") String callback) {
+		logger.debug("Received HTTP GET request at '{}' for media type '{}'.", new String[] { uriInfo.getPath(), type });
+
+		String responseType = MediaTypeHelper.getResponseMediaType(headers.getAcceptableMediaTypes(), type);
+		if(responseType!=null) {
+			ItemStateListBean bean = new ItemStateListBean(getStateBeans(items));
+			Object responseObject = responseType.equals(MediaTypeHelper.APPLICATION_X_JAVASCRIPT) ?
+					new JSONWithPadding(bean, callback) : bean;
+			return Response.ok(responseObject, responseType).build();
+		} else {
+			return Response.notAcceptable(null).build();
+		}
+	}
+
+	@POST
+	@Consumes( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
+	@Produces( { MediaType.WILDCARD })
+	public Response postUpdates(
+			@Context HttpHeaders headers,
+			@QueryParam("type") String type,
+			@QueryParam("jsoncallback") @DefaultValue("callback") String callback,
+			ItemUpdateListBean updates) {
+		String responseType = MediaTypeHelper.getResponseMediaType(headers.getAcceptableMediaTypes(), type);
+		if(responseType==null) {
+			return Response.notAcceptable(null).build();
+		}
+		if(updates==null || updates.entries==null || updates.entries.isEmpty()) {
+			logger.warn("Received HTTP POST request at '{}' without any updates.", uriInfo.getPath());
+			return Response.status(Status.BAD_REQUEST).build();
+		}
+		logger.debug("Received HTTP POST request at '{}' with {} updates.", uriInfo.getPath(), updates.entries.size());
+
+		// first check all updates, so that the valid ones can be sent in a single pass
+		List<Type> types = new ArrayList<Type>(updates.entries.size());
+		for(ItemUpdateBean update : updates.entries) {
+			Type parsedType = parseUpdate(update);
+			types.add(parsedType);
+			if(parsedType==null) {
+				logger.warn("Received HTTP POST request at '{}' with an invalid update for item '{}' (status {}).",
+						new Object[] { uriInfo.getPath(), update.item, update.status });
+			}
+		}
+
+		EventPublisher eventPublisher = RESTApplication.getEventPublisher();
+		for(int i = 0; i < types.size(); i++) {
+			Type parsedType = types.get(i);
+			if(parsedType!=null) {
+				// many types are commands and states at the same time, so we check what has been requested
+				ItemUpdateBean update = updates.entries.get(i);
+				if(update.command!=null) {
+					eventPublisher.postCommand(update.item, (Command) parsedType);
+				} else {
+					eventPublisher.postUpdate(update.item, (State) parsedType);
+				}
+			}
+		}
+
+		Object responseObject = responseType.equals(MediaTypeHelper.APPLICATION_X_JAVASCRIPT) ?
+				new JSONWithPadding(updates, callback) : updates;
+		return Response.ok(responseObject, responseType).build();
+	}
+
+	/**
+	 * Parses the command or state of an update and sets its status accordingly.
+	 *
+	 * @param update the update to parse
+	 * @return the command or state to send, or <code>null</code> if the update is invalid
+	 */
+	private Type parseUpdate(ItemUpdateBean update) {
+		if(update.item==null || (update.command==null)==(update.state==null)) {
+			update.status = Status.BAD_REQUEST.getStatusCode();
+			return null;
+		}
+		Item item = ItemResource.getItem(update.item);
+		if(item==null) {
+			update.status = Status.NOT_FOUND.getStatusCode();
+			return null;
+		}
+		Type parsedType;
+		if(update.command!=null) {
+			parsedType = ItemResource.parseCommand(item, update.command);
+			update.status = Status.CREATED.getStatusCode();
+		} else {
+			parsedType = TypeParser.parseState(item.getAcceptedDataTypes(), update.state);
+			update.status = Status.OK.getStatusCode();
+		}
+		if(parsedType==null) {
+			update.status = Status.BAD_REQUEST.getStatusCode();
+		}
+		return parsedType;
+	}
+
+	private Collection<ItemStateBean> getStateBeans(String items) {
+		long now = System.currentTimeMillis();
+		List<ItemStateBean> beans = new ArrayList<ItemStateBean>();
+		if(items!=null) {
+			for(String itemName : items.split(",")) {
+				itemName = itemName.trim();
+				if(!itemName.isEmpty()) {
+					Item item = ItemResource.getItem(itemName);
+					if(item!=null) {
+						beans.add(new ItemStateBean(item.getName(), item.getState().toString(), now));
+					} else {
+						logger.debug("Received HTTP GET request at '{}' for the unknown item '{}'.", uriInfo.getPath(), itemName);
+					}
+				}
+			}
+		} else {
+			ItemUIRegistry registry = RESTApplication.getItemUIRegistry();
+			for(Item item : registry.getItems()) {
+				beans.add(new ItemStateBean(item.getName(), item.getState().toString(), now));
+			}
+		}
+		return beans;
+	}
+
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.rest.internal.resources;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.UriInfo;
+
+import org.atmosphere.annotation.Suspend.SCOPE;
+import org.atmosphere.cpr.AtmosphereResource;
+import org.atmosphere.cpr.AtmosphereResource.TRANSPORT;
+import org.atmosphere.cpr.HeaderConfig;
+import org.atmosphere.jersey.SuspendResponse;
+import org.openhab.core.items.GroupItem;
+import org.openhab.core.items.Item;
+import org.openhab.io.rest.RESTApplication;
+import org.openhab.io.rest.internal.listeners.SitemapStateChangeListener;
+import org.openhab.io.rest.internal.listeners.StreamStateChangeListener;
+import org.openhab.io.rest.internal.resources.beans.ItemStateBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>This class acts as a REST resource which streams the state changes of items to its clients.
+ * Instead of receiving complete item or page beans, the clients are sent a compact JSON object
+ * for every change, e.g. <code>{"name":"Light","state":"ON","timestamp":1409000000000}</code>.</p>
+ *
+ * <p>A client subscribes to a comma separated list of <code>items</code>, to all members of
+ * some <code>groups</code> and/or to all items shown on a <code>page</code> of a <code>sitemap</code>.
+ * The stream is available through Atmosphere, preferably with the websocket or server-sent events
+ * transport. Streaming clients first receive a JSON array with the current states of all
+ * subscribed items.</p>
+ *
+ * <p>This resource is registered with the Jersey servlet.</p>
+ *
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ */
+@Path(StreamResource.PATH_STREAM)
+public class StreamResource {
+
+	private static final Logger logger = LoggerFactory.getLogger(StreamResource.class);
+
+	/** The URI path to this resource */
+	public static final String PATH_STREAM = "stream";
+
+	/** the request attribute, which holds the names of the items the client has subscribed to */
+	private static final String SUBSCRIPTION_ATTRIBUTE = StreamResource.class.getName() + ".subscription";
+
+	@Context UriInfo uriInfo;
+
+	@GET
+	@Produces( { MediaType.WILDCARD })
+	public SuspendResponse<String> getStream(
+			@QueryParam("items") String items,
+			@QueryParam("groups") String groups,
+			@QueryParam("sitemap") String sitemapName,
+			@QueryParam("page") String pageId,
+			@HeaderParam(HeaderConfig.X_ATMOSPHERE_TRANSPORT) String atmosphereTransport,
+			@Context AtmosphereResource resource) {
+		logger.debug("Received HTTP GET request at '{}'.", uriInfo.getPath());
+		if(atmosphereTransport==null || atmosphereTransport.isEmpty()) {
+			throw new WebApplicationException(Response.status(Status.BAD_REQUEST)
+					.entity("The stream is only available with the '" + HeaderConfig.X_ATMOSPHERE_TRANSPORT + "' header.").build());
+		}
+
+		Set<String> itemNames = getItemNames(items, groups, sitemapName, pageId);
+		resource.getRequest().setAttribute(SUBSCRIPTION_ATTRIBUTE, itemNames);
+
+		StreamStateChangeListener listener = StreamStateChangeListener.getInstance();
+		listener.observe(itemNames);
+
+		boolean streaming = isStreamingTransport(resource);
+		SuspendResponse.SuspendResponseBuilder<String> builder = new SuspendResponse.SuspendResponseBuilder<String>()
+				.scope(SCOPE.REQUEST)
+				.resumeOnBroadcast(!streaming)
+				.broadcaster(listener.getBroadcaster())
+				.outputComments(true);
+		if(streaming) {
+			builder.entity(getCurrentStates(itemNames));
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Returns the names of the items a client of the stream has subscribed to.
+	 *
+	 * @param request the request of the client
+	 * @return the set of item names or <code>null</code>, if the request is no stream request
+	 */
+	@SuppressWarnings("unchecked")
+	public static Set<String> getSubscription(HttpServletRequest request) {
+		Object subscription = request.getAttribute(SUBSCRIPTION_ATTRIBUTE);
+		return subscription instanceof Set ? (Set<String>) subscription : null;
+	}
+
+	private Set<String> getItemNames(String items, String groups, String sitemapName, String pageId) {
+		Set<String> itemNames = new HashSet<String>();
+		if(items!=null) {
+			for(String itemName : items.split(",")) {
+				itemName = itemName.trim();
+				if(!itemName.isEmpty()) {
+					itemNames.add(getItem(itemName).getName());
+				}
+			}
+		}
+		if(groups!=null) {
+			for(String groupName : groups.split(",")) {
+				groupName = groupName.trim();
+				if(!groupName.isEmpty()) {
+					Item item = getItem(groupName);
+					itemNames.add(item.getName());
+					if(item instanceof GroupItem) {
+						for(Item member : ((GroupItem) item).getAllMembers()) {
+							itemNames.add(member.getName());
+						}
+					}
+				}
+			}
+		}
+		if(sitemapName!=null) {
+			if(RESTApplication.getModelRepository().getModel(sitemapName + SitemapResource.SITEMAP_FILEEXT)==null) {
+				logger.info("Received HTTP GET request at '{}' for the unknown sitemap '{}'.", uriInfo.getPath(), sitemapName);
+				throw new WebApplicationException(404);
+			}
+			itemNames.addAll(SitemapStateChangeListener.getRelevantItemNames(sitemapName, pageId!=null ? pageId : sitemapName));
+		}
+		return itemNames;
+	}
+
+	private Item getItem(String itemName) {
+		Item item = ItemResource.getItem(itemName);
+		if(item==null) {
+			logger.info("Received HTTP GET request at '{}' for the unknown item '{}'.", uriInfo.getPath(), itemName);
+			throw new WebApplicationException(404);
+		}
+		return item;
+	}
+
+	private String getCurrentStates(Set<String> itemNames) {
+		long now = System.currentTimeMillis();
+		List<ItemStateBean> beans = new ArrayList<ItemStateBean>(itemNames.size());
+		for(String itemName : itemNames) {
+			Item item = ItemResource.getItem(itemName);
+			if(item!=null) {
+				beans.add(new ItemStateBean(item.getName(), item.getState().toString(), now));
+			}
+		}
+		try {
+			return StreamStateChangeListener.serialize(beans);
+		} catch (IOException e) {
+			logger.error("Cannot serialize the current item states: {}", e.getMessage());
+			throw new WebApplicationException(Status.INTERNAL_SERVER_ERROR);
+		}
+	}
+
+	private static boolean isStreamingTransport(AtmosphereResource resource) {
+		TRANSPORT transport = resource.transport();
+		return transport==TRANSPORT.WEBSOCKET || transport==TRANSPORT.STREAMING || transport==TRANSPORT.SSE;
+	}
+
+}
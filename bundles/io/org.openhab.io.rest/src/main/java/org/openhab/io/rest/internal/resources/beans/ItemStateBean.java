@@ -0,0 +1,36 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.rest.internal.resources.beans;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * This is a java bean that is used with JAXB to serialize the state of an item
+ * for the item state stream.
+ *
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ *
+ */
+@XmlRootElement(name="state")
+public class ItemStateBean {
+
+	public String name;
+	public String state;
+	public long timestamp;
+
+	public ItemStateBean() {}
+
+	public ItemStateBean(String name, String state, long timestamp) {
+		this.name = name;
+		this.state = state;
+		this.timestamp = timestamp;
+	}
+
+}
@@ -0,0 +1,37 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.rest.internal.resources.beans;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * This is a java bean that is used with JAXB to serialize the states of a list of items.
+ *  
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ *
+ */
+@XmlRootElement(name="states")
+public class ItemStateListBean {
+
+	public ItemStateListBean() {}
+	
+	public ItemStateListBean(Collection<ItemStateBean> list) {
+		entries.addAll(list);
+	}
+	
+	@XmlElement(name="state")
+	public final List<ItemStateBean> entries = new ArrayList<ItemStateBean>();
+	
+}
@@ -0,0 +1,34 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.rest.internal.resources.beans;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * This is a java bean that is used with JAXB to (de-)serialize a single entry of a bulk
+ * update: either a command or a new state for an item. In the response, the status
+ * tells whether the entry has been accepted.
+ *
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ *
+ */
+@XmlRootElement(name="update")
+public class ItemUpdateBean {
+
+	public String item;
+	public String command;
+	public String state;
+
+	/** the HTTP status code, which the single request for this entry would have returned */
+	public Integer status;
+
+	public ItemUpdateBean() {}
+
+}
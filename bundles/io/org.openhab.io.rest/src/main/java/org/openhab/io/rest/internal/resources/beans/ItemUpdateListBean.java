@@ -0,0 +1,32 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.io.rest.internal.resources.beans;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * This is a java bean that is used with JAXB to (de-)serialize the entries of a bulk update.
+ *  
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ *
+ */
+@XmlRootElement(name="updates")
+public class ItemUpdateListBean {
+
+	public ItemUpdateListBean() {}
+	
+	@XmlElement(name="update")
+	public List<ItemUpdateBean> entries = new ArrayList<ItemUpdateBean>();
+	
+}
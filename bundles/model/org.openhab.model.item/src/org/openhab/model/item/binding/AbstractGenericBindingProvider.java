@@ -20,6 +20,8 @@ import java.util.concurrent.CopyOnWriteArraySet;
 import org.openhab.core.binding.BindingChangeListener;
 import org.openhab.core.binding.BindingConfig;
 import org.openhab.core.binding.BindingProvider;
+import org.openhab.core.binding.BindingSubscriptionRegistry;
+import org.openhab.core.events.EventSubscriber;
 import org.openhab.core.items.Item;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +33,10 @@ import org.slf4j.LoggerFactory;
  * <p>This class takes care of tracking all changes in the binding config strings and makes sure that all
  * listeners are correctly notified of any change.<p>
  * 
+ * <p>All listeners that are {@link EventSubscriber}s (i.e. the bindings) are subscribed
+ * to the bound item names at the {@link BindingSubscriptionRegistry}, so that the event
+ * bus can route events directly to them.</p>
+ * 
  * @author Kai Kreuzer
  * @since 0.6.0
  *
@@ -40,6 +46,8 @@ public abstract class AbstractGenericBindingProvider implements BindingConfigRea
 	private static final Logger logger = LoggerFactory.getLogger(AbstractGenericBindingProvider.class);
 
 	private Set<BindingChangeListener> listeners = new CopyOnWriteArraySet<BindingChangeListener>();
+	
+	private final BindingSubscriptionRegistry subscriptionRegistry = BindingSubscriptionRegistry.getInstance();
 
 	/** caches binding configurations. maps itemNames to {@link BindingConfig}s */
 	protected Map<String, BindingConfig> bindingConfigs = new ConcurrentHashMap<String, BindingConfig>(new WeakHashMap<String, BindingConfig>());
@@ -60,6 +68,9 @@ public abstract class AbstractGenericBindingProvider implements BindingConfigRea
 	 */
 	public void addBindingChangeListener(BindingChangeListener listener) {
 		listeners.add(listener);
+		if(listener instanceof EventSubscriber) {
+			subscriptionRegistry.addSubscriber(this, (EventSubscriber) listener);
+		}
 	}
 
 	/**
@@ -67,6 +78,9 @@ public abstract class AbstractGenericBindingProvider implements BindingConfigRea
 	 */
 	public void removeBindingChangeListener(BindingChangeListener listener) {
 		listeners.remove(listener);
+		if(listener instanceof EventSubscriber) {
+			subscriptionRegistry.removeSubscriber(this, (EventSubscriber) listener);
+		}
 	}
 
 	/**
@@ -103,6 +117,7 @@ public abstract class AbstractGenericBindingProvider implements BindingConfigRea
 	}
 
 	private void notifyListeners(Item item) {
+		subscriptionRegistry.bindingChanged(this, item.getName());
 		for (BindingChangeListener listener : listeners) {
             try {
                 listener.bindingChanged(this, item.getName());
@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.model.rule.internal.engine;
+
+import static org.openhab.model.rule.internal.engine.RuleTriggerManagerTest.createChangedTrigger;
+import static org.openhab.model.rule.internal.engine.RuleTriggerManagerTest.createCommandTrigger;
+import static org.openhab.model.rule.internal.engine.RuleTriggerManagerTest.createRule;
+import static org.openhab.model.rule.internal.engine.RuleTriggerManagerTest.createUpdateTrigger;
+import static org.openhab.model.rule.internal.engine.RuleTriggerManager.TriggerTypes.CHANGE;
+import static org.openhab.model.rule.internal.engine.RuleTriggerManager.TriggerTypes.COMMAND;
+import static org.openhab.model.rule.internal.engine.RuleTriggerManager.TriggerTypes.UPDATE;
+
+import org.junit.Test;
+import org.openhab.core.items.Item;
+import org.openhab.core.library.items.SwitchItem;
+import org.openhab.core.library.types.OnOffType;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.State;
+import org.openhab.model.rule.rules.Rule;
+import org.openhab.model.rule.rules.RuleModel;
+import org.openhab.model.rule.rules.RulesFactory;
+
+/**
+ * Measures the cost of finding the triggered rules for item events with 1,000 rules
+ * spread over 250 items. This is not part of the regular test run and is meant to be
+ * started manually, e.g. from the IDE.
+ * 
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ */
+public class RuleTriggerManagerBenchmark {
+
+	private static final int RULE_COUNT = 1000;
+
+	private static final int ITEM_COUNT = 250;
+
+	private static final int WARMUP_ITERATIONS = 100000;
+
+	private static final int MEASURE_ITERATIONS = 1000000;
+
+	@Test
+	public void benchmarkTriggerMatching() {
+		Item[] items = new Item[ITEM_COUNT];
+		for(int i = 0; i < ITEM_COUNT; i++) {
+			items[i] = new SwitchItem("Item_" + i);
+		}
+		
+		RuleModel model = RulesFactory.eINSTANCE.createRuleModel();
+		for(int i = 0; i < RULE_COUNT; i++) {
+			String itemName = items[i % ITEM_COUNT].getName();
+			// each item gets one rule of each kind
+			switch((i / ITEM_COUNT) % 4) {
+				case 0: model.getRules().add(createRule("update_" + i, createUpdateTrigger(itemName, null))); break;
+				case 1: model.getRules().add(createRule("updateOn_" + i, createUpdateTrigger(itemName, "ON"))); break;
+				case 2: model.getRules().add(createRule("change_" + i, createChangedTrigger(itemName, "OFF", "ON"))); break;
+				case 3: model.getRules().add(createRule("command_" + i, createCommandTrigger(itemName, "ON"))); break;
+			}
+		}
+		RuleTriggerManager triggerManager = new RuleTriggerManager();
+		triggerManager.addRuleModel(model);
+		
+		for(int run = 0; run < 2; run++) {
+			int iterations = run == 0 ? WARMUP_ITERATIONS : MEASURE_ITERATIONS;
+			int matches = 0;
+			long start = System.nanoTime();
+			for(int i = 0; i < iterations; i++) {
+				Item item = items[i % ITEM_COUNT];
+				matches += count(triggerManager.getRules(UPDATE, item, (State) OnOffType.ON));
+				matches += count(triggerManager.getRules(CHANGE, item, OnOffType.OFF, OnOffType.ON));
+				matches += count(triggerManager.getRules(COMMAND, item, (Command) OnOffType.OFF));
+			}
+			long duration = System.nanoTime() - start;
+			if(run > 0) {
+				System.out.println(String.format("trigger matching with %d rules: %8.1f ns/event (%d matches)", 
+						RULE_COUNT, (double) duration / (3 * iterations), matches));
+			}
+		}
+		triggerManager.clearAll();
+	}
+	
+	private static int count(Iterable<Rule> rules) {
+		int count = 0;
+		for(@SuppressWarnings("unused") Rule rule : rules) {
+			count++;
+		}
+		return count;
+	}
+
+}
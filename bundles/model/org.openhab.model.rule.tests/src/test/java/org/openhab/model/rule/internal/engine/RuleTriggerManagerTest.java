@@ -0,0 +1,170 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.model.rule.internal.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.openhab.model.rule.internal.engine.RuleTriggerManager.TriggerTypes.CHANGE;
+import static org.openhab.model.rule.internal.engine.RuleTriggerManager.TriggerTypes.COMMAND;
+import static org.openhab.model.rule.internal.engine.RuleTriggerManager.TriggerTypes.UPDATE;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.core.library.items.NumberItem;
+import org.openhab.core.library.items.SwitchItem;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.OnOffType;
+import org.openhab.core.types.Command;
+import org.openhab.core.types.State;
+import org.openhab.model.rule.rules.ChangedEventTrigger;
+import org.openhab.model.rule.rules.CommandEventTrigger;
+import org.openhab.model.rule.rules.EventTrigger;
+import org.openhab.model.rule.rules.Rule;
+import org.openhab.model.rule.rules.RuleModel;
+import org.openhab.model.rule.rules.RulesFactory;
+import org.openhab.model.rule.rules.UpdateEventTrigger;
+
+/**
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ */
+public class RuleTriggerManagerTest {
+
+	private RuleTriggerManager triggerManager;
+	
+	private SwitchItem switchItem = new SwitchItem("Switch");
+	private NumberItem numberItem = new NumberItem("Number");
+
+	@Before
+	public void setUp() {
+		triggerManager = new RuleTriggerManager();
+	}
+	
+	@After
+	public void tearDown() {
+		triggerManager.clearAll();
+	}
+	
+	@Test
+	public void testUpdateTriggers() {
+		Rule anyUpdate = createRule("anyUpdate", createUpdateTrigger("Switch", null));
+		Rule onUpdate = createRule("onUpdate", createUpdateTrigger("Switch", "ON"));
+		addRules(anyUpdate, onUpdate);
+		
+		assertRules(triggerManager.getRules(UPDATE, switchItem, (State) OnOffType.ON), anyUpdate, onUpdate);
+		assertRules(triggerManager.getRules(UPDATE, switchItem, (State) OnOffType.OFF), anyUpdate);
+		assertRules(triggerManager.getRules(UPDATE, numberItem, (State) new DecimalType(1)));
+	}
+	
+	@Test
+	public void testChangeTriggers() {
+		Rule anyChange = createRule("anyChange", createChangedTrigger("Switch", null, null));
+		Rule toOn = createRule("toOn", createChangedTrigger("Switch", null, "ON"));
+		Rule fromOffToOn = createRule("fromOffToOn", createChangedTrigger("Switch", "OFF", "ON"));
+		Rule fromOn = createRule("fromOn", createChangedTrigger("Switch", "ON", null));
+		addRules(anyChange, toOn, fromOffToOn, fromOn);
+		
+		assertRules(triggerManager.getRules(CHANGE, switchItem, OnOffType.OFF, OnOffType.ON), anyChange, toOn, fromOffToOn);
+		assertRules(triggerManager.getRules(CHANGE, switchItem, OnOffType.ON, OnOffType.OFF), anyChange, fromOn);
+	}
+	
+	@Test
+	public void testCommandTriggers() {
+		Rule anyCommand = createRule("anyCommand", createCommandTrigger("Switch", null));
+		Rule onCommand = createRule("onCommand", createCommandTrigger("Switch", "ON"));
+		addRules(anyCommand, onCommand);
+		
+		assertRules(triggerManager.getRules(COMMAND, switchItem, (Command) OnOffType.ON), anyCommand, onCommand);
+		assertRules(triggerManager.getRules(COMMAND, switchItem, (Command) OnOffType.OFF), anyCommand);
+	}
+	
+	@Test
+	public void testDecimalStatesMatchIndependentOfScale() {
+		Rule fiveUpdate = createRule("fiveUpdate", createUpdateTrigger("Number", "5"));
+		addRules(fiveUpdate);
+		
+		assertRules(triggerManager.getRules(UPDATE, numberItem, (State) new DecimalType("5.00")), fiveUpdate);
+		assertRules(triggerManager.getRules(UPDATE, numberItem, (State) new DecimalType("5.1")));
+	}
+	
+	@Test
+	public void testRuleIsReturnedOnlyOnceForSeveralMatchingTriggers() {
+		Rule rule = createRule("twice", createUpdateTrigger("Switch", null), createUpdateTrigger("Switch", "ON"));
+		addRules(rule);
+		
+		assertRules(triggerManager.getRules(UPDATE, switchItem, (State) OnOffType.ON), rule);
+	}
+	
+	@Test
+	public void testRemoveRuleModel() {
+		Rule rule = createRule("rule", createUpdateTrigger("Switch", null));
+		RuleModel model = addRules(rule);
+		assertRules(triggerManager.getRules(UPDATE, switchItem, (State) OnOffType.ON), rule);
+		
+		triggerManager.removeRuleModel(model);
+		assertRules(triggerManager.getRules(UPDATE, switchItem, (State) OnOffType.ON));
+		assertTrue(!triggerManager.getRules(UPDATE).iterator().hasNext());
+	}
+	
+	private RuleModel addRules(Rule... rules) {
+		RuleModel model = RulesFactory.eINSTANCE.createRuleModel();
+		for(Rule rule : rules) {
+			model.getRules().add(rule);
+		}
+		triggerManager.addRuleModel(model);
+		return model;
+	}
+	
+	private static void assertRules(Iterable<Rule> actual, Rule... expected) {
+		List<Rule> actualRules = new ArrayList<Rule>();
+		for(Rule rule : actual) {
+			actualRules.add(rule);
+		}
+		assertEquals(expected.length, actualRules.size());
+		for(Rule rule : expected) {
+			assertTrue("rule '" + rule.getName() + "' is missing", actualRules.contains(rule));
+		}
+	}
+
+	static Rule createRule(String name, EventTrigger... triggers) {
+		Rule rule = RulesFactory.eINSTANCE.createRule();
+		rule.setName(name);
+		for(EventTrigger trigger : triggers) {
+			rule.getEventtrigger().add(trigger);
+		}
+		return rule;
+	}
+	
+	static UpdateEventTrigger createUpdateTrigger(String itemName, String state) {
+		UpdateEventTrigger trigger = RulesFactory.eINSTANCE.createUpdateEventTrigger();
+		trigger.setItem(itemName);
+		trigger.setState(state);
+		return trigger;
+	}
+
+	static ChangedEventTrigger createChangedTrigger(String itemName, String oldState, String newState) {
+		ChangedEventTrigger trigger = RulesFactory.eINSTANCE.createChangedEventTrigger();
+		trigger.setItem(itemName);
+		trigger.setOldState(oldState);
+		trigger.setNewState(newState);
+		return trigger;
+	}
+
+	static CommandEventTrigger createCommandTrigger(String itemName, String command) {
+		CommandEventTrigger trigger = RulesFactory.eINSTANCE.createCommandEventTrigger();
+		trigger.setItem(itemName);
+		trigger.setCommand(command);
+		return trigger;
+	}
+
+}
@@ -8,8 +8,6 @@
  */
 package org.openhab.model.rule.internal.engine;
 
-import static org.openhab.core.events.EventConstants.TOPIC_PREFIX;
-import static org.openhab.core.events.EventConstants.TOPIC_SEPERATOR;
 import static org.openhab.model.rule.internal.engine.RuleTriggerManager.TriggerTypes.CHANGE;
 import static org.openhab.model.rule.internal.engine.RuleTriggerManager.TriggerTypes.COMMAND;
 import static org.openhab.model.rule.internal.engine.RuleTriggerManager.TriggerTypes.SHUTDOWN;
@@ -18,10 +16,17 @@ import static org.openhab.model.rule.internal.engine.RuleTriggerManager.TriggerT
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Dictionary;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.commons.lang.StringUtils;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.xtext.naming.QualifiedName;
+import org.openhab.core.events.EventSubscriber;
 import org.openhab.core.items.GenericItem;
 import org.openhab.core.items.Item;
 import org.openhab.core.items.ItemNotFoundException;
@@ -31,16 +36,15 @@ import org.openhab.core.items.StateChangeListener;
 import org.openhab.core.scriptengine.Script;
 import org.openhab.core.scriptengine.ScriptEngine;
 import org.openhab.core.scriptengine.ScriptExecutionException;
-import org.openhab.core.scriptengine.ScriptExecutionThread;
 import org.openhab.core.types.Command;
-import org.openhab.core.types.EventType;
 import org.openhab.core.types.State;
 import org.openhab.model.core.ModelRepository;
 import org.openhab.model.core.ModelRepositoryChangeListener;
+import org.openhab.model.rule.internal.engine.RuleExecutor.OverflowPolicy;
 import org.openhab.model.rule.rules.Rule;
 import org.openhab.model.rule.rules.RuleModel;
-import org.osgi.service.event.Event;
-import org.osgi.service.event.EventHandler;
+import org.osgi.service.cm.ConfigurationException;
+import org.osgi.service.cm.ManagedService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,13 +55,15 @@ import com.google.common.collect.Lists;
  * This class is the core of the openHAB rule engine.
  * It listens to changes to the rules folder, evaluates the trigger conditions of the rules and
  * schedules them for execution dependent on their triggering conditions.
+ * The rules are executed by a {@link RuleExecutor}, which can be configured
+ * through the "rules" section of openhab.cfg.
  * 
  * @author Kai Kreuzer
  * @since 0.9.0
  *
  */
 @SuppressWarnings("restriction")
-public class RuleEngine implements EventHandler, ItemRegistryChangeListener, StateChangeListener, ModelRepositoryChangeListener {
+public class RuleEngine implements EventSubscriber, ItemRegistryChangeListener, StateChangeListener, ModelRepositoryChangeListener, ManagedService {
 
 		static private final Logger logger = LoggerFactory.getLogger(RuleEngine.class);
 		
@@ -66,6 +72,11 @@ public class RuleEngine implements EventHandler, ItemRegistryChangeListener, Sta
 		private ScriptEngine scriptEngine;
 
 		private RuleTriggerManager triggerManager;
+		
+		private volatile RuleExecutor ruleExecutor = new RuleExecutor();
+		
+		/** the scripts of the rules, which are prepared once and reused for every execution */
+		private final Map<Rule, Script> scriptCache = new ConcurrentHashMap<Rule, Script>();
 						
 		public void activate() {
 			triggerManager = new RuleTriggerManager();
@@ -100,6 +111,74 @@ public class RuleEngine implements EventHandler, ItemRegistryChangeListener, Sta
 			executeRules(triggerManager.getRules(SHUTDOWN));
 			triggerManager.clearAll();
 			triggerManager = null;
+			scriptCache.clear();
+			ruleExecutor.shutdown();
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		public void updated(Dictionary<String, ?> config) throws ConfigurationException {
+			int poolSize = RuleExecutor.DEFAULT_POOL_SIZE;
+			int queueSize = RuleExecutor.DEFAULT_QUEUE_SIZE;
+			OverflowPolicy overflowPolicy = RuleExecutor.DEFAULT_OVERFLOW_POLICY;
+			int ruleConcurrency = RuleExecutor.DEFAULT_RULE_CONCURRENCY;
+			int statisticsInterval = RuleExecutor.DEFAULT_STATISTICS_INTERVAL;
+			Set<String> exclusiveRules = new HashSet<String>();
+			
+			if (config != null) {
+				poolSize = parseInt(config, "threads", poolSize, 1);
+				queueSize = parseInt(config, "queueSize", queueSize, 0);
+				ruleConcurrency = parseInt(config, "concurrency", ruleConcurrency, 0);
+				statisticsInterval = parseInt(config, "statisticsInterval", statisticsInterval, 0);
+				
+				String overflowString = (String) config.get("overflow");
+				if (StringUtils.isNotBlank(overflowString)) {
+					try {
+						overflowPolicy = OverflowPolicy.valueOf(overflowString.trim().toUpperCase());
+					} catch (IllegalArgumentException e) {
+						throw new ConfigurationException("overflow", "Unknown overflow policy '" + overflowString 
+								+ "', valid values are callerruns, block, discard and discardoldest");
+					}
+				}
+				
+				String exclusiveString = (String) config.get("exclusive");
+				if (StringUtils.isNotBlank(exclusiveString)) {
+					for (String ruleName : exclusiveString.split(",")) {
+						if (StringUtils.isNotBlank(ruleName)) {
+							exclusiveRules.add(ruleName.trim());
+						}
+					}
+				}
+			}
+			
+			RuleExecutor oldExecutor = ruleExecutor;
+			ruleExecutor = new RuleExecutor(poolSize, queueSize, overflowPolicy, ruleConcurrency, exclusiveRules, statisticsInterval);
+			oldExecutor.shutdown();
+			logger.debug("Rule executor configured with {} threads and a queue size of {}", poolSize, queueSize);
+		}
+		
+		private int parseInt(Dictionary<String, ?> config, String key, int defaultValue, int minValue) throws ConfigurationException {
+			String value = (String) config.get(key);
+			if (StringUtils.isBlank(value)) {
+				return defaultValue;
+			}
+			try {
+				int result = Integer.parseInt(value.trim());
+				if (result < minValue) {
+					throw new ConfigurationException(key, "The value of '" + key + "' must be at least " + minValue);
+				}
+				return result;
+			} catch (NumberFormatException e) {
+				throw new ConfigurationException(key, "The value of '" + key + "' must be a number");
+			}
+		}
+		
+		/**
+		 * @return the executor which runs the triggered rules
+		 */
+		public RuleExecutor getRuleExecutor() {
+			return ruleExecutor;
 		}
 		
 		public void setItemRegistry(ItemRegistry itemRegistry) {
@@ -127,6 +206,7 @@ public class RuleEngine implements EventHandler, ItemRegistryChangeListener, Sta
 		}
 
 		public void unsetScriptEngine(ScriptEngine scriptEngine) {
+			scriptCache.clear();
 			this.scriptEngine = null;
 		}
 
@@ -166,9 +246,7 @@ public class RuleEngine implements EventHandler, ItemRegistryChangeListener, Sta
 		public void stateChanged(Item item, State oldState, State newState) {			
 			if(triggerManager!=null) {
 				Iterable<Rule> rules = triggerManager.getRules(CHANGE, item, oldState, newState);
-				RuleEvaluationContext context = new RuleEvaluationContext();
-				context.newValue(QualifiedName.create(RuleContextHelper.VAR_PREVIOUS_STATE), oldState);
-				executeRules(rules, context);
+				executeRules(rules, RuleContextHelper.VAR_PREVIOUS_STATE, oldState);
 			}
 		}
 
@@ -182,14 +260,15 @@ public class RuleEngine implements EventHandler, ItemRegistryChangeListener, Sta
 			}
 		}
 
+		/**
+		 * {@inheritDoc}
+		 */
 		public void receiveCommand(String itemName, Command command) {
 			if(triggerManager!=null && itemRegistry!=null) {
 				try {
 					Item item = itemRegistry.getItem(itemName);
 					Iterable<Rule> rules = triggerManager.getRules(COMMAND, item, command);
-					RuleEvaluationContext context = new RuleEvaluationContext();
-					context.newValue(QualifiedName.create(RuleContextHelper.VAR_RECEIVED_COMMAND), command);
-					executeRules(rules, context);
+					executeRules(rules, RuleContextHelper.VAR_RECEIVED_COMMAND, command);
 				} catch (ItemNotFoundException e) {
 					// ignore commands for non-existent items
 				}
@@ -206,27 +285,17 @@ public class RuleEngine implements EventHandler, ItemRegistryChangeListener, Sta
 		/**
 		 * {@inheritDoc}
 		 */
-		public void handleEvent(Event event) {  
-			String itemName = (String) event.getProperty("item");
-			
-			String topic = event.getTopic();
-			String[] topicParts = topic.split(TOPIC_SEPERATOR);
-			
-			if(!(topicParts.length > 2) || !topicParts[0].equals(TOPIC_PREFIX)) {
-				return; // we have received an event with an invalid topic
-			}
-			String operation = topicParts[1];
-			
-			if(operation.equals(EventType.COMMAND.toString())) {
-				Command command = (Command) event.getProperty("command");
-				if(command!=null) receiveCommand(itemName, command);
-			}
+		public void receiveUpdate(String itemName, State newState) {
+			// updates are evaluated through the state change listeners of the items
 		}
 
 		public void modelChanged(String modelName, org.openhab.model.core.EventType type) {
 			if (triggerManager != null) {
 				if(isEnabled() && modelName.endsWith("rules")) {
 					RuleModel model = (RuleModel) modelRepository.getModel(modelName);
+					
+					// the cached scripts may refer to rules which have been changed or removed
+					scriptCache.clear();
 	
 					// remove the rules from the trigger sets
 					if(type == org.openhab.model.core.EventType.REMOVED ||
@@ -253,7 +322,7 @@ public class RuleEngine implements EventHandler, ItemRegistryChangeListener, Sta
 				
 				for(Rule rule : startupRules) {
 					try {
-						Script script = scriptEngine.newScriptFromXExpression(rule.getScript());						
+						Script script = getScript(rule);
 						logger.debug("Executing startup rule '{}'", rule.getName());
 						RuleEvaluationContext context = new RuleEvaluationContext();
 						context.setGlobalContext(RuleContextHelper.getContext(rule));
@@ -275,27 +344,54 @@ public class RuleEngine implements EventHandler, ItemRegistryChangeListener, Sta
 			}
 		}
 
-		protected synchronized void executeRule(Rule rule) {
+		protected void executeRule(Rule rule) {
 			executeRule(rule, new RuleEvaluationContext());
 		}
 			
-		protected synchronized void executeRule(Rule rule, RuleEvaluationContext context) {
-			Script script = scriptEngine.newScriptFromXExpression(rule.getScript());
+		protected void executeRule(Rule rule, RuleEvaluationContext context) {
+			Script script = getScript(rule);
 			
 			logger.debug("Executing rule '{}'", rule.getName());
 			
 			context.setGlobalContext(RuleContextHelper.getContext(rule));
 			
-			ScriptExecutionThread thread = new ScriptExecutionThread(rule.getName(), script, context);
-			thread.start();
+			ruleExecutor.execute(rule.getName(), script, context);
 		}
 
-		protected synchronized void executeRules(Iterable<Rule> rules) {
-			executeRules(rules, new RuleEvaluationContext());
+		/**
+		 * Returns the script of a rule. The script is only created on the first
+		 * execution of the rule and then reused until the rule model changes.
+		 * 
+		 * @param rule the rule to get the script for
+		 * @return the script to execute for the rule
+		 */
+		protected Script getScript(Rule rule) {
+			Script script = scriptCache.get(rule);
+			if(script==null) {
+				script = scriptEngine.newScriptFromXExpression(rule.getScript());
+				scriptCache.put(rule, script);
+			}
+			return script;
+		}
+
+		protected void executeRules(Iterable<Rule> rules) {
+			for(Rule rule : rules) {
+				executeRule(rule);
+			}
 		}
 		
-		protected synchronized void executeRules(Iterable<Rule> rules, RuleEvaluationContext context) {
+		/**
+		 * Executes the given rules, each of them with its own evaluation context that
+		 * contains the given implicit variable.
+		 * 
+		 * @param rules the rules to execute
+		 * @param variableName the name of the implicit variable
+		 * @param value the value of the implicit variable
+		 */
+		protected void executeRules(Iterable<Rule> rules, String variableName, Object value) {
 			for(Rule rule : rules) {
+				RuleEvaluationContext context = new RuleEvaluationContext();
+				context.newValue(QualifiedName.create(variableName), value);
 				executeRule(rule, context);
 			}
 		}
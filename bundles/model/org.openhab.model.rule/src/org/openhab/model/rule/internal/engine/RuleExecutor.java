@@ -0,0 +1,469 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.model.rule.internal.engine;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.xtext.xbase.interpreter.IEvaluationContext;
+import org.openhab.core.scriptengine.Script;
+import org.openhab.core.scriptengine.ScriptExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>The rule executor runs triggered rules on a bounded pool of worker threads.
+ * Rule executions which cannot be started immediately are queued. By default the
+ * queue is unbounded, so that every triggered rule is executed; only if a maximum
+ * queue size is configured, the configured {@link OverflowPolicy} is applied when
+ * the queue is full.</p>
+ *
+ * <p>Additionally the number of concurrent executions of the same rule can be limited,
+ * e.g. to make sure that a rule is never run concurrently with itself. Executions that
+ * exceed this limit are held back until a running execution of this rule has finished.</p>
+ *
+ * <p>The executor keeps some statistics about the queue depth and the latency of the
+ * rule executions, which can be used to tune the configuration. They are logged
+ * periodically, as a warning if rule executions had to be discarded meanwhile.</p>
+ *
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ */
+@SuppressWarnings("restriction")
+public class RuleExecutor {
+
+	static private final Logger logger = LoggerFactory.getLogger(RuleExecutor.class);
+
+	/**
+	 * Defines what happens with a rule execution, if the queue is full.
+	 */
+	public enum OverflowPolicy {
+		/** the rule is executed in the thread that has triggered it, which delays the dispatching of further events */
+		CALLERRUNS,
+		/** the triggering thread waits until there is space in the queue */
+		BLOCK,
+		/** the new rule execution is discarded */
+		DISCARD,
+		/** the oldest queued rule execution is discarded */
+		DISCARDOLDEST
+	}
+
+	/**
+	 * The default number of worker threads. Note that a rule which sleeps or waits for a slow
+	 * action occupies its thread all the time; if all threads are blocked like this, the other
+	 * rules wait in the queue. The default is therefore generous, so that a few of such rules
+	 * do not stall all others. The threads are created on demand and end again
+	 * after they have been idle for a minute.
+	 */
+	public static final int DEFAULT_POOL_SIZE = 50;
+
+	/** the default maximum number of queued rule executions, 0 means unbounded */
+	public static final int DEFAULT_QUEUE_SIZE = 0;
+
+	/** the default number of concurrent executions per rule, 0 means unlimited */
+	public static final int DEFAULT_RULE_CONCURRENCY = 0;
+
+	/**
+	 * the default overflow policy, which never executes a rule in the triggering thread; it only
+	 * applies if a maximum queue size has been configured
+	 */
+	public static final OverflowPolicy DEFAULT_OVERFLOW_POLICY = OverflowPolicy.DISCARDOLDEST;
+
+	/** the default interval in minutes, in which the statistics are logged, 0 means never */
+	public static final int DEFAULT_STATISTICS_INTERVAL = 15;
+
+	private final ThreadPoolExecutor pool;
+
+	private final ScheduledExecutorService statisticsLogger;
+
+	private final OverflowPolicy overflowPolicy;
+
+	private final int queueSize;
+
+	private final int ruleConcurrency;
+
+	private final Set<String> exclusiveRules;
+
+	/** the state of all rules which are currently limited in their concurrency */
+	private final Map<String, RuleState> ruleStates = new HashMap<String, RuleState>();
+
+	private final AtomicLong completedCount = new AtomicLong();
+	private final AtomicLong rejectedCount = new AtomicLong();
+	private final AtomicLong totalQueueLatency = new AtomicLong();
+	private final AtomicLong totalExecutionTime = new AtomicLong();
+	private final AtomicLong maxQueueLatency = new AtomicLong();
+	private final AtomicLong maxExecutionTime = new AtomicLong();
+
+	/** the number of discarded rule executions at the time the statistics were logged the last time */
+	private long lastRejectedCount = 0;
+
+	/**
+	 * Creates a rule executor with the default configuration.
+	 */
+	public RuleExecutor() {
+		this(DEFAULT_POOL_SIZE, DEFAULT_QUEUE_SIZE, DEFAULT_OVERFLOW_POLICY, DEFAULT_RULE_CONCURRENCY, Collections.<String>emptySet(),
+				DEFAULT_STATISTICS_INTERVAL);
+	}
+
+	/**
+	 * Creates a new rule executor.
+	 *
+	 * @param poolSize the number of worker threads
+	 * @param queueSize the maximum number of rule executions that are waiting for a worker thread, 0 for no limit
+	 * @param overflowPolicy the policy to apply if the queue is full
+	 * @param ruleConcurrency the maximum number of concurrent executions of the same rule, 0 for no limit
+	 * @param exclusiveRules the names of rules which must never run concurrently with themselves
+	 * @param statisticsInterval the interval in minutes, in which the statistics are logged, 0 to never log them
+	 */
+	public RuleExecutor(int poolSize, int queueSize, OverflowPolicy overflowPolicy, int ruleConcurrency, Set<String> exclusiveRules,
+			int statisticsInterval) {
+		this.queueSize = queueSize;
+		this.overflowPolicy = overflowPolicy;
+		this.ruleConcurrency = ruleConcurrency;
+		this.exclusiveRules = new HashSet<String>(exclusiveRules);
+
+		BlockingQueue<Runnable> queue = queueSize > 0 ? new ArrayBlockingQueue<Runnable>(queueSize)
+				: new LinkedBlockingQueue<Runnable>();
+		this.pool = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS, queue,
+				new RuleThreadFactory(), new OverflowHandler());
+		this.pool.allowCoreThreadTimeOut(true);
+
+		if(statisticsInterval > 0) {
+			this.statisticsLogger = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "openHAB Rule Executor Statistics");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			this.statisticsLogger.scheduleAtFixedRate(new Runnable() {
+				public void run() {
+					logStatistics();
+				}
+			}, statisticsInterval, statisticsInterval, TimeUnit.MINUTES);
+		} else {
+			this.statisticsLogger = null;
+		}
+	}
+
+	/**
+	 * Schedules the given rule script for execution.
+	 *
+	 * @param ruleName the name of the rule
+	 * @param script the script of the rule
+	 * @param context the evaluation context for this execution
+	 */
+	public void execute(String ruleName, Script script, IEvaluationContext context) {
+		RuleExecution execution = new RuleExecution(ruleName, script, context);
+		int limit = getConcurrencyLimit(ruleName);
+		if(limit > 0) {
+			synchronized(ruleStates) {
+				RuleState state = ruleStates.get(ruleName);
+				if(state==null) {
+					state = new RuleState();
+					ruleStates.put(ruleName, state);
+				}
+				if(state.running >= limit) {
+					// we have to wait until a running execution of this rule has finished
+					if(queueSize > 0 && state.pending.size() >= queueSize) {
+						logger.warn("Too many pending executions of rule '{}', discarding the oldest one.", ruleName);
+						state.pending.removeFirst();
+						rejectedCount.incrementAndGet();
+					}
+					state.pending.add(execution);
+					return;
+				}
+				state.running++;
+			}
+		}
+		submit(execution);
+	}
+
+	/**
+	 * Shuts the executor down. Rule executions which have already been queued are
+	 * still processed, but no new executions are accepted.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+		if(statisticsLogger!=null) {
+			statisticsLogger.shutdown();
+		}
+		synchronized(ruleStates) {
+			ruleStates.clear();
+		}
+		logger.debug("Rule executor has been shut down: {}", this);
+	}
+
+	/**
+	 * @return the number of rule executions that are waiting for a worker thread or
+	 * for the end of another execution of the same rule
+	 */
+	public int getQueueSize() {
+		int size = pool.getQueue().size();
+		synchronized(ruleStates) {
+			for(RuleState state : ruleStates.values()) {
+				size += state.pending.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @return the number of rules that are currently executed
+	 */
+	public int getActiveCount() {
+		return pool.getActiveCount();
+	}
+
+	/**
+	 * @return the number of rule executions that have been finished
+	 */
+	public long getCompletedCount() {
+		return completedCount.get();
+	}
+
+	/**
+	 * @return the number of rule executions that have been discarded
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	/**
+	 * @return the average time in milliseconds between triggering a rule and the start of its execution
+	 */
+	public long getAverageQueueLatency() {
+		long count = completedCount.get();
+		return count > 0 ? TimeUnit.NANOSECONDS.toMillis(totalQueueLatency.get() / count) : 0;
+	}
+
+	/**
+	 * @return the maximum time in milliseconds between triggering a rule and the start of its execution
+	 */
+	public long getMaxQueueLatency() {
+		return TimeUnit.NANOSECONDS.toMillis(maxQueueLatency.get());
+	}
+
+	/**
+	 * @return the average execution time of a rule in milliseconds
+	 */
+	public long getAverageExecutionTime() {
+		long count = completedCount.get();
+		return count > 0 ? TimeUnit.NANOSECONDS.toMillis(totalExecutionTime.get() / count) : 0;
+	}
+
+	/**
+	 * @return the maximum execution time of a rule in milliseconds
+	 */
+	public long getMaxExecutionTime() {
+		return TimeUnit.NANOSECONDS.toMillis(maxExecutionTime.get());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return "RuleExecutor [poolSize=" + pool.getMaximumPoolSize() + ", queueSize=" + getQueueSize()
+				+ ", active=" + getActiveCount() + ", completed=" + getCompletedCount()
+				+ ", rejected=" + getRejectedCount() + ", avgQueueLatency=" + getAverageQueueLatency()
+				+ "ms, maxQueueLatency=" + getMaxQueueLatency() + "ms, avgExecutionTime="
+				+ getAverageExecutionTime() + "ms, maxExecutionTime=" + getMaxExecutionTime() + "ms]";
+	}
+
+	/**
+	 * Logs the statistics; if rule executions have been discarded since the last time, they are logged
+	 * as a warning, as the executor is apparently not able to keep up with the triggered rules.
+	 */
+	/*default */ void logStatistics() {
+		long rejected = getRejectedCount();
+		if(rejected > lastRejectedCount) {
+			logger.warn("{} rule executions have been discarded as the rule queue was full, consider to increase "
+					+ "rules:threads or rules:queueSize: {}", rejected - lastRejectedCount, this);
+		} else if(getCompletedCount() > 0) {
+			logger.info("Rule execution statistics: {}", this);
+		}
+		lastRejectedCount = rejected;
+	}
+
+	private int getConcurrencyLimit(String ruleName) {
+		return exclusiveRules.contains(ruleName) ? 1 : ruleConcurrency;
+	}
+
+	private void submit(RuleExecution execution) {
+		try {
+			pool.execute(execution);
+		} catch (RejectedExecutionException e) {
+			// the pool has been shut down
+			logger.debug("Rule '{}' has not been executed as the rule executor has been shut down.", execution.ruleName);
+			finished(execution);
+		}
+	}
+
+	/**
+	 * Is called whenever an execution has been finished or discarded. If there are pending
+	 * executions of the same rule, the next one is submitted.
+	 */
+	private void finished(RuleExecution execution) {
+		if(getConcurrencyLimit(execution.ruleName) > 0) {
+			RuleExecution next = null;
+			synchronized(ruleStates) {
+				RuleState state = ruleStates.get(execution.ruleName);
+				if(state!=null) {
+					next = state.pending.poll();
+					if(next==null) {
+						state.running--;
+						if(state.running<=0) {
+							ruleStates.remove(execution.ruleName);
+						}
+					}
+				}
+			}
+			if(next!=null && !pool.isShutdown()) {
+				submit(next);
+			}
+		}
+	}
+
+	private static void updateMax(AtomicLong max, long value) {
+		long current = max.get();
+		while(value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+	/**
+	 * Keeps track of the running and pending executions of a single rule.
+	 */
+	private static class RuleState {
+		int running = 0;
+		final LinkedList<RuleExecution> pending = new LinkedList<RuleExecution>();
+	}
+
+	/**
+	 * A single execution of a rule.
+	 */
+	private class RuleExecution implements Runnable {
+
+		final String ruleName;
+		final Script script;
+		final IEvaluationContext context;
+		final long triggerTime = System.nanoTime();
+
+		RuleExecution(String ruleName, Script script, IEvaluationContext context) {
+			this.ruleName = ruleName;
+			this.script = script;
+			this.context = context;
+		}
+
+		public void run() {
+			long startTime = System.nanoTime();
+			Thread currentThread = Thread.currentThread();
+			String threadName = currentThread.getName();
+			// use the rule name as thread name, so that it shows up in the logs
+			currentThread.setName(ruleName);
+			try {
+				script.execute(context);
+			} catch (ScriptExecutionException e) {
+				String msg = e.getCause().getMessage();
+				if (msg==null) {
+					logger.error("Error during the execution of rule '{}'", ruleName, e.getCause());
+				} else {
+					logger.error("Error during the execution of rule '{}': {}", new String[] { ruleName, msg });
+				}
+			} catch (RuntimeException e) {
+				logger.error("Error during the execution of rule '{}'", ruleName, e);
+			} finally {
+				currentThread.setName(threadName);
+				long endTime = System.nanoTime();
+
+				completedCount.incrementAndGet();
+				totalQueueLatency.addAndGet(startTime - triggerTime);
+				totalExecutionTime.addAndGet(endTime - startTime);
+				updateMax(maxQueueLatency, startTime - triggerTime);
+				updateMax(maxExecutionTime, endTime - startTime);
+
+				finished(this);
+			}
+		}
+	}
+
+	/**
+	 * Applies the configured {@link OverflowPolicy}, if a rule execution cannot be queued.
+	 */
+	private class OverflowHandler implements RejectedExecutionHandler {
+
+		public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+			if(executor.isShutdown()) {
+				throw new RejectedExecutionException("Rule executor has been shut down");
+			}
+			RuleExecution execution = (RuleExecution) runnable;
+			switch(overflowPolicy) {
+				case CALLERRUNS:
+					logger.debug("Rule queue is full, executing rule '{}' in the calling thread.", execution.ruleName);
+					execution.run();
+					break;
+				case BLOCK:
+					try {
+						executor.getQueue().put(execution);
+					} catch (InterruptedException e) {
+						discard(execution);
+					}
+					break;
+				case DISCARDOLDEST:
+					RuleExecution oldest = (RuleExecution) executor.getQueue().poll();
+					if(oldest!=null) {
+						discard(oldest);
+					}
+					executor.execute(execution);
+					break;
+				case DISCARD:
+					discard(execution);
+					break;
+			}
+		}
+
+		private void discard(RuleExecution execution) {
+			logger.warn("Rule queue is full, discarding execution of rule '{}'.", execution.ruleName);
+			rejectedCount.incrementAndGet();
+			finished(execution);
+		}
+	}
+
+	/**
+	 * Creates the worker threads with a meaningful name.
+	 */
+	private static class RuleThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "openHAB Rule Executor-" + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+}
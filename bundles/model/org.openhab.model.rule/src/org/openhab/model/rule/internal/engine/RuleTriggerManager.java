@@ -17,12 +17,17 @@ import static org.openhab.model.rule.internal.engine.RuleTriggerManager.TriggerT
 import static org.quartz.JobBuilder.newJob;
 import static org.quartz.TriggerBuilder.newTrigger;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.openhab.core.items.Item;
@@ -51,15 +56,16 @@ import org.quartz.impl.matchers.GroupMatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 /**
  * This is a helper class which deals with everything about rule triggers.
  * It keeps lists of which rule must be executed for which trigger and takes
  * over the evaluation of states and trigger conditions for the rule engine.
+ * Item event triggers are indexed by item name and their state and command
+ * values are parsed only once, so that matching an event does not require
+ * iterating over all triggers of all rules.
  * 
  * @author Kai Kreuzer
  * @since 0.9.0
@@ -79,9 +85,7 @@ public class RuleTriggerManager {
 	}
 	
 	// lookup maps for different triggering conditions
-	private Map<String, Set<Rule>> updateEventTriggeredRules = Maps.newHashMap();
-	private Map<String, Set<Rule>> changedEventTriggeredRules = Maps.newHashMap();
-	private Map<String, Set<Rule>> commandEventTriggeredRules = Maps.newHashMap();
+	private Map<String, ItemTriggers> itemTriggers = new ConcurrentHashMap<String, ItemTriggers>();
 	private List<Rule> systemStartupTriggeredRules = Lists.newArrayList();
 	private List<Rule> systemShutdownTriggeredRules = Lists.newArrayList();
 	private List<Rule> timerEventTriggeredRules = Lists.newArrayList();
@@ -109,14 +113,22 @@ public class RuleTriggerManager {
 			case STARTUP:  result = systemStartupTriggeredRules; break;
 			case SHUTDOWN: result = systemShutdownTriggeredRules; break;
 			case TIMER:    result = timerEventTriggeredRules; break;
-			case UPDATE:   result = Iterables.concat(updateEventTriggeredRules.values()); break;
-			case CHANGE:   result = Iterables.concat(changedEventTriggeredRules.values()); break;
-			case COMMAND:  result = Iterables.concat(commandEventTriggeredRules.values()); break;
+			case UPDATE:
+			case CHANGE:
+			case COMMAND:  result = getItemTriggeredRules(type); break;
 			default:       result = Sets.newHashSet();
 		}
 		return result;
 	}
 
+	private Iterable<Rule> getItemTriggeredRules(TriggerTypes type) {
+		Set<Rule> result = new LinkedHashSet<Rule>();
+		for(ItemTriggers triggers : itemTriggers.values()) {
+			result.addAll(triggers.getRules(type));
+		}
+		return result;
+	}
+
 	/**
 	 * Returns all rules for which the trigger condition is true for the given type, item and state.
 	 * 
@@ -154,95 +166,38 @@ public class RuleTriggerManager {
 		return internalGetRules(triggerType, item, null, command);
 	}
 
-	private Iterable<Rule> getAllRules(TriggerTypes type, String itemName) {
-		switch(type) {
-			case STARTUP:  return systemStartupTriggeredRules;
-			case SHUTDOWN: return systemShutdownTriggeredRules;
-			case UPDATE:   return updateEventTriggeredRules.get(itemName);
-			case CHANGE:   return changedEventTriggeredRules.get(itemName);
-			case COMMAND:  return commandEventTriggeredRules.get(itemName);
-			default:       return Sets.newHashSet();
-		}
-	}
-
 	private Iterable<Rule> internalGetRules(TriggerTypes triggerType, Item item, Type oldType, Type newType) {
-		List<Rule> result = Lists.newArrayList();
-		Iterable<Rule> rules = getAllRules(triggerType, item.getName());
-		if(rules==null) {
-			rules = Lists.newArrayList();
-		}
 		switch(triggerType) {
-		case STARTUP:  return systemStartupTriggeredRules;
-		case SHUTDOWN: return systemShutdownTriggeredRules;
-		case TIMER :   return timerEventTriggeredRules;
-		case UPDATE:   
-			if(newType instanceof State) {
-				State state = (State) newType;
-				for(Rule rule : rules) {
-					for(EventTrigger t : rule.getEventtrigger()) {
-						if (t instanceof UpdateEventTrigger) {
-							UpdateEventTrigger ut = (UpdateEventTrigger) t;
-							if(ut.getItem().equals(item.getName())) {
-								if(ut.getState()!=null) {
-									State triggerState = TypeParser.parseState(item.getAcceptedDataTypes(), ut.getState());
-									if(!state.equals(triggerState)) {
-										continue;
-									}
-								}
-								result.add(rule);
-							}
-						}
-					}
+			case STARTUP:  return systemStartupTriggeredRules;
+			case SHUTDOWN: return systemShutdownTriggeredRules;
+			case TIMER :   return timerEventTriggeredRules;
+			default:
+				ItemTriggers triggers = itemTriggers.get(item.getName());
+				if(triggers==null) {
+					return Collections.emptyList();
 				}
-			}
-			break;
-		case CHANGE:
-			if(newType instanceof State && oldType instanceof State) {
-				State newState = (State) newType;
-				State oldState = (State) oldType;
-				for(Rule rule : rules) {
-					for(EventTrigger t : rule.getEventtrigger()) {
-						if (t instanceof ChangedEventTrigger) {
-							ChangedEventTrigger ct = (ChangedEventTrigger) t;						
-							if(ct.getItem().equals(item.getName())) {
-								if(ct.getOldState()!=null) {
-									State triggerOldState = TypeParser.parseState(item.getAcceptedDataTypes(), ct.getOldState());
-									if(!oldState.equals(triggerOldState)) {
-										continue;
-									}								
-								}
-								if(ct.getNewState()!=null) {
-									State triggerNewState = TypeParser.parseState(item.getAcceptedDataTypes(), ct.getNewState());
-									if(!newState.equals(triggerNewState)) {
-										continue;
-									}								
-								}
-								result.add(rule);
-							}
+				CompiledTriggers compiled = triggers.getCompiledTriggers(item);
+				switch(triggerType) {
+					case UPDATE:
+						if(newType instanceof State) {
+							return compiled.updateTriggers.getRules(newType, null);
 						}
-					}
-				}
-			}
-			break;
-		case COMMAND:  
-			if(newType instanceof Command) {
-				Command command = (Command) newType;
-				for(Rule rule : rules) {
-					for(EventTrigger t : rule.getEventtrigger()) {
-						if (t instanceof CommandEventTrigger) {
-							CommandEventTrigger ct = (CommandEventTrigger) t;
-							Command triggerCommand = TypeParser.parseCommand(item.getAcceptedCommandTypes(), ct.getCommand());
-							if(ct.getItem().equals(item.getName()) &&
-									(triggerCommand==null || command.equals(triggerCommand))) {
-								result.add(rule);
-							}
+						break;
+					case CHANGE:
+						if(newType instanceof State && oldType instanceof State) {
+							return compiled.changeTriggers.getRules(newType, oldType);
 						}
-					}
+						break;
+					case COMMAND:
+						if(newType instanceof Command) {
+							return compiled.commandTriggers.getRules(newType, null);
+						}
+						break;
+					default:
+						break;
 				}
-			}
-			break;
+				return Collections.emptyList();
 		}
-		return result;
 	}
 
 	/**
@@ -254,9 +209,12 @@ public class RuleTriggerManager {
 		switch(type) {
 			case STARTUP:  	systemStartupTriggeredRules.clear(); break;
 			case SHUTDOWN: 	systemShutdownTriggeredRules.clear(); break;
-			case UPDATE:   	updateEventTriggeredRules.clear(); break;
-			case CHANGE:   	changedEventTriggeredRules.clear(); break;
-			case COMMAND:  	commandEventTriggeredRules.clear(); break;
+			case UPDATE:
+			case CHANGE:
+			case COMMAND:  	for(ItemTriggers triggers : itemTriggers.values()) {
+								triggers.clear(type);
+							}
+							break;
 			case TIMER:    	for(Rule rule : timerEventTriggeredRules) {
 								removeTimerRule(rule);
 							}
@@ -290,28 +248,13 @@ public class RuleTriggerManager {
 				systemShutdownTriggeredRules.add(rule);
 			} else if(t instanceof CommandEventTrigger) {
 				CommandEventTrigger ceTrigger = (CommandEventTrigger) t;
-				Set<Rule> rules = commandEventTriggeredRules.get(ceTrigger.getItem());
-				if(rules==null) {
-					rules = new HashSet<Rule>();
-					commandEventTriggeredRules.put(ceTrigger.getItem(), rules);
-				}
-				rules.add(rule);
+				getItemTriggers(ceTrigger.getItem()).add(new TriggerCondition(COMMAND, rule, ceTrigger.getCommand(), null));
 			} else if(t instanceof UpdateEventTrigger) {
 				UpdateEventTrigger ueTrigger = (UpdateEventTrigger) t;
-				Set<Rule> rules = updateEventTriggeredRules.get(ueTrigger.getItem());
-				if(rules==null) {
-					rules = new HashSet<Rule>();
-					updateEventTriggeredRules.put(ueTrigger.getItem(), rules);
-				}
-				rules.add(rule);
+				getItemTriggers(ueTrigger.getItem()).add(new TriggerCondition(UPDATE, rule, ueTrigger.getState(), null));
 			} else if(t instanceof ChangedEventTrigger) {
 				ChangedEventTrigger ceTrigger = (ChangedEventTrigger) t;
-				Set<Rule> rules = changedEventTriggeredRules.get(ceTrigger.getItem());
-				if(rules==null) {
-					rules = new HashSet<Rule>();
-					changedEventTriggeredRules.put(ceTrigger.getItem(), rules);
-				}
-				rules.add(rule);
+				getItemTriggers(ceTrigger.getItem()).add(new TriggerCondition(CHANGE, rule, ceTrigger.getNewState(), ceTrigger.getOldState()));
 			} else if(t instanceof TimerTrigger) {
 				timerEventTriggeredRules.add(rule);
 				try {
@@ -323,6 +266,15 @@ public class RuleTriggerManager {
 		}
 	}
 		
+	private ItemTriggers getItemTriggers(String itemName) {
+		ItemTriggers triggers = itemTriggers.get(itemName);
+		if(triggers==null) {
+			triggers = new ItemTriggers();
+			itemTriggers.put(itemName, triggers);
+		}
+		return triggers;
+	}
+		
 	/**
 	 * Removes a given rule from the mapping tables of a certain trigger type
 	 * 
@@ -333,9 +285,12 @@ public class RuleTriggerManager {
 		switch(type) {
 			case STARTUP:  	systemStartupTriggeredRules.remove(rule); break;
 			case SHUTDOWN: 	systemShutdownTriggeredRules.remove(rule); break;
-			case UPDATE:   	updateEventTriggeredRules.remove(rule); break;
-			case CHANGE:   	changedEventTriggeredRules.remove(rule); break;
-			case COMMAND:  	commandEventTriggeredRules.remove(rule); break;
+			case UPDATE:
+			case CHANGE:
+			case COMMAND:  	for(ItemTriggers triggers : itemTriggers.values()) {
+								triggers.remove(type, Collections.singleton(rule));
+							}
+							break;
 			case TIMER:    	timerEventTriggeredRules.remove(rule); 
 							removeTimerRule(rule);
 							break;
@@ -358,10 +313,17 @@ public class RuleTriggerManager {
 	 * 
 	 * @param ruleModel the rule model
 	 */
-	public void removeRuleModel(RuleModel ruleModel) {
-		removeRules(UPDATE, updateEventTriggeredRules.values(), ruleModel);
-		removeRules(CHANGE, changedEventTriggeredRules.values(), ruleModel);
-		removeRules(COMMAND, commandEventTriggeredRules.values(), ruleModel);
+	public synchronized void removeRuleModel(RuleModel ruleModel) {
+		Collection<Rule> modelRules = ruleModel!=null ? ruleModel.getRules() : Collections.<Rule>emptyList();
+		for(Iterator<ItemTriggers> it = itemTriggers.values().iterator(); it.hasNext();) {
+			ItemTriggers triggers = it.next();
+			triggers.remove(UPDATE, modelRules);
+			triggers.remove(CHANGE, modelRules);
+			triggers.remove(COMMAND, modelRules);
+			if(triggers.isEmpty()) {
+				it.remove();
+			}
+		}
 		removeRules(STARTUP, Collections.singletonList(systemStartupTriggeredRules), ruleModel);
 		removeRules(SHUTDOWN, Collections.singletonList(systemShutdownTriggeredRules), ruleModel);		
 		removeRules(TIMER, Collections.singletonList(timerEventTriggeredRules), ruleModel);		
@@ -463,6 +425,217 @@ public class RuleTriggerManager {
 		}
 	}
 	
+	/**
+	 * A single item event trigger of a rule with the unparsed state or command values
+	 * as they are defined in the rule file.
+	 */
+	private static class TriggerCondition {
+		final TriggerTypes type;
+		final Rule rule;
+		/** the state or command to match, <code>null</code> matches everything */
+		final String value;
+		/** the previous state to match for change triggers, <code>null</code> matches everything */
+		final String oldValue;
+
+		TriggerCondition(TriggerTypes type, Rule rule, String value, String oldValue) {
+			this.type = type;
+			this.rule = rule;
+			this.value = value;
+			this.oldValue = oldValue;
+		}
+	}
+
+	/**
+	 * Holds all triggers which refer to a single item. The trigger values are parsed
+	 * into states and commands only once for the accepted data and command types of
+	 * the item; this compiled form is kept until the triggers or the item types change.
+	 */
+	private static class ItemTriggers {
+
+		private final List<TriggerCondition> conditions = new ArrayList<TriggerCondition>();
+
+		private volatile CompiledTriggers compiled;
+
+		synchronized void add(TriggerCondition condition) {
+			conditions.add(condition);
+			compiled = null;
+		}
+
+		synchronized void remove(TriggerTypes type, Collection<Rule> rules) {
+			for(Iterator<TriggerCondition> it = conditions.iterator(); it.hasNext();) {
+				TriggerCondition condition = it.next();
+				// also remove all proxified rules
+				if(condition.type==type && (rules.contains(condition.rule) || condition.rule.eIsProxy())) {
+					it.remove();
+					compiled = null;
+				}
+			}
+		}
+
+		synchronized void clear(TriggerTypes type) {
+			remove(type, getRules(type));
+		}
+
+		synchronized boolean isEmpty() {
+			return conditions.isEmpty();
+		}
+
+		synchronized Set<Rule> getRules(TriggerTypes type) {
+			Set<Rule> rules = new LinkedHashSet<Rule>();
+			for(TriggerCondition condition : conditions) {
+				if(condition.type==type) {
+					rules.add(condition.rule);
+				}
+			}
+			return rules;
+		}
+
+		CompiledTriggers getCompiledTriggers(Item item) {
+			CompiledTriggers result = compiled;
+			if(result==null || !result.isValidFor(item)) {
+				synchronized(this) {
+					result = compiled;
+					if(result==null || !result.isValidFor(item)) {
+						result = new CompiledTriggers(item, conditions);
+						compiled = result;
+					}
+				}
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * The triggers of an item with the trigger values parsed for the types of the item.
+	 */
+	private static class CompiledTriggers {
+
+		final List<Class<? extends State>> acceptedDataTypes;
+		final List<Class<? extends Command>> acceptedCommandTypes;
+
+		final TriggerLookup updateTriggers = new TriggerLookup();
+		final TriggerLookup changeTriggers = new TriggerLookup();
+		final TriggerLookup commandTriggers = new TriggerLookup();
+
+		CompiledTriggers(Item item, List<TriggerCondition> conditions) {
+			acceptedDataTypes = item.getAcceptedDataTypes();
+			acceptedCommandTypes = item.getAcceptedCommandTypes();
+			for(TriggerCondition condition : conditions) {
+				switch(condition.type) {
+					case UPDATE:
+						if(condition.value==null) {
+							updateTriggers.add(condition.rule, null, null);
+						} else {
+							State state = TypeParser.parseState(acceptedDataTypes, condition.value);
+							// a state which cannot be parsed never matches
+							if(state!=null) {
+								updateTriggers.add(condition.rule, state, null);
+							}
+						}
+						break;
+					case CHANGE:
+						State newState = null;
+						State oldState = null;
+						if(condition.value!=null) {
+							newState = TypeParser.parseState(acceptedDataTypes, condition.value);
+							if(newState==null) break;
+						}
+						if(condition.oldValue!=null) {
+							oldState = TypeParser.parseState(acceptedDataTypes, condition.oldValue);
+							if(oldState==null) break;
+						}
+						changeTriggers.add(condition.rule, newState, oldState);
+						break;
+					case COMMAND:
+						// a command which cannot be parsed matches every command
+						Command command = TypeParser.parseCommand(acceptedCommandTypes, condition.value);
+						commandTriggers.add(condition.rule, command, null);
+						break;
+					default:
+						break;
+				}
+			}
+		}
+
+		boolean isValidFor(Item item) {
+			List<Class<? extends State>> dataTypes = item.getAcceptedDataTypes();
+			List<Class<? extends Command>> commandTypes = item.getAcceptedCommandTypes();
+			return (dataTypes==acceptedDataTypes || dataTypes.equals(acceptedDataTypes))
+				&& (commandTypes==acceptedCommandTypes || commandTypes.equals(acceptedCommandTypes));
+		}
+	}
+
+	/**
+	 * Looks up the rules of a single trigger type by the state or command that 
+	 * is to be matched. Rules without a value condition are kept in a separate list.
+	 */
+	private static class TriggerLookup {
+
+		private final List<TriggerEntry> anyValue = new ArrayList<TriggerEntry>();
+		private final Map<Type, List<TriggerEntry>> byValue = new HashMap<Type, List<TriggerEntry>>();
+
+		/** the rules which are triggered without any further condition */
+		private final List<Rule> unconditionalRules = new ArrayList<Rule>();
+		private final List<Rule> unmodifiableUnconditionalRules = Collections.unmodifiableList(unconditionalRules);
+		private boolean conditional = false;
+
+		void add(Rule rule, Type value, Type oldValue) {
+			TriggerEntry entry = new TriggerEntry(rule, oldValue);
+			if(value==null) {
+				anyValue.add(entry);
+				if(oldValue==null) {
+					if(!unconditionalRules.contains(rule)) {
+						unconditionalRules.add(rule);
+					}
+				} else {
+					conditional = true;
+				}
+			} else {
+				List<TriggerEntry> entries = byValue.get(value);
+				if(entries==null) {
+					entries = new ArrayList<TriggerEntry>(1);
+					byValue.put(value, entries);
+				}
+				entries.add(entry);
+				conditional = true;
+			}
+		}
+
+		List<Rule> getRules(Type value, Type oldValue) {
+			if(!conditional) {
+				// the common case: all rules of this item are triggered, whatever the value is
+				return unmodifiableUnconditionalRules;
+			}
+			List<TriggerEntry> entries = byValue.get(value);
+			List<Rule> result = new ArrayList<Rule>(anyValue.size() + (entries!=null ? entries.size() : 0));
+			addMatching(result, anyValue, oldValue);
+			if(entries!=null) {
+				addMatching(result, entries, oldValue);
+			}
+			return result;
+		}
+
+		private static void addMatching(List<Rule> result, List<TriggerEntry> entries, Type oldValue) {
+			for(TriggerEntry entry : entries) {
+				if(entry.oldValue==null || entry.oldValue.equals(oldValue)) {
+					if(!result.contains(entry.rule)) {
+						result.add(entry.rule);
+					}
+				}
+			}
+		}
+	}
+
+	private static class TriggerEntry {
+		final Rule rule;
+		final Type oldValue;
+
+		TriggerEntry(Rule rule, Type oldValue) {
+			this.rule = rule;
+			this.oldValue = oldValue;
+		}
+	}
+
 	private String getJobIdentityString(Rule rule, TimerTrigger trigger) {
 		String jobIdentity = EcoreUtil.getURI(rule).trimFragment().appendFragment(rule.getName()).toString();
 		if (trigger != null) {
@@ -29,6 +29,7 @@ import org.openhab.core.items.Item;
 import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.core.persistence.FilterCriteria.Ordering;
 import org.openhab.core.persistence.HistoricItem;
+import org.openhab.core.persistence.HistoricItemCursor;
 import org.openhab.core.persistence.PersistenceService;
 import org.openhab.core.persistence.QueryablePersistenceService;
 import org.quartz.CronScheduleBuilder;
@@ -156,6 +157,12 @@ public class Db4oPersistenceService implements QueryablePersistenceService {
 				query.descend("timestamp").orderDescending();
 			}
 			ObjectSet<HistoricItem> results = query.execute();
+			
+			// the object set only holds the ids of the results, the items themselves are
+			// activated when they are accessed, so large results are not loaded at once
+			if (HistoricItemCursor.isUnlimited(filter)) {
+				return results;
+			}
 	
 			int startIndex = filter.getPageNumber() * filter.getPageSize();
 			if (startIndex < results.size()) {
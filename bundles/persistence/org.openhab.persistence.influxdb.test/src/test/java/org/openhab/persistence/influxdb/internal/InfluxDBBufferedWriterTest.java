@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.persistence.influxdb.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.influxdb.InfluxDB;
+import org.influxdb.dto.Serie;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * @author Theo Weiss
+ * @since 1.6.0
+ */
+public class InfluxDBBufferedWriterTest {
+
+  /** long enough, so that the background thread never flushes during a test */
+  private static final long FLUSH_INTERVAL = 3600000L;
+
+  private final FakeInfluxDB fake = new FakeInfluxDB();
+
+  private InfluxDBBufferedWriter writer;
+
+  @After
+  public void tearDown() {
+    if (writer != null) {
+      writer.close();
+    }
+  }
+
+  @Test
+  public void testFlushWritesAllPoints() {
+    writer = new InfluxDBBufferedWriter(fake.proxy(), "openhab", 10, FLUSH_INTERVAL, 100);
+    write(0, 1, 2, 3, 4, 5, 6);
+    writer.flush();
+
+    assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6), fake.written);
+    assertEquals(1, fake.requests);
+    assertEquals(0, writer.getBufferedPoints());
+    assertEquals(7, writer.getWrittenPoints());
+    assertEquals(1, writer.getFlushCount());
+  }
+
+  @Test
+  public void testRequeuesOnConnectionFailure() {
+    writer = new InfluxDBBufferedWriter(fake.proxy(), "openhab", 10, FLUSH_INTERVAL, 100);
+    fake.reachable = false;
+    write(0, 1, 2);
+    writer.flush();
+
+    assertEquals(3, writer.getBufferedPoints());
+    assertEquals(1, writer.getFailedFlushCount());
+    assertEquals(0, writer.getWrittenPoints());
+
+    fake.reachable = true;
+    write(3);
+    writer.flush();
+
+    // the points are written in their original order
+    assertEquals(Arrays.asList(0, 1, 2, 3), fake.written);
+    assertEquals(0, writer.getBufferedPoints());
+  }
+
+  @Test
+  public void testDropsRejectedPoints() {
+    writer = new InfluxDBBufferedWriter(fake.proxy(), "openhab", 10, FLUSH_INTERVAL, 100);
+    fake.rejectedValue = 5;
+    write(0, 1, 2, 3, 4, 5, 6, 7);
+    writer.flush();
+
+    assertEquals(Arrays.asList(0, 1, 2, 3, 4, 6, 7), fake.written);
+    assertEquals(0, writer.getBufferedPoints());
+    assertEquals(1, writer.getRejectedPoints());
+    assertEquals(7, writer.getWrittenPoints());
+
+    // the rejected point is not sent again
+    writer.flush();
+    assertEquals(7, fake.written.size());
+  }
+
+  @Test
+  public void testRequeuesOnlyUnwrittenPointsAfterRejection() {
+    writer = new InfluxDBBufferedWriter(fake.proxy(), "openhab", 10, FLUSH_INTERVAL, 100);
+    fake.rejectedValue = 1;
+    // [0,1,2,3] and [0,1] are rejected, [0] is written, [1] is dropped, [2,3] fails
+    fake.reachableRequests = 4;
+    write(0, 1, 2, 3);
+    writer.flush();
+
+    assertEquals(Arrays.asList(0), fake.written);
+    assertEquals(2, writer.getBufferedPoints());
+
+    fake.reachableRequests = Integer.MAX_VALUE;
+    writer.flush();
+    assertEquals(Arrays.asList(0, 2, 3), fake.written);
+  }
+
+  @Test
+  public void testTrimBufferDropsOldestPoints() {
+    writer = new InfluxDBBufferedWriter(fake.proxy(), "openhab", 5, FLUSH_INTERVAL, 5);
+    fake.reachable = false;
+    write(0, 1, 2, 3, 4, 5, 6, 7);
+    // waits for the flush, which has been triggered by reaching the batch size
+    writer.close();
+
+    assertEquals(5, writer.getBufferedPoints());
+    assertEquals(3, writer.getDroppedPoints());
+
+    fake.reachable = true;
+    writer.flush();
+    assertEquals(Arrays.asList(3, 4, 5, 6, 7), fake.written);
+  }
+
+  private void write(int... values) {
+    for (int value : values) {
+      writer.write("Test", 1000L + value, value);
+    }
+  }
+
+  /**
+   * Records the values of all written points. It can either be unreachable or reject every request
+   * which contains a certain value, like InfluxDB does for a request with an invalid point.
+   */
+  private static class FakeInfluxDB implements InvocationHandler {
+
+    final List<Object> written = new ArrayList<Object>();
+    volatile boolean reachable = true;
+    volatile int reachableRequests = Integer.MAX_VALUE;
+    volatile Object rejectedValue = null;
+    int requests = 0;
+
+    InfluxDB proxy() {
+      return (InfluxDB) Proxy.newProxyInstance(getClass().getClassLoader(),
+          new Class<?>[] {InfluxDB.class}, this);
+    }
+
+    @Override
+    public synchronized Object invoke(Object proxy, Method method, Object[] args) {
+      if (!method.getName().equals("write")) {
+        throw new UnsupportedOperationException(method.getName());
+      }
+      if (!reachable || requests >= reachableRequests) {
+        throw new RuntimeException(new IOException("Connection refused"));
+      }
+      requests++;
+      List<Object> values = new ArrayList<Object>();
+      for (Serie serie : (Serie[]) args[2]) {
+        for (Map<String, Object> row : serie.getRows()) {
+          values.add(row.get("value"));
+        }
+      }
+      if (rejectedValue != null && values.contains(rejectedValue)) {
+        throw new RuntimeException("invalid value " + rejectedValue);
+      }
+      written.addAll(values);
+      return null;
+    }
+  }
+
+}
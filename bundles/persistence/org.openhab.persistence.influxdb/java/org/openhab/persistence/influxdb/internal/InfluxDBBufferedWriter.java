@@ -0,0 +1,415 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.persistence.influxdb.internal;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.influxdb.InfluxDB;
+import org.influxdb.dto.Serie;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects points in memory and writes them to InfluxDB from a background thread, so that storing
+ * a value never waits for a HTTP request. Up to {@code batchSize} points are sent in a single
+ * request, with one {@link Serie} per series holding all of its points. Every point keeps the time
+ * at which it has been handed over to the writer.
+ *
+ * A flush is triggered when {@code batchSize} points are buffered or when the flush interval has
+ * passed. If InfluxDB cannot be reached, the points stay in the buffer and are sent again with the
+ * next flush. The buffer holds at most {@code maxBufferedPoints} points, the oldest points are
+ * dropped once this limit is exceeded. If InfluxDB rejects a request, retrying it would fail
+ * forever, so the batch is split up to find the rejected points, which are dropped.
+ *
+ * The statistics of the writer are logged every {@value #STATISTICS_INTERVAL} minutes.
+ *
+ * @author Theo Weiss
+ * @since 1.6.0
+ */
+public class InfluxDBBufferedWriter {
+
+  private static final Logger logger = LoggerFactory.getLogger(InfluxDBBufferedWriter.class);
+
+  private static final String TIME_COLUMN_NAME = "time";
+  private static final String VALUE_COLUMN_NAME = "value";
+
+  /** the interval in minutes in which the statistics are logged */
+  static final int STATISTICS_INTERVAL = 15;
+
+  private final InfluxDB influxDB;
+  private final String dbName;
+  private final int batchSize;
+  private final int maxBufferedPoints;
+
+  /** the points which have not been written yet, the oldest one comes first */
+  private final ArrayDeque<Point> buffer = new ArrayDeque<Point>();
+
+  private final ScheduledExecutorService scheduler;
+
+  /** true, if a flush has been requested because the buffer reached the batch size */
+  private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+
+  /** true, if the last write failed; size triggered flushes are suspended until the next interval */
+  private volatile boolean failing = false;
+
+  private volatile boolean closed = false;
+
+  /** true, if dropping points has been logged since the last successful write */
+  private boolean dropLogged = false;
+
+  private final AtomicLong writtenPoints = new AtomicLong();
+  private final AtomicLong droppedPoints = new AtomicLong();
+  private final AtomicLong rejectedPoints = new AtomicLong();
+  private final AtomicLong flushCount = new AtomicLong();
+  private final AtomicLong failedFlushCount = new AtomicLong();
+  private final AtomicLong totalFlushLatency = new AtomicLong();
+  private volatile long lastFlushLatency = 0;
+  private volatile long maxFlushLatency = 0;
+
+  private final Runnable flushTask = new Runnable() {
+    @Override
+    public void run() {
+      flushRequested.set(false);
+      flush();
+    }
+  };
+
+  /**
+   * @param influxDB the database connection to write to
+   * @param dbName the name of the database
+   * @param batchSize the number of buffered points which triggers a flush
+   * @param flushInterval the time (in milliseconds) after which buffered points are flushed at the
+   *        latest
+   * @param maxBufferedPoints the maximum number of points which are kept while InfluxDB cannot be
+   *        reached
+   */
+  public InfluxDBBufferedWriter(InfluxDB influxDB, String dbName, int batchSize,
+      long flushInterval, int maxBufferedPoints) {
+    this.influxDB = influxDB;
+    this.dbName = dbName;
+    this.batchSize = batchSize;
+    this.maxBufferedPoints = Math.max(maxBufferedPoints, batchSize);
+
+    scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "openHAB InfluxDB Writer");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    scheduler.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        failing = false;
+        flush();
+      }
+    }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    scheduler.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        logStatistics();
+      }
+    }, STATISTICS_INTERVAL, STATISTICS_INTERVAL, TimeUnit.MINUTES);
+  }
+
+  /**
+   * Adds a point to the buffer.
+   *
+   * @param name the name of the series
+   * @param time the time of the point in milliseconds
+   * @param value the value of the point
+   */
+  public void write(String name, long time, Object value) {
+    if (closed) {
+      logger.debug("writer has been closed, dropping point for series {}", name);
+      return;
+    }
+    int size;
+    synchronized (buffer) {
+      buffer.addLast(new Point(name, time, value));
+      trimBuffer();
+      size = buffer.size();
+    }
+    if (size >= batchSize && !failing && flushRequested.compareAndSet(false, true)) {
+      try {
+        scheduler.execute(flushTask);
+      } catch (RuntimeException e) {
+        // the writer is being closed, the points are flushed by close()
+        flushRequested.set(false);
+      }
+    }
+  }
+
+  /**
+   * Writes all buffered points. Points which could not be written because InfluxDB cannot be
+   * reached are put back into the buffer.
+   */
+  void flush() {
+    while (true) {
+      List<Point> points = new ArrayList<Point>();
+      synchronized (buffer) {
+        while (points.size() < batchSize && !buffer.isEmpty()) {
+          points.add(buffer.pollFirst());
+        }
+      }
+      if (points.isEmpty()) {
+        return;
+      }
+      List<Point> unwritten = write(points);
+      if (!unwritten.isEmpty()) {
+        failing = true;
+        requeue(unwritten);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Writes the given points with a single request. If InfluxDB rejects the request, the points are
+   * written in two halves, until the rejected points are found and dropped.
+   *
+   * @return the points which could not be written because InfluxDB cannot be reached
+   */
+  private List<Point> write(List<Point> points) {
+    Serie[] series = toSeries(points);
+    long start = System.currentTimeMillis();
+    try {
+      influxDB.write(dbName, TimeUnit.MILLISECONDS, series);
+    } catch (RuntimeException e) {
+      failedFlushCount.incrementAndGet();
+      if (isConnectionFailure(e)) {
+        logger.error("writing {} points to influxdb failed, will retry: {}", points.size(),
+            e.getMessage());
+        return points;
+      }
+      if (points.size() == 1) {
+        rejectedPoints.incrementAndGet();
+        logger.error("influxdb rejected the point of series {}, dropping it: {}",
+            points.get(0).name, e.getMessage());
+        return Collections.emptyList();
+      }
+      logger.warn("influxdb rejected {} points, writing them in smaller batches: {}", points.size(),
+          e.getMessage());
+      int middle = points.size() / 2;
+      List<Point> unwritten = write(points.subList(0, middle));
+      if (!unwritten.isEmpty()) {
+        List<Point> remaining = new ArrayList<Point>(unwritten);
+        remaining.addAll(points.subList(middle, points.size()));
+        return remaining;
+      }
+      return write(points.subList(middle, points.size()));
+    }
+    long latency = System.currentTimeMillis() - start;
+    recordFlush(points.size(), latency);
+    logger.debug("wrote {} points in {} series to influxdb within {}ms", new Object[] {
+        points.size(), series.length, latency});
+    return Collections.emptyList();
+  }
+
+  /**
+   * Checks whether a write failed because InfluxDB could not be reached. The client reports such
+   * failures with the {@link IOException} as cause, while requests which are answered with an
+   * error status fail without one.
+   */
+  private static boolean isConnectionFailure(Throwable e) {
+    for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+      if (cause instanceof IOException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Stops the background thread and writes all buffered points.
+   */
+  public void close() {
+    closed = true;
+    scheduler.shutdown();
+    try {
+      scheduler.awaitTermination(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+    int remaining = getBufferedPoints();
+    if (remaining > 0) {
+      logger.warn("{} points could not be written to influxdb and are discarded", remaining);
+    }
+  }
+
+  /**
+   * Logs the statistics of the writer, if any points have been handed over to it.
+   */
+  void logStatistics() {
+    if (writtenPoints.get() > 0 || getBufferedPoints() > 0) {
+      logger.info("influxdb writer statistics: {}", this);
+    }
+  }
+
+  private Serie[] toSeries(List<Point> points) {
+    Map<String, Serie.Builder> builders = new LinkedHashMap<String, Serie.Builder>();
+    for (Point point : points) {
+      Serie.Builder builder = builders.get(point.name);
+      if (builder == null) {
+        builder = new Serie.Builder(point.name).columns(TIME_COLUMN_NAME, VALUE_COLUMN_NAME);
+        builders.put(point.name, builder);
+      }
+      builder.values(point.time, point.value);
+    }
+    Serie[] series = new Serie[builders.size()];
+    int i = 0;
+    for (Serie.Builder builder : builders.values()) {
+      series[i++] = builder.build();
+    }
+    return series;
+  }
+
+  private void requeue(List<Point> points) {
+    synchronized (buffer) {
+      for (int i = points.size() - 1; i >= 0; i--) {
+        buffer.addFirst(points.get(i));
+      }
+      trimBuffer();
+    }
+  }
+
+  private void trimBuffer() {
+    int dropped = 0;
+    while (buffer.size() > maxBufferedPoints) {
+      buffer.pollFirst();
+      dropped++;
+    }
+    if (dropped > 0) {
+      droppedPoints.addAndGet(dropped);
+      if (!dropLogged) {
+        dropLogged = true;
+        logger.warn("influxdb write buffer is full, dropping the oldest points");
+      }
+    }
+  }
+
+  private void recordFlush(int points, long latency) {
+    writtenPoints.addAndGet(points);
+    flushCount.incrementAndGet();
+    totalFlushLatency.addAndGet(latency);
+    lastFlushLatency = latency;
+    synchronized (buffer) {
+      if (dropLogged) {
+        dropLogged = false;
+        logger.info("influxdb is reachable again, {} points have been dropped so far",
+            droppedPoints.get());
+      }
+    }
+    if (latency > maxFlushLatency) {
+      maxFlushLatency = latency;
+    }
+  }
+
+  /**
+   * @return the number of points which are waiting to be written
+   */
+  public int getBufferedPoints() {
+    synchronized (buffer) {
+      return buffer.size();
+    }
+  }
+
+  /**
+   * @return the number of points which have been written successfully
+   */
+  public long getWrittenPoints() {
+    return writtenPoints.get();
+  }
+
+  /**
+   * @return the number of points which have been dropped because the buffer was full
+   */
+  public long getDroppedPoints() {
+    return droppedPoints.get();
+  }
+
+  /**
+   * @return the number of points which have been dropped because influxdb rejected them
+   */
+  public long getRejectedPoints() {
+    return rejectedPoints.get();
+  }
+
+  /**
+   * @return the number of successful write requests
+   */
+  public long getFlushCount() {
+    return flushCount.get();
+  }
+
+  /**
+   * @return the number of failed write requests
+   */
+  public long getFailedFlushCount() {
+    return failedFlushCount.get();
+  }
+
+  /**
+   * @return the duration of the last successful write request in milliseconds
+   */
+  public long getLastFlushLatency() {
+    return lastFlushLatency;
+  }
+
+  /**
+   * @return the longest duration of a successful write request in milliseconds
+   */
+  public long getMaxFlushLatency() {
+    return maxFlushLatency;
+  }
+
+  /**
+   * @return the average duration of the successful write requests in milliseconds
+   */
+  public long getAverageFlushLatency() {
+    long count = flushCount.get();
+    return count == 0 ? 0 : totalFlushLatency.get() / count;
+  }
+
+  @Override
+  public String toString() {
+    return "InfluxDBBufferedWriter [buffered=" + getBufferedPoints() + ", written="
+        + getWrittenPoints() + ", dropped=" + getDroppedPoints() + ", rejected="
+        + getRejectedPoints() + ", flushes=" + getFlushCount() + ", failedFlushes="
+        + getFailedFlushCount() + ", lastFlushLatency=" + getLastFlushLatency()
+        + "ms, avgFlushLatency=" + getAverageFlushLatency() + "ms, maxFlushLatency="
+        + getMaxFlushLatency() + "ms]";
+  }
+
+  private static final class Point {
+    final String name;
+    final long time;
+    final Object value;
+
+    Point(String name, long time, Object value) {
+      this.name = name;
+      this.time = time;
+      this.value = value;
+    }
+  }
+
+}
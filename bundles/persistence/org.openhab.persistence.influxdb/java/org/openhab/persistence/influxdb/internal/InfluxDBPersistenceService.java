@@ -9,6 +9,7 @@ package org.openhab.persistence.influxdb.internal;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Dictionary;
@@ -26,17 +27,21 @@ import org.openhab.core.items.ItemNotFoundException;
 import org.openhab.core.items.ItemRegistry;
 import org.openhab.core.library.items.ContactItem;
 import org.openhab.core.library.items.DimmerItem;
+import org.openhab.core.library.items.NumberItem;
+import org.openhab.core.library.items.RollershutterItem;
 import org.openhab.core.library.items.SwitchItem;
 import org.openhab.core.library.types.DateTimeType;
 import org.openhab.core.library.types.DecimalType;
 import org.openhab.core.library.types.OnOffType;
 import org.openhab.core.library.types.OpenClosedType;
 import org.openhab.core.library.types.PercentType;
+import org.openhab.core.persistence.AggregatingPersistenceService;
+import org.openhab.core.persistence.BatchPersistenceService;
 import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.core.persistence.FilterCriteria.Ordering;
 import org.openhab.core.persistence.HistoricItem;
+import org.openhab.core.persistence.PersistenceSample;
 import org.openhab.core.persistence.PersistenceService;
-import org.openhab.core.persistence.QueryablePersistenceService;
 import org.openhab.core.types.State;
 import org.openhab.core.types.UnDefType;
 import org.osgi.service.cm.ConfigurationException;
@@ -56,27 +61,39 @@ import retrofit.RetrofitError;
  * The defaults for the database name, the database user and the database url are "openhab",
  * "openhab" and "http://127.0.0.1:8086".
  * 
+ * Values are not written right away but collected by an {@link InfluxDBBufferedWriter}, which
+ * sends them in batches from a background thread. Each value keeps the time at which it has been
+ * handed over for persistence.
+ * 
  * @author Theo Weiss - Initial Contribution
  * @author Ben Jones - Upgraded influxdb-java version
  * @since 1.5.0
  */
-public class InfluxDBPersistenceService implements QueryablePersistenceService, ManagedService {
+public class InfluxDBPersistenceService implements AggregatingPersistenceService,
+    BatchPersistenceService, ManagedService {
 
   private static final String DEFAULT_URL = "http://127.0.0.1:8086";
   private static final String DEFAULT_DB = "openhab";
   private static final String DEFAULT_USER = "openhab";
+  private static final int DEFAULT_BATCH_SIZE = 100;
+  private static final int DEFAULT_FLUSH_INTERVAL = 1000;
+  private static final int DEFAULT_MAX_BUFFERED_POINTS = 10000;
   private static final String OK_STATUS = "ok";
   private static final String DIGITAL_VALUE_OFF = "0";
   private static final String DIGITAL_VALUE_ON = "1";
   private static final String VALUE_COLUMN_NAME = "value";
   private ItemRegistry itemRegistry;
   private InfluxDB influxDB;
+  private volatile InfluxDBBufferedWriter writer;
   private static final Logger logger = LoggerFactory.getLogger(InfluxDBPersistenceService.class);
   private static final Object TIME_COLUMN_NAME = "time";
   private String dbName;
   private String url;
   private String user;
   private String password;
+  private int batchSize;
+  private int flushInterval;
+  private int maxBufferedPoints;
   private boolean isProperlyConfigured;
   private boolean connected;
 
@@ -103,6 +120,10 @@ public class InfluxDBPersistenceService implements QueryablePersistenceService,
       // connection
       influxDB = InfluxDBFactory.connect(url, user, password);
     }
+    if (writer == null) {
+      writer =
+          new InfluxDBBufferedWriter(influxDB, dbName, batchSize, flushInterval, maxBufferedPoints);
+    }
     connected = true;
   }
 
@@ -132,6 +153,11 @@ public class InfluxDBPersistenceService implements QueryablePersistenceService,
   }
 
   private void disconnect() {
+    if (writer != null) {
+      // write the buffered points before the configuration changes
+      writer.close();
+      writer = null;
+    }
     influxDB = null;
     connected = false;
   }
@@ -171,22 +197,38 @@ public class InfluxDBPersistenceService implements QueryablePersistenceService,
 
     String realName = item.getName();
     String name = (alias != null) ? alias : realName;
-    Object value = stateToObject(item.getState());
-    logger.trace("storing {} in influxdb {}", name, value);
+    write(name, System.currentTimeMillis(), item.getState());
+  }
 
-    // For now time is calculated by influxdb, may be this should be configurable?
-    Serie serie = new Serie.Builder(name)
-    		.columns(VALUE_COLUMN_NAME)
-    		.values(value)
-    		.build();
-    // serie.setColumns(new String[] {"time", VALUE_COLUMN_NAME});
-    // Object[] point = new Object[] {System.currentTimeMillis(), value};
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void store(Collection<PersistenceSample> samples) {
+    if (!isProperlyConfigured) {
+      logger.error("Configuration for influxdb not yet loaded or broken.");
+      return;
+    }
 
-    try {
-      influxDB.write(dbName, TimeUnit.MILLISECONDS, serie);
-    } catch (RuntimeException e) {
-      logger.error("storing failed with exception for item: {}", name);
-      handleDatabaseException(e);
+    if (!isConnected()) {
+      logger.error("InfluxDB is not yet connected");
+      return;
+    }
+
+    for (PersistenceSample sample : samples) {
+      if (sample.getState() instanceof UnDefType) {
+        continue;
+      }
+      write(sample.getName(), sample.getTimestamp().getTime(), sample.getState());
+    }
+  }
+
+  private void write(String name, long time, State state) {
+    Object value = stateToObject(state);
+    logger.trace("storing {} in influxdb {}", name, value);
+    InfluxDBBufferedWriter writer = this.writer;
+    if (writer != null) {
+      writer.write(name, time, value);
     }
   }
 
@@ -236,6 +278,10 @@ public class InfluxDBPersistenceService implements QueryablePersistenceService,
       logger.debug("using default db name {}", DEFAULT_DB);
     }
 
+    batchSize = parseInt(config, "batchSize", DEFAULT_BATCH_SIZE);
+    flushInterval = parseInt(config, "flushInterval", DEFAULT_FLUSH_INTERVAL);
+    maxBufferedPoints = parseInt(config, "maxBufferedPoints", DEFAULT_MAX_BUFFERED_POINTS);
+
     isProperlyConfigured = true;
 
     connect();
@@ -246,6 +292,24 @@ public class InfluxDBPersistenceService implements QueryablePersistenceService,
     }
   }
 
+  private int parseInt(Dictionary<String, ?> config, String key, int defaultValue)
+      throws ConfigurationException {
+    String value = (String) config.get(key);
+    if (StringUtils.isBlank(value)) {
+      return defaultValue;
+    }
+    try {
+      int result = Integer.parseInt(value.trim());
+      if (result > 0) {
+        return result;
+      }
+    } catch (NumberFormatException e) {
+      // handled below
+    }
+    throw new ConfigurationException("influxdb:" + key, "The value '" + value
+        + "' is not a positive number.");
+  }
+
   @Override
   public Iterable<HistoricItem> query(FilterCriteria filter) {
     Integer pageSize = null;
@@ -371,6 +435,106 @@ public class InfluxDBPersistenceService implements QueryablePersistenceService,
     return historicItems;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public HistoricItem aggregate(String itemName, Aggregate aggregate, Date beginDate, Date endDate) {
+    if (aggregate == Aggregate.AVG || aggregate == Aggregate.MIN || aggregate == Aggregate.MAX) {
+      Item item = null;
+      if (itemRegistry != null) {
+        try {
+          item = itemRegistry.getItem(itemName);
+        } catch (ItemNotFoundException e) {
+          logger.warn("Could not find item '{}' in registry", itemName);
+        }
+      }
+      if (!(item instanceof NumberItem || item instanceof DimmerItem
+          || item instanceof RollershutterItem)) {
+        throw new UnsupportedOperationException("cannot compute " + aggregate
+            + " of non numeric item " + itemName);
+      }
+    }
+
+    if (!isProperlyConfigured || !isConnected()) {
+      throw new IllegalStateException("InfluxDB is not yet connected");
+    }
+
+    String function;
+    switch (aggregate) {
+      case AVG:
+        function = "mean";
+        break;
+      case MIN:
+        function = "min";
+        break;
+      case MAX:
+        function = "max";
+        break;
+      case COUNT:
+        function = "count";
+        break;
+      case FIRST:
+        function = "first";
+        break;
+      default:
+        function = "last";
+        break;
+    }
+
+    StringBuffer query = new StringBuffer();
+    query.append("select ");
+    query.append(function);
+    query.append("(");
+    query.append(VALUE_COLUMN_NAME);
+    query.append(") from ");
+    query.append(itemName);
+    if (beginDate != null || endDate != null) {
+      query.append(" where");
+      if (beginDate != null) {
+        query.append(" ");
+        query.append(TIME_COLUMN_NAME);
+        query.append(" > ");
+        query.append(getTimeFilter(beginDate));
+      }
+      if (endDate != null) {
+        if (beginDate != null) {
+          query.append(" and");
+        }
+        query.append(" ");
+        query.append(TIME_COLUMN_NAME);
+        query.append(" < ");
+        query.append(getTimeFilter(endDate));
+      }
+    }
+    logger.debug("aggregate query string: {}", query.toString());
+
+    Date timestamp = endDate != null ? endDate : new Date();
+    List<Serie> results = Collections.emptyList();
+    try {
+      results = influxDB.query(dbName, query.toString(), TimeUnit.MILLISECONDS);
+    } catch (RuntimeException e) {
+      handleDatabaseException(e);
+      throw new IllegalStateException("aggregate query failed with database error", e);
+    }
+    for (Serie result : results) {
+      for (Map<String, Object> row : result.getRows()) {
+        Object rawValue = row.get(function);
+        if (rawValue == null) {
+          continue;
+        }
+        if (aggregate == Aggregate.AVG || aggregate == Aggregate.COUNT) {
+          return new InfluxdbItem(itemName, new DecimalType(String.valueOf(rawValue)), timestamp);
+        }
+        // influxdb returns the time of the aggregated period, not the time of the selected point
+        Double rawTime = (Double) row.get(TIME_COLUMN_NAME);
+        Date time = rawTime != null && rawTime.longValue() > 0 ? new Date(rawTime.longValue()) : timestamp;
+        return new InfluxdbItem(itemName, objectToState(rawValue, itemName), time);
+      }
+    }
+    return aggregate == Aggregate.COUNT ? new InfluxdbItem(itemName, DecimalType.ZERO, timestamp) : null;
+  }
+
   private String getTimeFilter(Date time) {
 	  // for some reason we need to query using 'seconds' only
 	  // passing milli seconds causes no results to be returned
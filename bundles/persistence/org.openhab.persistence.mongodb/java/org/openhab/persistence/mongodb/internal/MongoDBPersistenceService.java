@@ -10,6 +10,7 @@ package org.openhab.persistence.mongodb.internal;
 
 import java.text.DateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
@@ -35,12 +36,13 @@ import org.openhab.core.library.types.OnOffType;
 import org.openhab.core.library.types.OpenClosedType;
 import org.openhab.core.library.types.PercentType;
 import org.openhab.core.library.types.StringType;
+import org.openhab.core.persistence.AggregatingPersistenceService;
 import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.core.persistence.FilterCriteria.Operator;
 import org.openhab.core.persistence.FilterCriteria.Ordering;
 import org.openhab.core.persistence.HistoricItem;
+import org.openhab.core.persistence.HistoricItemCursor;
 import org.openhab.core.persistence.PersistenceService;
-import org.openhab.core.persistence.QueryablePersistenceService;
 import org.openhab.core.types.State;
 import org.openhab.core.types.UnDefType;
 import org.osgi.service.cm.ConfigurationException;
@@ -52,6 +54,7 @@ import com.mongodb.BasicDBObject;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
+import com.mongodb.MongoException;
 import com.mongodb.MongoClient;
 import com.mongodb.MongoClientURI;
 
@@ -61,7 +64,7 @@ import com.mongodb.MongoClientURI;
  * @author Thorsten Hoeger
  * @since 1.5.0
  */
-public class MongoDBPersistenceService implements QueryablePersistenceService,
+public class MongoDBPersistenceService implements AggregatingPersistenceService,
 		ManagedService {
 
 	private static final String FIELD_ID = "_id";
@@ -259,6 +262,10 @@ public class MongoDBPersistenceService implements QueryablePersistenceService,
 		if (!isConnected())
 			return Collections.emptyList();
 
+		// Fetch large results page by page while they are iterated
+		if (HistoricItemCursor.isUnlimited(filter))
+			return new HistoricItemCursor(this, filter);
+
 		String name = filter.getItemName();
 		Item item = getItem(name);
 
@@ -272,13 +279,15 @@ public class MongoDBPersistenceService implements QueryablePersistenceService,
 			Object value = convertValue(filter.getState());
 			query.put(FIELD_VALUE, new BasicDBObject(op, value));
 		}
-		if (filter.getBeginDate() != null) {
-			query.put(FIELD_TIMESTAMP,
-					new BasicDBObject("$gte", filter.getBeginDate()));
-		}
-		if (filter.getEndDate() != null) {
-			query.put(FIELD_TIMESTAMP,
-					new BasicDBObject("$lte", filter.getEndDate()));
+		if (filter.getBeginDate() != null || filter.getEndDate() != null) {
+			BasicDBObject timestamp = new BasicDBObject();
+			if (filter.getBeginDate() != null) {
+				timestamp.put("$gte", filter.getBeginDate());
+			}
+			if (filter.getEndDate() != null) {
+				timestamp.put("$lte", filter.getEndDate());
+			}
+			query.put(FIELD_TIMESTAMP, timestamp);
 		}
 
 		Integer sortDir = (filter.getOrdering() == Ordering.ASCENDING) ? 1 : -1;
@@ -289,32 +298,127 @@ public class MongoDBPersistenceService implements QueryablePersistenceService,
 
 		while (cursor.hasNext()) {
 			BasicDBObject obj = (BasicDBObject) cursor.next();
+			items.add(new MongoDBItem(name, getState(item, obj), obj.getDate(FIELD_TIMESTAMP)));
+		}
+
+		return items;
+	}
+
+	/**
+	 * @{inheritDoc
+	 */
+	@Override
+	public HistoricItem aggregate(String itemName, Aggregate aggregate, Date beginDate, Date endDate) {
+		Item item = getItem(itemName);
+		boolean numeric = item instanceof NumberItem || item instanceof DimmerItem
+				|| item instanceof RollershutterItem;
+		if (!numeric
+				&& (aggregate == Aggregate.AVG || aggregate == Aggregate.MIN || aggregate == Aggregate.MAX)) {
+			throw new UnsupportedOperationException("Unable to compute " + aggregate
+					+ " of non numeric item '" + itemName + "'");
+		}
 
-			final State state;
-			if (item instanceof NumberItem) {
-				state = new DecimalType(obj.getDouble(FIELD_VALUE));
-			} else if (item instanceof DimmerItem) {
-				state = new PercentType(obj.getInt(FIELD_VALUE));
-			} else if (item instanceof SwitchItem) {
-				state = OnOffType.valueOf(obj.getString(FIELD_VALUE));
-			} else if (item instanceof ContactItem) {
-				state = OpenClosedType.valueOf(obj.getString(FIELD_VALUE));
-			} else if (item instanceof RollershutterItem) {
-				state = new PercentType(obj.getInt(FIELD_VALUE));
-			} else if (item instanceof ColorItem) {
-				state = new HSBType(obj.getString(FIELD_VALUE));
-			} else if (item instanceof DateTimeItem) {
-				Calendar cal = Calendar.getInstance();
-				cal.setTime(obj.getDate(FIELD_VALUE));
-				state = new DateTimeType(cal);
-			} else {
-				state = new StringType(obj.getString(FIELD_VALUE));
+		if (!initialized || !isConnected()) {
+			throw new IllegalStateException("No connection to database");
+		}
+
+		DBObject query = new BasicDBObject(FIELD_ITEM, itemName);
+		if (beginDate != null || endDate != null) {
+			BasicDBObject timestamp = new BasicDBObject();
+			if (beginDate != null) {
+				timestamp.put("$gte", beginDate);
 			}
+			if (endDate != null) {
+				timestamp.put("$lte", endDate);
+			}
+			query.put(FIELD_TIMESTAMP, timestamp);
+		}
 
-			items.add(new MongoDBItem(name, state, obj.getDate(FIELD_TIMESTAMP)));
+		try {
+			DBObject sort;
+			switch (aggregate) {
+			case AVG:
+				return group(itemName, query, new BasicDBObject("$avg", "$" + FIELD_VALUE), endDate);
+			case COUNT:
+				HistoricItem count = group(itemName, query, new BasicDBObject("$sum", 1), endDate);
+				return count != null ? count : new MongoDBItem(itemName, DecimalType.ZERO,
+						endDate != null ? endDate : new Date());
+			case MIN:
+				sort = new BasicDBObject(FIELD_VALUE, 1).append(FIELD_TIMESTAMP, 1);
+				break;
+			case MAX:
+				sort = new BasicDBObject(FIELD_VALUE, -1).append(FIELD_TIMESTAMP, 1);
+				break;
+			case FIRST:
+				sort = new BasicDBObject(FIELD_TIMESTAMP, 1);
+				break;
+			default:
+				sort = new BasicDBObject(FIELD_TIMESTAMP, -1);
+				break;
+			}
+
+			DBCursor cursor = this.mongoCollection.find(query).sort(sort).limit(1);
+			try {
+				if (!cursor.hasNext()) {
+					return null;
+				}
+				BasicDBObject obj = (BasicDBObject) cursor.next();
+				return new MongoDBItem(itemName, getState(item, obj), obj.getDate(FIELD_TIMESTAMP));
+			} finally {
+				cursor.close();
+			}
+		} catch (MongoException e) {
+			throw new IllegalStateException("MongoDB aggregate of item '" + itemName + "' failed: "
+					+ e.getMessage(), e);
 		}
+	}
 
-		return items;
+	/**
+	 * Runs an aggregation pipeline, which groups all matching documents into a single
+	 * result by applying the given accumulator to them.
+	 * 
+	 * @return the result or <code>null</code>, if no document matches
+	 */
+	private HistoricItem group(String itemName, DBObject query, DBObject accumulator, Date endDate) {
+		DBObject match = new BasicDBObject("$match", query);
+		DBObject group = new BasicDBObject("$group", new BasicDBObject(FIELD_ID, null).append(
+				FIELD_VALUE, accumulator));
+		for (DBObject result : this.mongoCollection.aggregate(Arrays.asList(match, group)).results()) {
+			Object value = result.get(FIELD_VALUE);
+			if (value instanceof Number) {
+				return new MongoDBItem(itemName, new DecimalType(((Number) value).doubleValue()),
+						endDate != null ? endDate : new Date());
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Converts the value of the given document to a state, which matches the type
+	 * of the given item.
+	 */
+	private State getState(Item item, BasicDBObject obj) {
+		final State state;
+		if (item instanceof NumberItem) {
+			state = new DecimalType(obj.getDouble(FIELD_VALUE));
+		} else if (item instanceof DimmerItem) {
+			state = new PercentType(obj.getInt(FIELD_VALUE));
+		} else if (item instanceof SwitchItem) {
+			state = OnOffType.valueOf(obj.getString(FIELD_VALUE));
+		} else if (item instanceof ContactItem) {
+			state = OpenClosedType.valueOf(obj.getString(FIELD_VALUE));
+		} else if (item instanceof RollershutterItem) {
+			state = new PercentType(obj.getInt(FIELD_VALUE));
+		} else if (item instanceof ColorItem) {
+			state = new HSBType(obj.getString(FIELD_VALUE));
+		} else if (item instanceof DateTimeItem) {
+			Calendar cal = Calendar.getInstance();
+			cal.setTime(obj.getDate(FIELD_VALUE));
+			state = new DateTimeType(cal);
+		} else {
+			state = new StringType(obj.getString(FIELD_VALUE));
+		}
+		return state;
 	}
 
 	private String convertOperator(Operator operator) {
@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.persistence.mysql.internal;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A small pool of database connections, which are used to run queries in parallel
+ * to each other and to the writing of new samples.
+ *
+ * Connections are created on demand up to the maximum number of connections. Idle
+ * connections are checked before they are handed out again, as the server might have
+ * closed them in the meantime.
+ *
+ * @author Chris Jackson
+ * @since 1.6.0
+ */
+public class MysqlConnectionPool {
+
+	private static final Logger logger = LoggerFactory.getLogger(MysqlConnectionPool.class);
+
+	// Connections which have been idle for longer than this (in milliseconds) are validated before use
+	private static final long VALIDATION_INTERVAL = 30000;
+
+	// The time (in seconds) to wait for the validation of a connection
+	private static final int VALIDATION_TIMEOUT = 2;
+
+	private final String url;
+	private final Properties properties;
+	private final int waitTimeout;
+
+	private final Semaphore permits;
+	private final ConcurrentLinkedQueue<IdleConnection> idleConnections = new ConcurrentLinkedQueue<IdleConnection>();
+
+	private volatile boolean closed = false;
+
+	/**
+	 * @param url the database url
+	 * @param properties the connection properties, including user and password
+	 * @param waitTimeout the session wait_timeout to set on new connections, -1 to keep the server default
+	 * @param maxConnections the maximum number of connections that are open at the same time
+	 */
+	public MysqlConnectionPool(String url, Properties properties, int waitTimeout, int maxConnections) {
+		this.url = url;
+		this.properties = properties;
+		this.waitTimeout = waitTimeout;
+		this.permits = new Semaphore(maxConnections, true);
+	}
+
+	/**
+	 * Returns an open connection. The connection must be handed back by calling
+	 * {@link #release(Connection, boolean)}.
+	 *
+	 * @param timeout the maximum time (in milliseconds) to wait for a free connection
+	 * @return the connection
+	 * @throws SQLException if no connection is available or a new one cannot be opened
+	 */
+	public Connection getConnection(long timeout) throws SQLException {
+		if (closed)
+			throw new SQLException("Connection pool has been closed");
+
+		try {
+			if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS))
+				throw new SQLException("No database connection available within " + timeout + "ms");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a database connection");
+		}
+
+		try {
+			IdleConnection idle;
+			while ((idle = idleConnections.poll()) != null) {
+				if (System.currentTimeMillis() - idle.since < VALIDATION_INTERVAL || isValid(idle.connection)) {
+					return idle.connection;
+				}
+				closeConnection(idle.connection);
+			}
+			return openConnection();
+		} catch (SQLException e) {
+			permits.release();
+			throw e;
+		} catch (RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Hands a connection back to the pool.
+	 *
+	 * @param connection the connection returned by {@link #getConnection(long)}
+	 * @param broken true, if an error occurred on the connection, so that it must not be reused
+	 */
+	public void release(Connection connection, boolean broken) {
+		if (broken || closed) {
+			closeConnection(connection);
+		} else {
+			idleConnections.add(new IdleConnection(connection));
+			if (closed) {
+				// the pool has been closed meanwhile
+				closeIdleConnections();
+			}
+		}
+		permits.release();
+	}
+
+	/**
+	 * Closes all idle connections. Connections which are in use are closed as soon as
+	 * they are released.
+	 */
+	public void close() {
+		closed = true;
+		closeIdleConnections();
+	}
+
+	private void closeIdleConnections() {
+		IdleConnection idle;
+		while ((idle = idleConnections.poll()) != null) {
+			closeConnection(idle.connection);
+		}
+	}
+
+	private Connection openConnection() throws SQLException {
+		Connection connection = DriverManager.getConnection(url, properties);
+		if (waitTimeout != -1) {
+			Statement st = connection.createStatement();
+			try {
+				st.executeUpdate("SET SESSION wait_timeout=" + waitTimeout);
+			} finally {
+				st.close();
+			}
+		}
+		logger.debug("mySQL: Opened reader connection to database {}", url);
+		return connection;
+	}
+
+	private boolean isValid(Connection connection) {
+		try {
+			return connection.isValid(VALIDATION_TIMEOUT);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private void closeConnection(Connection connection) {
+		try {
+			connection.close();
+		} catch (Exception hidden) {
+		}
+	}
+
+	private static class IdleConnection {
+		final Connection connection;
+		final long since = System.currentTimeMillis();
+
+		IdleConnection(Connection connection) {
+			this.connection = connection;
+		}
+	}
+
+}
@@ -11,18 +11,30 @@ package org.openhab.persistence.mysql.internal;
 import java.text.SimpleDateFormat;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.Formatter;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -45,10 +57,14 @@ import org.openhab.core.library.types.OnOffType;
 import org.openhab.core.library.types.OpenClosedType;
 import org.openhab.core.library.types.PercentType;
 import org.openhab.core.library.types.StringType;
+import org.openhab.core.library.types.UpDownType;
+import org.openhab.core.persistence.AggregatingPersistenceService;
+import org.openhab.core.persistence.BatchPersistenceService;
 import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.core.persistence.HistoricItem;
+import org.openhab.core.persistence.HistoricItemCursor;
+import org.openhab.core.persistence.PersistenceSample;
 import org.openhab.core.persistence.PersistenceService;
-import org.openhab.core.persistence.QueryablePersistenceService;
 import org.openhab.core.persistence.FilterCriteria.Ordering;
 import org.openhab.core.types.State;
 import org.openhab.core.types.UnDefType;
@@ -78,12 +94,24 @@ import org.slf4j.LoggerFactory;
  * keep the best resolution, we store as a number in SQL and convert to
  * DecimalType before persisting to MySQL.
  * 
+ * The samples are not written one by one, but collected and written in batches
+ * through a prepared statement per item table, either when the batch size is 
+ * reached or when the flush interval has passed. Each sample keeps the time at
+ * which it has been taken.
+ * 
+ * Samples are written through a single connection, while queries are run on a 
+ * small pool of separate connections, so that they neither wait for the writes 
+ * nor for each other.
+ * 
+ * Aggregates are computed by the database, so that only a single row is 
+ * transferred.
+ * 
  * @author Henrik Sjöstrand
  * @author Thomas.Eichstaedt-Engelen
  * @author Chris Jackson
  * @since 1.1.0
  */
-public class MysqlPersistenceService implements QueryablePersistenceService, ManagedService {
+public class MysqlPersistenceService implements AggregatingPersistenceService, BatchPersistenceService, ManagedService {
 
 	private static final Pattern EXTRACT_CONFIG_PATTERN = Pattern.compile("^(.*?)\\.([0-9.a-zA-Z]+)$");
 
@@ -94,7 +122,7 @@ public class MysqlPersistenceService implements QueryablePersistenceService, Man
 	private String user;
 	private String password;
 
-	private boolean initialized = false;
+	private volatile boolean initialized = false;
 	protected ItemRegistry itemRegistry;
 
 	// Error counter - used to reconnect to database on error
@@ -103,12 +131,46 @@ public class MysqlPersistenceService implements QueryablePersistenceService, Man
 	
 	private int waitTimeout = -1;
 
+	// The connection used to write the samples
 	private Connection connection = null;
 
-	private Map<String, String> sqlTables = new HashMap<String, String>();
+	// The connections used to run queries
+	private volatile MysqlConnectionPool readerPool = null;
+	private int readerConnections = 3;
+
+	// The maximum time (in milliseconds) a query waits for a free connection
+	private static final long READER_TIMEOUT = 10000;
+
+	// The number of rows which are fetched at once by a query
+	private static final int FETCH_SIZE = 50;
+
+	private Map<String, String> sqlTables = new ConcurrentHashMap<String, String>();
 	private Map<String, String> sqlTypes = new HashMap<String, String>();
 
+	// The prepared insert statement of each item table
+	private Map<String, PreparedStatement> insertStatements = new HashMap<String, PreparedStatement>();
+
+	// The samples which have not been written to the database yet
+	private final List<PersistenceSample> pendingSamples = new ArrayList<PersistenceSample>();
+
+	// The number of samples which are written at once
+	private int batchSize = 100;
+
+	// The maximum time (in milliseconds) a sample is held back, 0 to write each sample immediately
+	private long flushInterval = 1000;
+
+	private ScheduledExecutorService flushScheduler;
+	private ScheduledFuture<?> flushJob;
+
 	public void activate() {
+		flushScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "openHAB mySQL Writer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
 		// Initialise the type array
 		sqlTypes.put("COLORITEM", "CHAR(25)");
 		sqlTypes.put("CONTACTITEM", "VARCHAR(6)");
@@ -123,7 +185,14 @@ public class MysqlPersistenceService implements QueryablePersistenceService, Man
 
 	public void deactivate() {
 		logger.debug("mySQL persistence bundle stopping. Disconnecting from database.");
+		initialized = false;
+		synchronized (pendingSamples) {
+			flushScheduler.shutdown();
+		}
+		flush();
 		disconnectFromDatabase();
+		closeReaderPool();
+		sqlTables.clear();
 	}
 
 	public void setItemRegistry(ItemRegistry itemRegistry) {
@@ -254,14 +323,65 @@ public class MysqlPersistenceService implements QueryablePersistenceService, Man
 	 * @{inheritDoc
 	 */
 	public void store(Item item, String alias) {
-		// Don't log undefined/uninitialised data
-		if(item.getState() instanceof UnDefType)
-			return;
+		store(Collections.singletonList(new PersistenceSample(item, alias)));
+	}
 
+	/**
+	 * @{inheritDoc
+	 */
+	public void store(Collection<PersistenceSample> samples) {
 		// If we've not initialised the bundle, then return
 		if (initialized == false)
 			return;
 
+		synchronized (pendingSamples) {
+			// The service is being deactivated, so the samples cannot be written anymore
+			if (flushScheduler == null || flushScheduler.isShutdown()) {
+				logger.debug("mySQL: Service has been deactivated. Can not persist {} samples!", samples.size());
+				return;
+			}
+			for (PersistenceSample sample : samples) {
+				// Don't log undefined/uninitialised data
+				if (!(sample.getState() instanceof UnDefType)) {
+					pendingSamples.add(sample);
+				}
+			}
+			if (pendingSamples.isEmpty())
+				return;
+
+			// Wait for more samples, unless the batch is complete
+			if (pendingSamples.size() < batchSize && flushInterval > 0) {
+				if (flushJob == null) {
+					flushJob = flushScheduler.schedule(new Runnable() {
+						public void run() {
+							flush();
+						}
+					}, flushInterval, TimeUnit.MILLISECONDS);
+				}
+				return;
+			}
+		}
+		flush();
+	}
+
+	/**
+	 * Writes all pending samples to the database. The samples of each item table are 
+	 * added to a batch of its prepared statement, which is then executed at once. A 
+	 * failed batch is retried once with a new connection, before its samples are dropped.
+	 */
+	private synchronized void flush() {
+		List<PersistenceSample> samples;
+		synchronized (pendingSamples) {
+			if (flushJob != null) {
+				flushJob.cancel(false);
+				flushJob = null;
+			}
+			samples = new ArrayList<PersistenceSample>(pendingSamples);
+			pendingSamples.clear();
+		}
+		if (samples.isEmpty())
+			return;
+
 		// Connect to mySQL server if we're not already connected 
 		if (!isConnected())
 			connectToDatabase();
@@ -269,59 +389,133 @@ public class MysqlPersistenceService implements QueryablePersistenceService, Man
 		// If we still didn't manage to connect, then return!
 		if (!isConnected()) {
 			logger.warn(
-					"mySQL: No connection to database. Can not persist item '{}'! Will retry connecting to database next time.",
-					item);
+					"mySQL: No connection to database. Can not persist {} samples! Will retry connecting to database next time.",
+					samples.size());
 			return;
 		}
 
-		// Get the table name for this item
-		String tableName = getTable(item);
-		if (tableName == null) {
-			logger.error("Unable to store item '{}'.", item.getName());
-			return;
+		Map<String, List<PersistenceSample>> tables = new LinkedHashMap<String, List<PersistenceSample>>();
+		for (PersistenceSample sample : samples) {
+			Item item = sample.getItem();
+
+			// Get the table name for this item
+			String tableName = getTable(item);
+			if (tableName == null) {
+				logger.error("Unable to store item '{}'.", item.getName());
+				continue;
+			}
+
+			List<PersistenceSample> tableSamples = tables.get(tableName);
+			if (tableSamples == null) {
+				tableSamples = new ArrayList<PersistenceSample>();
+				tables.put(tableName, tableSamples);
+			}
+			tableSamples.add(sample);
 		}
 
-		// Do some type conversion to ensure we know the data type.
-		// This is necessary for items that have multiple types and may return their
-		// state in a format that's not preferred or compatible with the MySQL type.
-		// eg. DimmerItem can return OnOffType (ON, OFF), or PercentType (0-100).
-		// We need to make sure we cover the best type for serialisation.
-		String value;
-		if (item instanceof DimmerItem || item instanceof RollershutterItem) {
-			value = item.getStateAs(PercentType.class).toString();
-		} else if (item instanceof ColorItem) {
-			value = item.getStateAs(HSBType.class).toString();
-		} else {
-			// All other items should return the best format by default
-			value = item.getState().toString();
+		int written = 0;
+		for (Map.Entry<String, List<PersistenceSample>> table : tables.entrySet()) {
+			String tableName = table.getKey();
+			List<PersistenceSample> tableSamples = table.getValue();
+			try {
+				executeBatch(tableName, tableSamples);
+				written += tableSamples.size();
+
+				// Success
+				errCnt = 0;
+			} catch (SQLException e) {
+				// The connection might be broken, so the batch is sent once more through a new one
+				logger.warn("mySQL: Could not store {} samples in table '{}': {}. Retrying with a new connection.",
+						tableSamples.size(), tableName, e.getMessage());
+				disconnectFromDatabase();
+				connectToDatabase();
+				try {
+					if (!isConnected()) {
+						throw new SQLException("No connection to database");
+					}
+					executeBatch(tableName, tableSamples);
+					written += tableSamples.size();
+				} catch (SQLException retryException) {
+					errCnt++;
+					logger.error("mySQL: Dropped {} samples of table '{}': {}", tableSamples.size(), tableName,
+							retryException.getMessage());
+				}
+			}
 		}
+		logger.debug("mySQL: Wrote {} of {} samples to {} tables.", written, samples.size(), tables.size());
+	}
 
-		String sqlCmd = null;
-		Statement statement = null;
+	/**
+	 * Adds the given samples to the batch of the insert statement of their table and executes it.
+	 * If the batch fails, it is cleared, so that the statement can be used again.
+	 * 
+	 * @param tableName the table of the item
+	 * @param samples the samples of the item
+	 * @throws SQLException if the samples could not be stored
+	 */
+	private void executeBatch(String tableName, List<PersistenceSample> samples) throws SQLException {
+		PreparedStatement statement = getInsertStatement(tableName);
 		try {
-			statement = connection.createStatement();
-			sqlCmd = new String("INSERT INTO " + tableName + " (TIME, VALUE) VALUES(NOW(),'"
-					+ item.getState().toString() + "');");
-			statement.executeUpdate(sqlCmd);
-
-			logger.debug("mySQL: Stored item '{}' as '{}'[{}] in SQL database at {}.", item.getName(), item.getState()
-					.toString(), value, (new java.util.Date()).toString());
-			logger.debug("mySQL: {}", sqlCmd);
+			for (PersistenceSample sample : samples) {
+				String value = getValue(sample.getItem(), sample.getState());
+				statement.setTimestamp(1, new Timestamp(sample.getTimestamp().getTime()));
+				statement.setString(2, value);
+				statement.addBatch();
+
+				logger.debug("mySQL: Storing item '{}' as '{}'[{}] in SQL database at {}.", sample.getItem().getName(),
+						sample.getState().toString(), value, sample.getTimestamp());
+			}
+			statement.executeBatch();
+		} catch (SQLException e) {
+			try {
+				statement.clearBatch();
+			} catch (SQLException hidden) {
+			}
+			throw e;
+		}
+	}
 
-			// Success
-			errCnt = 0;
-		} catch (Exception e) {
-			errCnt++;
+	/**
+	 * Returns the prepared insert statement for the given table. If there is already a 
+	 * value for the same point in time, it is replaced.
+	 * 
+	 * @param tableName the table of the item
+	 * @return the cached insert statement
+	 */
+	private PreparedStatement getInsertStatement(String tableName) throws SQLException {
+		PreparedStatement statement = insertStatements.get(tableName);
+		if (statement == null) {
+			statement = connection.prepareStatement("INSERT INTO " + tableName
+					+ " (TIME, VALUE) VALUES(?,?) ON DUPLICATE KEY UPDATE VALUE=VALUES(VALUE);");
+			insertStatements.put(tableName, statement);
+		}
+		return statement;
+	}
 
-			logger.error("mySQL: Could not store item '{}' in database with statement '{}': {}", item.getName(),
-					sqlCmd, e.getMessage());
-		} finally {
-			if (statement != null) {
-				try {
-					statement.close();
-				} catch (Exception hidden) {
-				}
-			}
+	/**
+	 * Converts the given state to the value which is stored in the database.
+	 * 
+	 * Do some type conversion to ensure we know the data type.
+	 * This is necessary for items that have multiple types and may return their
+	 * state in a format that's not preferred or compatible with the MySQL type.
+	 * eg. DimmerItem can return OnOffType (ON, OFF), or PercentType (0-100).
+	 * We need to make sure we cover the best type for serialisation.
+	 * 
+	 * @param item the item the state belongs to
+	 * @param state the state to convert
+	 * @return the value to store
+	 */
+	private String getValue(Item item, State state) {
+		// The state of the sample is converted itself, since the current state of the item might
+		// already be a later one. Dimmers and rollershutters map ON/OFF and UP/DOWN to fixed
+		// percent values, while a color item always holds a HSB value, which is stored as it is.
+		if (item instanceof DimmerItem && state instanceof OnOffType) {
+			return (state == OnOffType.ON ? PercentType.HUNDRED : PercentType.ZERO).toString();
+		} else if (item instanceof RollershutterItem && state instanceof UpDownType) {
+			return (state == UpDownType.DOWN ? PercentType.HUNDRED : PercentType.ZERO).toString();
+		} else {
+			// All other items should return the best format by default
+			return state.toString();
 		}
 	}
 
@@ -350,14 +544,21 @@ public class MysqlPersistenceService implements QueryablePersistenceService, Man
 	/**
 	 * Connects to the database
 	 */
-	private void connectToDatabase() {
+	private synchronized void connectToDatabase() {
 		try {
 			// Reset the error counter
 			errCnt = 0;
 
 			logger.debug("mySQL: Attempting to connect to database {}", url);
 			Class.forName(driverClass).newInstance();
-			connection = DriverManager.getConnection(url, user, password);
+			Properties properties = new Properties();
+			properties.setProperty("user", user);
+			if (password != null) {
+				properties.setProperty("password", password);
+			}
+			// let the driver send the batched inserts as multi-row statements
+			properties.setProperty("rewriteBatchedStatements", "true");
+			connection = DriverManager.getConnection(url, properties);
 			logger.debug("mySQL: Connected to database {}", url);
 
 			Statement st = connection.createStatement();
@@ -398,7 +599,14 @@ public class MysqlPersistenceService implements QueryablePersistenceService, Man
 	/**
 	 * Disconnects from the database
 	 */
-	private void disconnectFromDatabase() {
+	private synchronized void disconnectFromDatabase() {
+		for (PreparedStatement statement : insertStatements.values()) {
+			try {
+				statement.close();
+			} catch (Exception hidden) {
+			}
+		}
+		insertStatements.clear();
 		if (connection != null) {
 			try {
 				connection.close();
@@ -410,6 +618,37 @@ public class MysqlPersistenceService implements QueryablePersistenceService, Man
 		}
 	}
 
+	/**
+	 * Creates the pool of connections which are used for queries. The connections are
+	 * opened on demand, independently of the connection which is used to write the samples.
+	 */
+	private synchronized void openReaderPool() {
+		try {
+			Class.forName(driverClass).newInstance();
+		} catch (Exception e) {
+			logger.error("mySQL: Failed loading the driver class {}", driverClass, e);
+			return;
+		}
+		Properties readerProperties = new Properties();
+		readerProperties.setProperty("user", user);
+		if (password != null) {
+			readerProperties.setProperty("password", password);
+		}
+		// let the driver fetch large results in chunks through a server side cursor
+		readerProperties.setProperty("useCursorFetch", "true");
+		readerPool = new MysqlConnectionPool(url, readerProperties, waitTimeout, readerConnections);
+	}
+
+	/**
+	 * Closes all connections which are used for queries
+	 */
+	private synchronized void closeReaderPool() {
+		if (readerPool != null) {
+			readerPool.close();
+			readerPool = null;
+		}
+	}
+
 	/**
 	 * Formats the given <code>alias</code> by utilizing {@link Formatter}.
 	 * 
@@ -483,7 +722,24 @@ public class MysqlPersistenceService implements QueryablePersistenceService, Man
 				waitTimeout = Integer.parseInt(tmpString);
 			}
 
+			tmpString = (String) config.get("readerConnections");
+			if (StringUtils.isNotBlank(tmpString)) {
+				readerConnections = Integer.parseInt(tmpString);
+			}
+
+			tmpString = (String) config.get("batchSize");
+			if (StringUtils.isNotBlank(tmpString)) {
+				batchSize = Integer.parseInt(tmpString);
+			}
+
+			tmpString = (String) config.get("flushInterval");
+			if (StringUtils.isNotBlank(tmpString)) {
+				flushInterval = Long.parseLong(tmpString);
+			}
+
 			disconnectFromDatabase();
+			closeReaderPool();
+			openReaderPool();
 			connectToDatabase();
 
 			// connection has been established ... initialization completed!
@@ -494,60 +750,34 @@ public class MysqlPersistenceService implements QueryablePersistenceService, Man
 
 	@Override
 	public Iterable<HistoricItem> query(FilterCriteria filter) {
-		if (!initialized)
-			return Collections.emptyList();
-
-		if (!isConnected())
-			connectToDatabase();
-
-		if (!isConnected())
+		// Queries only use the reader pool, so that they neither wait for the writer nor need its connection
+		MysqlConnectionPool pool = readerPool;
+		if (!initialized || pool == null)
 			return Collections.emptyList();
 
-		SimpleDateFormat mysqlDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+		// Fetch large results page by page while they are iterated
+		if (HistoricItemCursor.isUnlimited(filter))
+			return new HistoricItemCursor(this, filter);
 
 		// Get the item name from the filter
 		// Also get the Item object so we can determine the type
-		Item item = null;
 		String itemName = filter.getItemName();
 		logger.debug("mySQL query: item is {}", itemName);
-		try {
-			if (itemRegistry != null) {
-				item = itemRegistry.getItem(itemName);
-			}
-		} catch (ItemNotFoundException e1) {
-			logger.error("Unable to get item type for {}", itemName);
+		Item item = getItem(itemName);
 
-			// Set type to null - data will be returned as StringType
-			item = null;
+		String table;
+		try {
+			table = findTable(pool, itemName);
+		} catch (SQLException e) {
+			logger.error("mySQL: Error looking up the table of item '" + itemName + "': " + e.getMessage());
+			return Collections.emptyList();
 		}
-                   
-                if(item instanceof GroupItem){
-                    // For Group Items is BaseItem needed to get correct Type of Value.
-                    item = GroupItem.class.cast(item).getBaseItem();
-                }
-
-		String table = sqlTables.get(itemName);
 		if (table == null) {
 			logger.error("mySQL: Unable to find table for query '" + itemName + "'.");
 			return Collections.emptyList();
 		}
 
-		String filterString = new String();
-
-		if (filter.getBeginDate() != null) {
-			if (filterString.isEmpty())
-				filterString += " WHERE";
-			else
-				filterString += " AND";
-			filterString += " TIME>'" + mysqlDateFormat.format(filter.getBeginDate()) + "'";
-		}
-		if (filter.getEndDate() != null) {
-			if (filterString.isEmpty())
-				filterString += " WHERE";
-			else
-				filterString += " AND";
-			filterString += " TIME<'" + mysqlDateFormat.format(filter.getEndDate().getTime()) + "'";
-		}
+		String filterString = getTimeFilter(filter.getBeginDate(), filter.getEndDate());
 
 		if (filter.getOrdering() == Ordering.ASCENDING) {
 			filterString += " ORDER BY Time ASC";
@@ -558,11 +788,17 @@ public class MysqlPersistenceService implements QueryablePersistenceService, Man
 		if (filter.getPageSize() != 0x7fffffff)
 			filterString += " LIMIT " + filter.getPageNumber() * filter.getPageSize() + "," + filter.getPageSize();
 
+		Connection readerConnection = null;
+		boolean broken = false;
+		Statement st = null;
+		ResultSet rs = null;
 		try {
 			long timerStart = System.currentTimeMillis();
 
+			readerConnection = pool.getConnection(READER_TIMEOUT);
+
 			// Retrieve the table array
-			Statement st = connection.createStatement();
+			st = readerConnection.createStatement();
 
 			String queryString = new String();
 			queryString = "SELECT Time, Value FROM " + table;
@@ -572,9 +808,9 @@ public class MysqlPersistenceService implements QueryablePersistenceService, Man
 			logger.debug("mySQL: " + queryString);
 
 			// Turn use of the cursor on.
-			st.setFetchSize(50);
+			st.setFetchSize(FETCH_SIZE);
 
-			ResultSet rs = st.executeQuery(queryString);
+			rs = st.executeQuery(queryString);
 
 			long count = 0;
 			List<HistoricItem> items = new ArrayList<HistoricItem>();
@@ -582,43 +818,257 @@ public class MysqlPersistenceService implements QueryablePersistenceService, Man
 			while (rs.next()) {
 				count++;
 
-				if (item instanceof NumberItem)
-					state = new DecimalType(rs.getDouble(2));
-				else if (item instanceof ColorItem)
-					state = new HSBType(rs.getString(2));
-				else if (item instanceof DimmerItem)
-					state = new PercentType(rs.getInt(2));
-				else if (item instanceof SwitchItem)
-					state = OnOffType.valueOf(rs.getString(2));
-				else if (item instanceof ContactItem)
-					state = OpenClosedType.valueOf(rs.getString(2));
-				else if (item instanceof RollershutterItem)
-					state = new PercentType(rs.getInt(2));
-				else if (item instanceof DateTimeItem) {
-					Calendar calendar = Calendar.getInstance();
-					calendar.setTimeInMillis(rs.getTimestamp(2).getTime());
-					state = new DateTimeType(calendar);
-				} else
-					state = new StringType(rs.getString(2));
+				state = getState(item, rs);
 
 				MysqlItem mysqlItem = new MysqlItem(itemName, state, rs.getTimestamp(1));
 				items.add(mysqlItem);
 			}
 
-			rs.close();
-			st.close();
-
 			long timerStop = System.currentTimeMillis();
 			logger.debug("mySQL: query returned {} rows in {}ms", count, timerStop - timerStart);
 
-			// Success
-			errCnt = 0;
-
 			return items;
 		} catch (SQLException e) {
-			errCnt++;
+			broken = true;
 			logger.error("mySQL: Error running querying : " + e.getMessage());
+		} finally {
+			if (rs != null) {
+				try {
+					rs.close();
+				} catch (SQLException hidden) {
+				}
+			}
+			if (st != null) {
+				try {
+					st.close();
+				} catch (SQLException hidden) {
+				}
+			}
+			if (readerConnection != null) {
+				pool.release(readerConnection, broken);
+			}
 		}
 		return null;
 	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public HistoricItem aggregate(String itemName, Aggregate aggregate, Date beginDate, Date endDate) {
+		Item item = getItem(itemName);
+		boolean numeric = item instanceof NumberItem || item instanceof DimmerItem || item instanceof RollershutterItem;
+		if (!numeric && (aggregate == Aggregate.AVG || aggregate == Aggregate.MIN || aggregate == Aggregate.MAX))
+			throw new UnsupportedOperationException("mySQL: Unable to compute " + aggregate + " of non numeric item '"
+					+ itemName + "'");
+
+		MysqlConnectionPool pool = readerPool;
+		if (!initialized || pool == null)
+			throw new IllegalStateException("mySQL: Not connected to database");
+
+		Date timestamp = endDate != null ? endDate : new Date();
+		String table;
+		try {
+			table = findTable(pool, itemName);
+		} catch (SQLException e) {
+			throw new IllegalStateException("mySQL: Error looking up the table of item '" + itemName + "': "
+					+ e.getMessage(), e);
+		}
+		if (table == null) {
+			logger.debug("mySQL: Unable to find table for aggregate of '{}'.", itemName);
+			return aggregate == Aggregate.COUNT ? new MysqlItem(itemName, DecimalType.ZERO, timestamp) : null;
+		}
+
+		String queryString;
+		String filterString = getTimeFilter(beginDate, endDate);
+		switch (aggregate) {
+		case AVG:
+			queryString = "SELECT AVG(Value) FROM " + table + filterString;
+			break;
+		case COUNT:
+			queryString = "SELECT COUNT(*) FROM " + table + filterString;
+			break;
+		case MIN:
+			queryString = "SELECT Time, Value FROM " + table + filterString + " ORDER BY Value ASC, Time ASC LIMIT 1";
+			break;
+		case MAX:
+			queryString = "SELECT Time, Value FROM " + table + filterString + " ORDER BY Value DESC, Time ASC LIMIT 1";
+			break;
+		case FIRST:
+			queryString = "SELECT Time, Value FROM " + table + filterString + " ORDER BY Time ASC LIMIT 1";
+			break;
+		default:
+			queryString = "SELECT Time, Value FROM " + table + filterString + " ORDER BY Time DESC LIMIT 1";
+			break;
+		}
+
+		Connection readerConnection = null;
+		boolean broken = false;
+		Statement st = null;
+		ResultSet rs = null;
+		try {
+			readerConnection = pool.getConnection(READER_TIMEOUT);
+			st = readerConnection.createStatement();
+
+			logger.debug("mySQL: " + queryString);
+			rs = st.executeQuery(queryString);
+			if (!rs.next())
+				return null;
+
+			switch (aggregate) {
+			case AVG:
+				double average = rs.getDouble(1);
+				return rs.wasNull() ? null : new MysqlItem(itemName, new DecimalType(average), timestamp);
+			case COUNT:
+				return new MysqlItem(itemName, new DecimalType(rs.getLong(1)), timestamp);
+			default:
+				return new MysqlItem(itemName, getState(item, rs), rs.getTimestamp(1));
+			}
+		} catch (SQLException e) {
+			broken = true;
+			throw new IllegalStateException("mySQL: Error computing aggregate : " + e.getMessage(), e);
+		} finally {
+			if (rs != null) {
+				try {
+					rs.close();
+				} catch (SQLException hidden) {
+				}
+			}
+			if (st != null) {
+				try {
+					st.close();
+				} catch (SQLException hidden) {
+				}
+			}
+			if (readerConnection != null) {
+				pool.release(readerConnection, broken);
+			}
+		}
+	}
+
+	/**
+	 * Returns the table of the given item. If the table is not known yet, e.g. because the
+	 * writer has not been connected so far, it is looked up through a connection of the pool.
+	 * 
+	 * @param pool the pool of the connections which are used for queries
+	 * @param itemName the name of the item
+	 * @return the name of the table or <code>null</code>, if nothing has been stored for the item
+	 * @throws SQLException if the table could not be looked up
+	 */
+	private String findTable(MysqlConnectionPool pool, String itemName) throws SQLException {
+		String tableName = sqlTables.get(itemName);
+		if (tableName != null)
+			return tableName;
+
+		Connection readerConnection = pool.getConnection(READER_TIMEOUT);
+		boolean broken = false;
+		PreparedStatement statement = null;
+		try {
+			statement = readerConnection.prepareStatement("SELECT ItemId FROM Items WHERE ItemName=?");
+			statement.setString(1, itemName);
+			ResultSet rs = statement.executeQuery();
+			if (rs.next())
+				tableName = "Item" + rs.getInt(1);
+			rs.close();
+			return tableName;
+		} catch (SQLException e) {
+			broken = true;
+			throw e;
+		} finally {
+			if (statement != null) {
+				try {
+					statement.close();
+				} catch (SQLException hidden) {
+				}
+			}
+			pool.release(readerConnection, broken);
+		}
+	}
+
+	/**
+	 * Returns the item with the given name, so that its type can be determined.
+	 * For group items the base item is returned.
+	 * 
+	 * @param itemName the name of the item
+	 * @return the item or <code>null</code>, if it is unknown
+	 */
+	private Item getItem(String itemName) {
+		Item item = null;
+		try {
+			if (itemRegistry != null) {
+				item = itemRegistry.getItem(itemName);
+			}
+		} catch (ItemNotFoundException e1) {
+			logger.error("Unable to get item type for {}", itemName);
+
+			// Set type to null - data will be returned as StringType
+			item = null;
+		}
+
+		if (item instanceof GroupItem) {
+			// For Group Items is BaseItem needed to get correct Type of Value.
+			item = GroupItem.class.cast(item).getBaseItem();
+		}
+		return item;
+	}
+
+	/**
+	 * Creates the WHERE clause which limits a query to the given period of time.
+	 * 
+	 * @param beginDate the begin of the period or <code>null</code>
+	 * @param endDate the end of the period or <code>null</code>
+	 * @return the WHERE clause or an empty string, if the period is not limited
+	 */
+	private String getTimeFilter(Date beginDate, Date endDate) {
+		SimpleDateFormat mysqlDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+		String filterString = new String();
+
+		if (beginDate != null) {
+			if (filterString.isEmpty())
+				filterString += " WHERE";
+			else
+				filterString += " AND";
+			filterString += " TIME>'" + mysqlDateFormat.format(beginDate) + "'";
+		}
+		if (endDate != null) {
+			if (filterString.isEmpty())
+				filterString += " WHERE";
+			else
+				filterString += " AND";
+			filterString += " TIME<'" + mysqlDateFormat.format(endDate.getTime()) + "'";
+		}
+		return filterString;
+	}
+
+	/**
+	 * Converts the value in the second column of the current row to a state,
+	 * which matches the type of the given item.
+	 * 
+	 * @param item the item or <code>null</code>, if its type is unknown
+	 * @param rs the result set which is positioned on the row
+	 * @return the state of the item
+	 */
+	private State getState(Item item, ResultSet rs) throws SQLException {
+		State state;
+		if (item instanceof NumberItem)
+			state = new DecimalType(rs.getDouble(2));
+		else if (item instanceof ColorItem)
+			state = new HSBType(rs.getString(2));
+		else if (item instanceof DimmerItem)
+			state = new PercentType(rs.getInt(2));
+		else if (item instanceof SwitchItem)
+			state = OnOffType.valueOf(rs.getString(2));
+		else if (item instanceof ContactItem)
+			state = OpenClosedType.valueOf(rs.getString(2));
+		else if (item instanceof RollershutterItem)
+			state = new PercentType(rs.getInt(2));
+		else if (item instanceof DateTimeItem) {
+			Calendar calendar = Calendar.getInstance();
+			calendar.setTimeInMillis(rs.getTimestamp(2).getTime());
+			state = new DateTimeType(calendar);
+		} else
+			state = new StringType(rs.getString(2));
+		return state;
+	}
 }
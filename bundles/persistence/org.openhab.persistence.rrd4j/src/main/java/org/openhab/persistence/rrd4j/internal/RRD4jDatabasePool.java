@@ -0,0 +1,288 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.persistence.rrd4j.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.rrd4j.ConsolFun;
+import org.rrd4j.core.RrdDb;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>This pool keeps the most recently used {@link RrdDb}s open, so that the database
+ * files do not have to be opened and parsed again for every access. If more databases
+ * than the capacity of the pool are in use, the least recently used ones are closed.</p>
+ *
+ * <p>Every database is guarded by its own lock, which is held between {@link #acquire(String, ConsolFun)}
+ * and {@link #release(Handle)}. Hence accesses to different databases are not serialized. A database
+ * which is evicted while it is in use is closed when it is released; until then, the same file is
+ * not opened again.</p>
+ *
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ */
+public abstract class RRD4jDatabasePool {
+
+	private static final Logger logger = LoggerFactory.getLogger(RRD4jDatabasePool.class);
+
+	public static final int DEFAULT_CAPACITY = 100;
+
+	private int capacity;
+
+	/** the handles of the open databases in access order, i.e. the least recently used one comes first */
+	private final Map<String, Handle> handles = new LinkedHashMap<String, Handle>(16, 0.75f, true);
+
+	/** the evicted handles which have still been in use, by database name; guarded by the handles */
+	private final Map<String, Handle> evictedHandles = new HashMap<String, Handle>();
+
+	private boolean closed = false;
+
+	public RRD4jDatabasePool() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity the maximum number of databases that are kept open
+	 */
+	public RRD4jDatabasePool(int capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Opens the database with the given name or creates it, if it does not exist yet.
+	 *
+	 * @param name the name of the database
+	 * @param function the consolidation function to use, if the database is created
+	 * @return the opened database or <code>null</code>, if it could not be opened
+	 */
+	protected abstract RrdDb openDatabase(String name, ConsolFun function);
+
+	/**
+	 * Returns the handle of the database with the given name and locks it. The caller
+	 * must call {@link #release(Handle)} when it does not need the database anymore.
+	 *
+	 * @param name the name of the database
+	 * @param function the consolidation function to use, if the database has to be created
+	 * @return the locked handle or <code>null</code>, if the database could not be opened
+	 */
+	public Handle acquire(String name, ConsolFun function) {
+		while(true) {
+			Handle handle;
+			List<Handle> eldest = null;
+			synchronized(handles) {
+				if(closed) {
+					return null;
+				}
+				handle = handles.get(name);
+				if(handle==null) {
+					handle = new Handle(name);
+					handles.put(name, handle);
+					eldest = removeEldest();
+				}
+			}
+			evict(eldest);
+			handle.lock.lock();
+			if(handle.evicted) {
+				// the handle has been evicted while we were waiting, so we need a new one
+				handle.lock.unlock();
+				continue;
+			}
+			if(handle.db==null) {
+				awaitEvictedHandle(name);
+				handle.db = openDatabase(name, function);
+				if(handle.db==null) {
+					synchronized(handles) {
+						if(handles.get(name)==handle) {
+							handles.remove(name);
+						}
+					}
+					handle.evicted = true;
+					handle.lock.unlock();
+					return null;
+				}
+			}
+			return handle;
+		}
+	}
+
+	/**
+	 * Unlocks a handle which has been returned by {@link #acquire(String, ConsolFun)}.
+	 *
+	 * @param handle the handle to release
+	 */
+	public void release(Handle handle) {
+		try {
+			if(handle.evicted) {
+				handle.close();
+				synchronized(handles) {
+					if(evictedHandles.get(handle.name)==handle) {
+						evictedHandles.remove(handle.name);
+					}
+				}
+			}
+		} finally {
+			handle.lock.unlock();
+		}
+	}
+
+	/**
+	 * Changes the maximum number of databases that are kept open. If more databases are open,
+	 * the least recently used ones are closed.
+	 *
+	 * @param capacity the maximum number of databases that are kept open
+	 */
+	public void setCapacity(int capacity) {
+		List<Handle> eldest;
+		synchronized(handles) {
+			this.capacity = capacity;
+			eldest = removeEldest();
+		}
+		evict(eldest);
+	}
+
+	/**
+	 * @return the maximum number of databases that are kept open
+	 */
+	public int getCapacity() {
+		synchronized(handles) {
+			return capacity;
+		}
+	}
+
+	/**
+	 * Closes all databases. Databases which are currently in use are closed as soon as
+	 * they are released.
+	 */
+	public void close() {
+		List<Handle> evicted;
+		synchronized(handles) {
+			closed = true;
+			evicted = new ArrayList<Handle>(handles.values());
+			handles.clear();
+		}
+		evict(evicted);
+	}
+
+	/**
+	 * @return the number of databases that are currently open
+	 */
+	public int size() {
+		synchronized(handles) {
+			return handles.size();
+		}
+	}
+
+	/**
+	 * Removes the least recently used handles, which exceed the capacity. Must be called while
+	 * holding the lock on the handles.
+	 *
+	 * @return the removed handles, which have to be evicted, or <code>null</code>
+	 */
+	private List<Handle> removeEldest() {
+		List<Handle> eldest = null;
+		Iterator<Handle> it = handles.values().iterator();
+		while(handles.size() > capacity && it.hasNext()) {
+			if(eldest==null) {
+				eldest = new ArrayList<Handle>();
+			}
+			eldest.add(it.next());
+			it.remove();
+		}
+		return eldest;
+	}
+
+	/**
+	 * Marks the handles as evicted and closes their databases right away, if they are not in use.
+	 * Otherwise they are closed when they are released.
+	 */
+	private void evict(List<Handle> evicted) {
+		if(evicted==null) {
+			return;
+		}
+		for(Handle handle : evicted) {
+			handle.evicted = true;
+			// a handle which is held by the current thread is in use as well
+			if(!handle.lock.isHeldByCurrentThread() && handle.lock.tryLock()) {
+				try {
+					handle.close();
+				} finally {
+					handle.lock.unlock();
+				}
+			} else {
+				synchronized(handles) {
+					evictedHandles.put(handle.name, handle);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Waits until an evicted handle of the given database has been released, so that the database
+	 * file is never opened twice at the same time.
+	 */
+	private void awaitEvictedHandle(String name) {
+		Handle evicted;
+		synchronized(handles) {
+			evicted = evictedHandles.remove(name);
+		}
+		if(evicted!=null && !evicted.lock.isHeldByCurrentThread()) {
+			evicted.lock.lock();
+			try {
+				evicted.close();
+			} finally {
+				evicted.lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * A handle to a pooled database.
+	 */
+	public static final class Handle {
+
+		private final String name;
+
+		private final ReentrantLock lock = new ReentrantLock();
+
+		private volatile boolean evicted = false;
+
+		private RrdDb db;
+
+		private Handle(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * @return the database, which must only be accessed until the handle is released
+		 */
+		public RrdDb getDb() {
+			return db;
+		}
+
+		private void close() {
+			if(db!=null) {
+				try {
+					db.close();
+				} catch (IOException e) {
+					logger.debug("Error closing rrd4j database '{}': {}", name, e.getMessage());
+				}
+				db = null;
+			}
+		}
+	}
+
+}
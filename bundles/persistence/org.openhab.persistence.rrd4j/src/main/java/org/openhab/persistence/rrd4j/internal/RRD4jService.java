@@ -10,16 +10,20 @@ package org.openhab.persistence.rrd4j.internal;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Dictionary;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.lang.StringUtils;
 import org.openhab.core.items.Item;
 import org.openhab.core.items.ItemNotFoundException;
 import org.openhab.core.items.ItemRegistry;
@@ -30,19 +34,23 @@ import org.openhab.core.library.items.SwitchItem;
 import org.openhab.core.library.types.DecimalType;
 import org.openhab.core.library.types.OnOffType;
 import org.openhab.core.library.types.OpenClosedType;
+import org.openhab.core.persistence.AggregatingPersistenceService;
 import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.core.persistence.FilterCriteria.Ordering;
 import org.openhab.core.persistence.HistoricItem;
 import org.openhab.core.persistence.PersistenceService;
-import org.openhab.core.persistence.QueryablePersistenceService;
 import org.openhab.core.types.State;
+import org.openhab.persistence.rrd4j.internal.RRD4jDatabasePool.Handle;
 import org.rrd4j.ConsolFun;
 import org.rrd4j.DsType;
 import org.rrd4j.core.FetchData;
 import org.rrd4j.core.FetchRequest;
+import org.rrd4j.core.RrdBackendFactory;
 import org.rrd4j.core.RrdDb;
 import org.rrd4j.core.RrdDef;
 import org.rrd4j.core.Sample;
+import org.osgi.service.cm.ConfigurationException;
+import org.osgi.service.cm.ManagedService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,15 +62,34 @@ import org.slf4j.LoggerFactory;
  * @author Kai Kreuzer
  * @since 1.0.0
  */
-public class RRD4jService implements QueryablePersistenceService {
+public class RRD4jService implements AggregatingPersistenceService, ManagedService {
 
 	private static final String DATASOURCE_STATE = "state";
 
+	/** the database files are accessed through memory mapping, as they are kept open */
+	private static final String BACKEND_FACTORY = "NIO";
+
 	protected final static String DB_FOLDER = "etc/rrd4j";
 	
 	private static final Logger logger = LoggerFactory.getLogger(RRD4jService.class);
 
-	private Map<String,Timer> timers = new HashMap<String,Timer>();
+	/** the items which are going to be stored as soon as the current second is over, by database name */
+	private final Map<String, Item> deferredItems = new ConcurrentHashMap<String, Item>();
+	
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "openHAB RRD4j Scheduler");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	
+	private final RRD4jDatabasePool pool = new RRD4jDatabasePool() {
+		@Override
+		protected RrdDb openDatabase(String name, ConsolFun function) {
+			return getDB(name, function);
+		}
+	};
 	
 	protected ItemRegistry itemRegistry;
 	
@@ -73,6 +100,34 @@ public class RRD4jService implements QueryablePersistenceService {
 	public void unsetItemRegistry(ItemRegistry itemRegistry) {
 		this.itemRegistry = null;
 	}
+	
+	public void deactivate() {
+		scheduler.shutdownNow();
+		deferredItems.clear();
+		pool.close();
+	}
+
+	/**
+	 * @{inheritDoc}
+	 */
+	public void updated(Dictionary<String, ?> config) throws ConfigurationException {
+		int maxOpenDatabases = RRD4jDatabasePool.DEFAULT_CAPACITY;
+		if(config != null) {
+			String value = (String) config.get("maxOpenDatabases");
+			if(StringUtils.isNotBlank(value)) {
+				try {
+					maxOpenDatabases = Integer.parseInt(value.trim());
+				} catch (NumberFormatException e) {
+					throw new ConfigurationException("rrd4j:maxOpenDatabases", "The value must be a number");
+				}
+				if(maxOpenDatabases < 1) {
+					throw new ConfigurationException("rrd4j:maxOpenDatabases", "The value must be at least 1");
+				}
+			}
+		}
+		pool.setCapacity(maxOpenDatabases);
+		logger.debug("rrd4j keeps up to {} databases open", maxOpenDatabases);
+	}
 
 	/**
 	 * @{inheritDoc}
@@ -84,32 +139,39 @@ public class RRD4jService implements QueryablePersistenceService {
 	/**
 	 * @{inheritDoc}
 	 */
-	public synchronized void store(final Item item, final String alias) {
-		final String name = alias==null ? item.getName() : alias;
+	public void store(Item item, String alias) {
+		String name = alias==null ? item.getName() : alias;
 		ConsolFun function = getConsolidationFunction(item);
-		RrdDb db = getDB(name, function);
-		if(db!=null) {
-			long now = System.currentTimeMillis()/1000;
-			if(function!=ConsolFun.AVERAGE) {
-				try {
-					// we store the last value again, so that the value change in the database is not interpolated, but
-					// happens right at this spot
-					if(now - 1 > db.getLastUpdateTime()) {
-						// only do it if there is not already a value
-						double lastValue = db.getLastDatasourceValue(DATASOURCE_STATE);
-						if(!Double.isNaN(lastValue)) {
-							Sample sample = db.createSample();
-				            sample.setTime(now - 1);
-				            sample.setValue(DATASOURCE_STATE, lastValue);
-				            sample.update();
-		                    logger.debug("Stored '{}' with state '{}' in rrd4j database", name, mapToState(lastValue, item.getName()));
+		Handle handle = pool.acquire(name, function);
+		if(handle!=null) {
+			try {
+				RrdDb db = handle.getDb();
+				long now = System.currentTimeMillis()/1000;
+				if(now <= db.getLastUpdateTime()) {
+					// rrd4j requires at least one second between two samples, so we store the latest value
+					// of this second once the next second has started
+					defer(item, name);
+					return;
+				}
+				if(function!=ConsolFun.AVERAGE) {
+					try {
+						// we store the last value again, so that the value change in the database is not interpolated, but
+						// happens right at this spot
+						if(now - 1 > db.getLastUpdateTime()) {
+							// only do it if there is not already a value
+							double lastValue = db.getLastDatasourceValue(DATASOURCE_STATE);
+							if(!Double.isNaN(lastValue)) {
+								Sample sample = db.createSample();
+					            sample.setTime(now - 1);
+					            sample.setValue(DATASOURCE_STATE, lastValue);
+					            sample.update();
+			                    logger.debug("Stored '{}' with state '{}' in rrd4j database", name, mapToState(lastValue, item.getName()));
+							}
 						}
+					} catch (IOException e) {
+						logger.debug("Error re-storing last value: {}", e.getMessage());
 					}
-				} catch (IOException e) {
-					logger.debug("Error re-storing last value: {}", e.getMessage());
 				}
-			}
-			try {
 				Sample sample = db.createSample();
 	            sample.setTime(now);
 	            
@@ -120,33 +182,35 @@ public class RRD4jService implements QueryablePersistenceService {
                     sample.update();
                     logger.debug("Stored '{}' with state '{}' in rrd4j database", name, item.getState());
 	            }
-			} catch (IllegalArgumentException e) {
-				if(e.getMessage().contains("at least one second step is required")) {
-
-					// we try to store the value one second later
-					TimerTask task = new TimerTask() {
-						public void run() {
-							store(item, name);
-						}
-					};
-					Timer timer = timers.get(name);
-					if(timer!=null) {
-						timer.cancel();
-						timers.remove(name);
-					}
-					timer = new Timer();
-					timers.put(name, timer);
-					timer.schedule(task, 1000);
-				} else {
-					logger.warn("Could not persist '{}' to rrd4j database: {}", new String[] { name, e.getMessage() });
-				}
 			} catch (Exception e) {
 				logger.warn("Could not persist '{}' to rrd4j database: {}", new String[] { name, e.getMessage() });
+			} finally {
+				pool.release(handle);
 			}
-            try {
-				db.close();
-			} catch (IOException e) {
-				logger.debug("Error closing rrd4j database: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Stores the item once the current second is over. If the item is updated again within
+	 * this second, only its latest state is stored.
+	 * 
+	 * @param item the item to store
+	 * @param name the name of the database to store the item in
+	 */
+	private void defer(Item item, final String name) {
+		if(deferredItems.put(name, item)==null) {
+			try {
+				scheduler.schedule(new Runnable() {
+					public void run() {
+						Item deferredItem = deferredItems.remove(name);
+						if(deferredItem!=null) {
+							store(deferredItem, name);
+						}
+					}
+				}, 1000 - System.currentTimeMillis() % 1000, TimeUnit.MILLISECONDS);
+			} catch(RejectedExecutionException e) {
+				// this happens if the service is deactivated
+				deferredItems.remove(name);
 			}
 		}
 	}
@@ -162,8 +226,9 @@ public class RRD4jService implements QueryablePersistenceService {
 	public Iterable<HistoricItem> query(FilterCriteria filter) {
 		String itemName = filter.getItemName();
 		ConsolFun consolidationFunction = getConsolidationFunction(itemName);
-		RrdDb db = getDB(itemName, consolidationFunction);
-		if(db!=null) {
+		Handle handle = pool.acquire(itemName, consolidationFunction);
+		if(handle!=null) {
+			RrdDb db = handle.getDb();
 			long start = 0L;
 			long end = filter.getEndDate()==null ? System.currentTimeMillis()/1000 - 1 : filter.getEndDate().getTime()/1000;
 
@@ -194,39 +259,174 @@ public class RRD4jService implements QueryablePersistenceService {
 				}
 				FetchRequest request = db.createFetchRequest(consolidationFunction, start, end, 1);
 
-				List<HistoricItem> items = new ArrayList<HistoricItem>();
-				FetchData result = request.fetchData();
-				long ts = result.getFirstTimestamp();
-				long step = result.getRowCount() > 1 ? result.getStep() : 0;
-				for(double value : result.getValues(DATASOURCE_STATE)) {
-					if(!Double.isNaN(value)) {
-						RRD4jItem rrd4jItem = new RRD4jItem(itemName, mapToState(value, itemName), new Date(ts * 1000));
-						items.add(rrd4jItem);
-					}
-					ts += step;
-				}
-				return items;
+				return new QueryResult(itemName, request.fetchData(), filter);
 			} catch (IOException e) {
 				logger.warn("Could not query rrd4j database for item '{}': {}", new String[] { itemName, e.getMessage() });
-			}	
+			} finally {
+				pool.release(handle);
+			}
 		}
 		return Collections.emptyList();
 	}
 
-	protected synchronized RrdDb getDB(String alias, ConsolFun function) {
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The aggregates are computed from the consolidated archive which covers the period. 
+	 */
+	public HistoricItem aggregate(String itemName, Aggregate aggregate, Date beginDate, Date endDate) {
+		if(beginDate==null) {
+			throw new UnsupportedOperationException("rrd4j does not allow aggregates without a begin date");
+		}
+		if((aggregate==Aggregate.AVG || aggregate==Aggregate.MIN || aggregate==Aggregate.MAX) && !isNumeric(itemName)) {
+			throw new UnsupportedOperationException("rrd4j cannot compute " + aggregate + " of item '" + itemName + "'");
+		}
+
+		ConsolFun consolidationFunction = getConsolidationFunction(itemName);
+		Handle handle = pool.acquire(itemName, consolidationFunction);
+		if(handle==null) {
+			throw new IllegalStateException("Could not open rrd4j database for item '" + itemName + "'");
+		}
+		FetchData data;
+		long start = beginDate.getTime()/1000;
+		long end = endDate==null ? System.currentTimeMillis()/1000 - 1 : endDate.getTime()/1000;
+		try {
+			data = handle.getDb().createFetchRequest(consolidationFunction, start, end, 1).fetchData();
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not query rrd4j database for item '" + itemName + "': " + e.getMessage(), e);
+		} finally {
+			pool.release(handle);
+		}
+
+		double[] values = data.getValues(DATASOURCE_STATE);
+		long step = data.getRowCount() > 1 ? data.getStep() : 0;
+		int count = 0;
+		double sum = 0;
+		int selected = -1;
+		for(int row = 0; row < values.length; row++) {
+			double value = values[row];
+			if(Double.isNaN(value)) {
+				continue;
+			}
+			count++;
+			sum += value;
+			switch(aggregate) {
+				case MIN: if(selected<0 || value<values[selected]) selected = row; break;
+				case MAX: if(selected<0 || value>values[selected]) selected = row; break;
+				case FIRST: if(selected<0) selected = row; break;
+				case LAST: selected = row; break;
+				default: break;
+			}
+		}
+
+		Date timestamp = new Date(end * 1000);
+		switch(aggregate) {
+			case COUNT:
+				return new RRD4jItem(itemName, new DecimalType(count), timestamp);
+			case AVG:
+				return count > 0 ? new RRD4jItem(itemName, new DecimalType(sum / count), timestamp) : null;
+			default:
+				if(selected < 0) {
+					return null;
+				}
+				Date time = new Date((data.getFirstTimestamp() + selected * step) * 1000);
+				return new RRD4jItem(itemName, mapToState(values[selected], itemName), time);
+		}
+	}
+
+	/**
+	 * The result of a query, which keeps the fetched values as an array and creates the
+	 * historic items only while it is iterated. Ordering and paging of the filter are
+	 * applied to the rows which hold a value.
+	 */
+	private class QueryResult implements Iterable<HistoricItem> {
+
+		private final String itemName;
+		private final long firstTimestamp;
+		private final long step;
+		private final double[] values;
+
+		/** the indexes of the rows to return, in the requested order */
+		private final int[] rows;
+
+		public QueryResult(String itemName, FetchData data, FilterCriteria filter) {
+			this.itemName = itemName;
+			this.firstTimestamp = data.getFirstTimestamp();
+			this.step = data.getRowCount() > 1 ? data.getStep() : 0;
+			this.values = data.getValues(DATASOURCE_STATE);
+
+			int count = 0;
+			for(double value : values) {
+				if(!Double.isNaN(value)) {
+					count++;
+				}
+			}
+			int from = (int) Math.min((long) filter.getPageNumber() * filter.getPageSize(), count);
+			int to = (int) Math.min((long) from + filter.getPageSize(), count);
+			rows = new int[to - from];
+
+			boolean ascending = filter.getOrdering()==Ordering.ASCENDING;
+			int index = 0;
+			for(int i = 0; i < values.length && index < to; i++) {
+				int row = ascending ? i : values.length - 1 - i;
+				if(!Double.isNaN(values[row])) {
+					if(index >= from) {
+						rows[index - from] = row;
+					}
+					index++;
+				}
+			}
+		}
+
+		public Iterator<HistoricItem> iterator() {
+			return new Iterator<HistoricItem>() {
+				private int index = 0;
+
+				public boolean hasNext() {
+					return index < rows.length;
+				}
+
+				public HistoricItem next() {
+					if(!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					int row = rows[index++];
+					Date timestamp = new Date((firstTimestamp + row * step) * 1000);
+					return new RRD4jItem(itemName, mapToState(values[row], itemName), timestamp);
+				}
+
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+	}
+
+	/**
+	 * Opens the database of the given alias or creates it, if it does not exist yet. 
+	 * The databases are kept open by the {@link RRD4jDatabasePool}, so this method
+	 * should not be called directly.
+	 * 
+	 * @param alias the name of the database
+	 * @param function the consolidation function to use for a new database
+	 * @return the database or <code>null</code>, if it could not be opened
+	 */
+	protected RrdDb getDB(String alias, ConsolFun function) {
 		RrdDb db = null;
         File file = new File(DB_FOLDER + File.separator + alias + ".rrd");
     	try {
             if (file.exists()) {
             	// recreate the RrdDb instance from the file
-            	db = new RrdDb(file.getAbsolutePath());
+            	db = new RrdDb(file.getAbsolutePath(), RrdBackendFactory.getFactory(BACKEND_FACTORY));
             } else {
             	File folder = new File(DB_FOLDER);
-            	if(!folder.exists()) {
-            		folder.mkdir();
+            	synchronized(this) {
+	            	if(!folder.exists()) {
+	            		folder.mkdir();
+	            	}
             	}
             	// create a new database file
-                db = new RrdDb(getRrdDef(function, file));
+                db = new RrdDb(getRrdDef(function, file), RrdBackendFactory.getFactory(BACKEND_FACTORY));
             }
 		} catch (IOException e) {
 			logger.error("Could not create rrd4j database file '{}': {}", new String[] { file.getAbsolutePath(), e.getMessage() });
@@ -287,6 +487,21 @@ public class RRD4jService implements QueryablePersistenceService {
 		return ConsolFun.MAX;
 	}
 
+	/**
+	 * @return false, if the states of the item are mapped to something else than a {@link DecimalType}
+	 */
+	private boolean isNumeric(String itemName) {
+		if(itemRegistry!=null) {
+			try {
+				Item item = itemRegistry.getItem(itemName);
+				return !(item instanceof SwitchItem && !(item instanceof DimmerItem)) && !(item instanceof ContactItem);
+			} catch (ItemNotFoundException e) {
+				logger.debug("Could not find item '{}' in registry", itemName);
+			}
+		}
+		return true;
+	}
+
 	private State mapToState(double value, String itemName) {
 		if(itemRegistry!=null) {
 			try {
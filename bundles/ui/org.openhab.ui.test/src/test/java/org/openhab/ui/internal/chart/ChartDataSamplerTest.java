@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.internal.chart;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @author Chris Jackson
+ * @since 1.6.0
+ */
+public class ChartDataSamplerTest {
+
+	@Test
+	public void testKeepsSparseData() {
+		ChartDataSampler sampler = new ChartDataSampler(new Date(0), new Date(1000), 100);
+		sampler.add(new Date(0), 1);
+		sampler.add(new Date(500), 2);
+		sampler.add(new Date(1000), 3);
+
+		assertEquals(3, sampler.getSampleCount());
+		assertEquals(3, sampler.getXData().size());
+		assertEquals(new Date(500), sampler.getXData().get(1));
+		assertEquals(2.0, sampler.getYData().get(1));
+	}
+
+	@Test
+	public void testKeepsFirstMinMaxLastPerColumn() {
+		ChartDataSampler sampler = new ChartDataSampler(new Date(0), new Date(1000), 1);
+		sampler.add(new Date(0), 5);
+		sampler.add(new Date(100), 9);
+		sampler.add(new Date(200), 7);
+		sampler.add(new Date(300), 1);
+		sampler.add(new Date(400), 6);
+
+		List<Date> xData = sampler.getXData();
+		List<Number> yData = sampler.getYData();
+		assertEquals(4, xData.size());
+		assertEquals(new Date(0), xData.get(0));
+		assertEquals(new Date(100), xData.get(1));
+		assertEquals(new Date(300), xData.get(2));
+		assertEquals(new Date(400), xData.get(3));
+		assertEquals(5.0, yData.get(0));
+		assertEquals(9.0, yData.get(1));
+		assertEquals(1.0, yData.get(2));
+		assertEquals(6.0, yData.get(3));
+	}
+
+	@Test
+	public void testLimitsPointsToWidth() {
+		int width = 200;
+		long end = 365L * 24 * 60 * 60 * 1000;
+		ChartDataSampler sampler = new ChartDataSampler(new Date(0), new Date(end), width);
+		for (long time = 0; time <= end; time += 60 * 1000) {
+			sampler.add(new Date(time), Math.sin(time));
+		}
+
+		List<Date> xData = sampler.getXData();
+		assertTrue(xData.size() <= 4 * width);
+		assertEquals(new Date(0), xData.get(0));
+		assertEquals(new Date(end), xData.get(xData.size() - 1));
+		for (int i = 1; i < xData.size(); i++) {
+			assertTrue(xData.get(i - 1).before(xData.get(i)));
+		}
+	}
+
+	@Test
+	public void testClampsSamplesOutsideOfAxis() {
+		ChartDataSampler sampler = new ChartDataSampler(new Date(1000), new Date(2000), 10);
+		sampler.add(new Date(500), 1);
+		sampler.add(new Date(2500), 2);
+
+		assertEquals(2, sampler.getXData().size());
+		assertEquals(new Date(500), sampler.getXData().get(0));
+		assertEquals(new Date(2500), sampler.getXData().get(1));
+	}
+
+}
@@ -20,6 +20,8 @@ import junit.framework.Assert;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.eclipse.emf.common.util.BasicEList;
+import org.eclipse.emf.common.util.EList;
 import org.openhab.core.items.Item;
 import org.openhab.core.items.ItemNotFoundException;
 import org.openhab.core.items.ItemRegistry;
@@ -28,6 +30,9 @@ import org.openhab.core.library.types.DecimalType;
 import org.openhab.core.library.types.OnOffType;
 import org.openhab.core.library.types.StringType;
 import org.openhab.core.types.UnDefType;
+import org.openhab.model.core.EventType;
+import org.openhab.model.core.ModelRepository;
+import org.openhab.model.sitemap.Frame;
 import org.openhab.model.sitemap.Sitemap;
 import org.openhab.model.sitemap.SitemapFactory;
 import org.openhab.model.sitemap.Widget;
@@ -306,6 +311,65 @@ public class ItemUIRegistryImplTest {
 		assertNull(w);
 	}
 	
+	@Test
+	public void getWidgetId_widgetsOfSitemap() {
+		Sitemap sitemap = mock(Sitemap.class);
+		Widget first = mock(Widget.class);
+		Frame frame = mock(Frame.class);
+		Widget child = mock(Widget.class);
+		EList<Widget> sitemapChildren = new BasicEList<Widget>();
+		sitemapChildren.add(first);
+		sitemapChildren.add(frame);
+		EList<Widget> frameChildren = new BasicEList<Widget>();
+		frameChildren.add(child);
+		when(sitemap.getChildren()).thenReturn(sitemapChildren);
+		when(frame.getChildren()).thenReturn(frameChildren);
+		when(first.eContainer()).thenReturn(sitemap);
+		when(frame.eContainer()).thenReturn(sitemap);
+		when(child.eContainer()).thenReturn(frame);
+
+		ModelRepository modelRepository = mock(ModelRepository.class);
+		uiRegistry.setModelRepository(modelRepository);
+		try {
+			assertEquals("00", uiRegistry.getWidgetId(first));
+			assertEquals("01", uiRegistry.getWidgetId(frame));
+			assertEquals("0100", uiRegistry.getWidgetId(child));
+		} finally {
+			uiRegistry.unsetModelRepository(modelRepository);
+		}
+	}
+
+	@Test
+	public void getLabel_cachedUntilSitemapChanges() throws ItemNotFoundException {
+		Sitemap sitemap = mock(Sitemap.class);
+		Widget w = mock(Widget.class);
+		Item item = mock(Item.class);
+		EList<Widget> sitemapChildren = new BasicEList<Widget>();
+		sitemapChildren.add(w);
+		when(sitemap.getChildren()).thenReturn(sitemapChildren);
+		when(w.eContainer()).thenReturn(sitemap);
+		when(w.getLabel()).thenReturn("Label [%s]");
+		when(w.getItem()).thenReturn("Item");
+		when(registry.getItem("Item")).thenReturn(item);
+		when(item.getState()).thenReturn(new StringType("State"));
+
+		ModelRepository modelRepository = mock(ModelRepository.class);
+		uiRegistry.setModelRepository(modelRepository);
+		try {
+			assertEquals("Label [State]", uiRegistry.getLabel(w));
+
+			// the state is always read from the item, the label template only after a change of the sitemap
+			when(item.getState()).thenReturn(UnDefType.UNDEF);
+			when(w.getLabel()).thenReturn("Other [%s]");
+			assertEquals("Label [-]", uiRegistry.getLabel(w));
+
+			uiRegistry.modelChanged("demo.sitemap", EventType.MODIFIED);
+			assertEquals("Other [-]", uiRegistry.getLabel(w));
+		} finally {
+			uiRegistry.unsetModelRepository(modelRepository);
+		}
+	}
+
 	@Test
 	public void testFormatDefault() {
 		Assert.assertEquals("Server [(-)]", uiRegistry.formatUndefined("Server [(%d)]"));
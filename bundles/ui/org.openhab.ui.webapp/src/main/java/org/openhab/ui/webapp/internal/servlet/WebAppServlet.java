@@ -9,16 +9,19 @@
 package org.openhab.ui.webapp.internal.servlet;
 
 import java.io.IOException;
-import java.util.Date;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 
 import org.eclipse.emf.common.util.EList;
+import org.eclipse.jetty.continuation.Continuation;
+import org.eclipse.jetty.continuation.ContinuationListener;
+import org.eclipse.jetty.continuation.ContinuationSupport;
 import org.openhab.core.items.GenericItem;
 import org.openhab.core.items.Item;
 import org.openhab.core.items.ItemNotFoundException;
@@ -106,6 +109,12 @@ public class WebAppServlet extends BaseServlet {
 		// if there are no parameters, display the "default" sitemap
 		if(sitemapName==null) sitemapName = "default";
 		
+		if(poll && ContinuationSupport.getContinuation(req).isExpired()) {
+			// we have reached the timeout, so we do not return any content as nothing has changed
+			res.getWriter().append(getTimeoutResponse()).close();
+			return;
+		}
+		
 		StringBuilder result = new StringBuilder();
 		
 		Sitemap sitemap = sitemapProvider.getSitemap(sitemapName);
@@ -118,9 +127,8 @@ public class WebAppServlet extends BaseServlet {
 				// we are at the homepage, so we render the children of the sitemap root node
 				String label = sitemap.getLabel()!=null ? sitemap.getLabel() : sitemapName;
 				EList<Widget> children = sitemap.getChildren();
-				if(poll && waitForChanges(children)==false) {
-					// we have reached the timeout, so we do not return any content as nothing has changed
-					res.getWriter().append(getTimeoutResponse()).close();
+				if(poll && waitForChanges(children, req)) {
+					// the request is dispatched again as soon as something has changed
 					return;
 				}
 				result.append(renderer.processPage("Home", sitemapName, label, sitemap.getChildren(), async));
@@ -132,9 +140,8 @@ public class WebAppServlet extends BaseServlet {
 						throw new RenderException("Widget '" + w + "' can not have any content");
 					}
 					EList<Widget> children = renderer.getItemUIRegistry().getChildren((LinkableWidget) w);
-					if(poll && waitForChanges(children)==false) {
-						// we have reached the timeout, so we do not return any content as nothing has changed
-						res.getWriter().append(getTimeoutResponse()).close();
+					if(poll && waitForChanges(children, req)) {
+						// the request is dispatched again as soon as something has changed
 						return;
 					}
 					String label = renderer.getItemUIRegistry().getLabel(w);
@@ -165,32 +172,51 @@ public class WebAppServlet extends BaseServlet {
 	}
 
 	/**
-	 * This method only returns when a change has occurred to any item on the page to display
+	 * Suspends a polling request until a change has occurred to any item on the page to display.
+	 * No thread is blocked while the request is suspended; as soon as an item changes, the request
+	 * is resumed and dispatched again, so that the page is rendered. If nothing changes, the
+	 * request is dispatched again as expired after {@link #TIMEOUT_IN_MS}.
 	 * 
 	 * @param widgets the widgets of the page to observe
+	 * @param req the polling request
+	 * @return true, if the request has been suspended, false if it has been resumed by a change
 	 */
-	private boolean waitForChanges(EList<Widget> widgets) {
-		long startTime = (new Date()).getTime();
-		boolean timeout = false;
-		BlockingStateChangeListener listener = new BlockingStateChangeListener();
+	private boolean waitForChanges(EList<Widget> widgets, ServletRequest req) {
+		Continuation continuation = ContinuationSupport.getContinuation(req);
+		if(!continuation.isInitial()) {
+			// the request has been resumed, so a change has occurred
+			return false;
+		}
+		
 		// let's get all items for these widgets
-		Set<GenericItem> items = getAllItems(widgets);
-		for(GenericItem item : items) {			
+		final Set<GenericItem> items = getAllItems(widgets);
+		final ResumingStateChangeListener listener = new ResumingStateChangeListener(continuation);
+		
+		// the items only keep weak references to their listeners, so the continuation 
+		// listener keeps the state change listener alive while the request is suspended 
+		continuation.addContinuationListener(new ContinuationListener() {
+			public void onTimeout(Continuation continuation) {
+				removeListener(items, listener);
+			}
+			
+			public void onComplete(Continuation continuation) {
+				removeListener(items, listener);
+			}
+		});
+		continuation.setTimeout(TIMEOUT_IN_MS);
+		continuation.suspend();
+		
+		// the listeners are added after suspending, as the continuation cannot be resumed before
+		for(GenericItem item : items) {
 			item.addStateChangeListener(listener);
 		}
-		do {
-			timeout = (new Date()).getTime() - startTime > TIMEOUT_IN_MS;
-			try {
-				Thread.sleep(500);
-			} catch (InterruptedException e) {
-				timeout = true;
-				break;
-			}
-		} while(!listener.hasChangeOccurred() && !timeout);
+		return true;
+	}
+	
+	private void removeListener(Set<GenericItem> items, StateChangeListener listener) {
 		for(GenericItem item : items) {
 			item.removeStateChangeListener(listener);
 		}
-		return !timeout;
 	}
 
 	/**
@@ -225,37 +251,45 @@ public class WebAppServlet extends BaseServlet {
 	}
 
 	/**
-	 * This is a state change listener, which is merely used to determine, if a state
-	 * change has occurred on one of a list of items.
+	 * This is a state change listener, which resumes a suspended polling request
+	 * as soon as a state change has occurred on one of a list of items.
 	 * 
 	 * @author Kai Kreuzer
 	 *
 	 */
-	private static class BlockingStateChangeListener implements StateChangeListener {
+	private static class ResumingStateChangeListener implements StateChangeListener {
 		
-		private boolean changed = false;
+		private final Continuation continuation;
+		
+		private final AtomicBoolean resumed = new AtomicBoolean(false);
+		
+		public ResumingStateChangeListener(Continuation continuation) {
+			this.continuation = continuation;
+		}
 		
 		/**
 		 * {@inheritDoc}
 		 */
 		public void stateChanged(Item item, State oldState, State newState) {
-			changed = true;
-		}
-
-		/**
-		 * determines, whether a state change has occurred since its creation
-		 * 
-		 * @return true, if a state has changed
-		 */
-		public boolean hasChangeOccurred() {
-			return changed;
+			resume();
 		}
 
 		/**
 		 * {@inheritDoc}
 		 */
 		public void stateUpdated(Item item, State state) {
-			changed = true;
+			resume();
+		}
+		
+		private void resume() {
+			if(resumed.compareAndSet(false, true)) {
+				try {
+					continuation.resume();
+				} catch(IllegalStateException e) {
+					// the request has already expired
+					logger.debug("Polling request could not be resumed: {}", e.getMessage());
+				}
+			}
 		}
 		
 	}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.internal.chart;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Reduces a time series to the points which are actually visible in a chart of
+ * a given width. The time axis is divided into one bucket per pixel column, and
+ * of all samples falling into a bucket only the first, the last, the smallest and
+ * the largest one are kept (in the order of their timestamps). A line drawn through
+ * the remaining points covers exactly the same pixels as a line through all samples.
+ *
+ * <p>The samples are consumed one by one and only the current bucket is held in
+ * memory, so the memory required does not depend on the number of samples, but only
+ * on the width of the chart (at most four points per column).</p>
+ *
+ * <p>Samples have to be added in ascending order of their timestamps.</p>
+ *
+ * @author Chris Jackson
+ * @since 1.6.0
+ */
+class ChartDataSampler {
+
+	private final long begin;
+	private final long end;
+	private final int columns;
+
+	private final List<Date> xData = new ArrayList<Date>();
+	private final List<Number> yData = new ArrayList<Number>();
+
+	// the column of the current bucket or -1 if no sample has been added yet
+	private int column = -1;
+
+	// the samples of the current bucket
+	private Sample first;
+	private Sample last;
+	private Sample min;
+	private Sample max;
+
+	private int sampleCount = 0;
+
+	/**
+	 * @param begin the start of the time axis
+	 * @param end the end of the time axis
+	 * @param columns the number of pixel columns of the time axis
+	 */
+	ChartDataSampler(Date begin, Date end, int columns) {
+		this.begin = begin.getTime();
+		this.end = Math.max(end.getTime(), this.begin + 1);
+		this.columns = Math.max(columns, 1);
+	}
+
+	/**
+	 * Adds a sample to the time series.
+	 *
+	 * @param time the timestamp of the sample
+	 * @param value the value of the sample
+	 */
+	void add(Date time, double value) {
+		Sample sample = new Sample(time, value);
+		sampleCount++;
+
+		// samples outside of the axis are counted to the first or last column
+		int col = (int) Math.min(Math.max((time.getTime() - begin) * columns / (end - begin), 0), columns - 1);
+		if (col > column) {
+			flush();
+			column = col;
+			first = min = max = sample;
+		}
+		else {
+			if (value < min.value) {
+				min = sample;
+			}
+			if (value > max.value) {
+				max = sample;
+			}
+		}
+		last = sample;
+	}
+
+	/**
+	 * @return the timestamps of the reduced time series
+	 */
+	List<Date> getXData() {
+		flush();
+		return xData;
+	}
+
+	/**
+	 * @return the values of the reduced time series
+	 */
+	List<Number> getYData() {
+		flush();
+		return yData;
+	}
+
+	/**
+	 * @return the number of samples which have been added
+	 */
+	int getSampleCount() {
+		return sampleCount;
+	}
+
+	/**
+	 * Appends the kept samples of the current bucket to the result.
+	 */
+	private void flush() {
+		if (first == null) {
+			return;
+		}
+
+		// min and max are emitted in the order of their timestamps, between first and last
+		Sample low = min.time.before(max.time) ? min : max;
+		Sample high = low == min ? max : min;
+
+		append(first);
+		if (low != first) {
+			append(low);
+		}
+		if (high != first && high != low) {
+			append(high);
+		}
+		if (last != first && last != low && last != high) {
+			append(last);
+		}
+
+		first = last = min = max = null;
+	}
+
+	private void append(Sample sample) {
+		xData.add(sample.time);
+		yData.add(sample.value);
+	}
+
+	private static class Sample {
+		final Date time;
+		final double value;
+
+		Sample(Date time, double value) {
+			this.time = time;
+			this.value = value;
+		}
+	}
+
+}
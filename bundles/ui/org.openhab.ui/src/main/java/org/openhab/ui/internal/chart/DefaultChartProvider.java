@@ -181,7 +181,7 @@ public class DefaultChartProvider implements ChartProvider {
 			String[] itemNames = items.split(",");
 			for (String itemName : itemNames) {
 				Item item = itemUIRegistry.getItem(itemName);
-				if(addItem(chart, persistenceService, startTime, endTime, item, seriesCounter))
+				if(addItem(chart, persistenceService, startTime, endTime, item, seriesCounter, width))
 					seriesCounter++;
 			}
 		}
@@ -194,7 +194,7 @@ public class DefaultChartProvider implements ChartProvider {
 				if (item instanceof GroupItem) {
 					GroupItem groupItem = (GroupItem) item;
 					for (Item member : groupItem.getMembers()) {
-						if(addItem(chart, persistenceService, startTime, endTime, member, seriesCounter))
+						if(addItem(chart, persistenceService, startTime, endTime, member, seriesCounter, width))
 							seriesCounter++;
 					}
 				} else {
@@ -260,7 +260,7 @@ public class DefaultChartProvider implements ChartProvider {
 	}
 
 	boolean addItem(Chart chart, QueryablePersistenceService service, Date timeBegin, Date timeEnd, Item item,
-			int seriesCounter) {
+			int seriesCounter, int width) {
 		Color color = LINECOLORS[seriesCounter % LINECOLORS.length];
 
 		// Get the item label
@@ -279,9 +279,8 @@ public class DefaultChartProvider implements ChartProvider {
 		Iterable<HistoricItem> result;
 		FilterCriteria filter;
 
-		// Generate data collections
-		Collection<Date> xData = new ArrayList<Date>();
-		Collection<Number> yData = new ArrayList<Number>();
+		// Collect the data - only the points which are visible at the width of the chart are kept
+		ChartDataSampler sampler = new ChartDataSampler(timeBegin, timeEnd, width);
 		
 		// Declare state here so it will hold the last value at the end of the process
 		org.openhab.core.types.State state = null;
@@ -299,8 +298,7 @@ public class DefaultChartProvider implements ChartProvider {
 			HistoricItem historicItem = result.iterator().next();
 
 			state = historicItem.getState();
-			xData.add(timeBegin);
-			yData.add(convertData(state));
+			sampler.add(timeBegin, convertData(state));
 		}
 
 		// Now, get all the data between the start and end time
@@ -310,6 +308,7 @@ public class DefaultChartProvider implements ChartProvider {
 		filter.setOrdering(Ordering.ASCENDING);
 		
 		// Get the data from the persistence store
+		// The result is streamed through the sampler, so it is never held in memory as a whole
 		result = service.query(filter);
 		Iterator<HistoricItem> it = result.iterator();
 
@@ -323,21 +322,23 @@ public class DefaultChartProvider implements ChartProvider {
 				Calendar cal = Calendar.getInstance();
 				cal.setTime(historicItem.getTimestamp());
 				cal.add(Calendar.MILLISECOND, -1);
-				xData.add(cal.getTime());
-				yData.add(convertData(state));
+				sampler.add(cal.getTime(), convertData(state));
 			}
 
 			state = historicItem.getState();
-			xData.add(historicItem.getTimestamp());
-			yData.add(convertData(state));
+			sampler.add(historicItem.getTimestamp(), convertData(state));
 		}
 
 		// Lastly, add the final state at the endtime
 		if (state != null) {
-			xData.add(timeEnd);
-			yData.add(convertData(state));
+			sampler.add(timeEnd, convertData(state));
 		}
 
+		Collection<Date> xData = sampler.getXData();
+		Collection<Number> yData = sampler.getYData();
+		logger.trace("Reduced {} samples of item '{}' to {} points", new Object[] { sampler.getSampleCount(),
+				item.getName(), xData.size() });
+
 		// Add the new series to the chart - only if there's data elements to display
 		// The chart engine will throw an exception if there's no data
 		if(xData.size() == 0) {
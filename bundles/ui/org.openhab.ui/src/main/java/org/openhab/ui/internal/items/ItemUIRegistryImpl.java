@@ -42,6 +42,9 @@ import org.openhab.core.transform.TransformationService;
 import org.openhab.core.types.State;
 import org.openhab.core.types.Type;
 import org.openhab.core.types.UnDefType;
+import org.openhab.model.core.EventType;
+import org.openhab.model.core.ModelRepository;
+import org.openhab.model.core.ModelRepositoryChangeListener;
 import org.openhab.model.sitemap.ColorArray;
 import org.openhab.model.sitemap.Group;
 import org.openhab.model.sitemap.LinkableWidget;
@@ -51,6 +54,8 @@ import org.openhab.model.sitemap.Slider;
 import org.openhab.model.sitemap.VisibilityRule;
 import org.openhab.model.sitemap.Widget;
 import org.openhab.ui.internal.UIActivator;
+import org.openhab.ui.internal.items.SitemapCache.CachedWidget;
+import org.openhab.ui.internal.items.SitemapCache.LabelTemplate;
 import org.openhab.ui.items.ItemUIProvider;
 import org.openhab.ui.items.ItemUIRegistry;
 import org.slf4j.Logger;
@@ -61,12 +66,17 @@ import org.slf4j.LoggerFactory;
  * single method call, i.e. the consumer does not need to iterate over all
  * registered providers as this is done inside this class.
  * 
+ * As long as a {@link ModelRepository} is available, the ids, label templates and
+ * icon names of the widgets of the sitemaps are cached, so that rendering a page only
+ * needs to evaluate the current item states. The cache is cleared whenever a sitemap,
+ * an item model or the set of item ui providers changes.
+ * 
  * @author Kai Kreuzer
  * @author Chris Jackson
  * @since 0.2.0
  *
  */
-public class ItemUIRegistryImpl implements ItemUIRegistry {
+public class ItemUIRegistryImpl implements ItemUIRegistry, ModelRepositoryChangeListener {
 	
 	private static final String ICON_NONE = "none";
 
@@ -88,6 +98,11 @@ public class ItemUIRegistryImpl implements ItemUIRegistry {
 
 	protected ItemRegistry itemRegistry;
 
+	protected ModelRepository modelRepository;
+
+	/* the static parts of the sitemap widgets; only used while the model repository is available */
+	private final SitemapCache sitemapCache = new SitemapCache();
+
 	public ItemUIRegistryImpl() {}
 
 	public void setItemRegistry(ItemRegistry itemRegistry) {
@@ -98,12 +113,35 @@ public class ItemUIRegistryImpl implements ItemUIRegistry {
 		this.itemRegistry = null;
 	}
 
+	public void setModelRepository(ModelRepository modelRepository) {
+		this.modelRepository = modelRepository;
+		modelRepository.addModelRepositoryChangeListener(this);
+	}
+
+	public void unsetModelRepository(ModelRepository modelRepository) {
+		modelRepository.removeModelRepositoryChangeListener(this);
+		this.modelRepository = null;
+		sitemapCache.clear();
+	}
+
 	public void addItemUIProvider(ItemUIProvider itemUIProvider) {
 		itemUIProviders.add(itemUIProvider);
+		sitemapCache.clear();
 	}
 
 	public void removeItemUIProvider(ItemUIProvider itemUIProvider) {
 		itemUIProviders.remove(itemUIProvider);
+		sitemapCache.clear();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void modelChanged(String modelName, EventType type) {
+		// labels and icons can be defined in sitemaps as well as in item models
+		if(modelName.endsWith(".sitemap") || modelName.endsWith(".items")) {
+			sitemapCache.clear();
+		}
 	}
 
 	/**
@@ -211,26 +249,19 @@ public class ItemUIRegistryImpl implements ItemUIRegistry {
 	 * {@inheritDoc}
 	 */
 	public String getLabel(Widget w) {
-		String label = getLabelFromWidget(w);
+		LabelTemplate template = getLabelTemplate(w);
+		String label = template.label;
 		
 		// now insert the value, if the state is a string or decimal value and there is some formatting pattern defined in the label 
 		// (i.e. it contains at least a %)
 		String itemName = w.getItem();
-		if(itemName!=null && label.contains("[")) {
-			
-			int indexOpenBracket = label.indexOf("[");
-			int indexCloseBracket = label.indexOf("]");
+		if(itemName!=null && template.prefix!=null) {
 			
 			State state = null;
-			String formatPattern = label.substring(indexOpenBracket + 1, indexCloseBracket);
+			String formatPattern = template.formatPattern;
 			try {
 				Item item = getItem(itemName);
-				// TODO: TEE: we should find a more generic solution here! When
-				// using indexes in formatString this 'contains' will fail again
-				// and will cause an 'java.util.IllegalFormatConversionException:
-				// d != java.lang.String' later on when trying to format a String
-				// as %d (number).
-				if (label.contains("%d")) {
+				if (template.decimal) {
 					// a number is requested
 					state = item.getState();
 					if(!(state instanceof DecimalType)) {
@@ -244,7 +275,10 @@ public class ItemUIRegistryImpl implements ItemUIRegistry {
 			}
 
 			if (state==null || state instanceof UnDefType) {
-				formatPattern = formatUndefined(formatPattern);
+				if(template.undefinedValue==null) {
+					template.undefinedValue = formatUndefined(formatPattern);
+				}
+				formatPattern = template.undefinedValue;
 			} else if (state instanceof Type) {
 				// The following exception handling has been added to work around a Java bug with formatting
 				// numbers. See http://bugs.sun.com/view_bug.do?bug_id=6476425
@@ -261,7 +295,7 @@ public class ItemUIRegistryImpl implements ItemUIRegistry {
 				}
 			}
 
-			label = label.substring(0, indexOpenBracket + 1) + formatPattern + label.substring(indexCloseBracket);
+			label = template.prefix + formatPattern + template.suffix;
 		}
 		
 		label = transform(label);
@@ -269,6 +303,37 @@ public class ItemUIRegistryImpl implements ItemUIRegistry {
 		return label;
 	}
 
+	private LabelTemplate getLabelTemplate(Widget w) {
+		CachedWidget cachedWidget = getCachedWidget(w);
+		if(cachedWidget!=null && cachedWidget.label!=null) {
+			return cachedWidget.label;
+		}
+
+		LabelTemplate template;
+		String label = getLabelFromWidget(w);
+		if(w.getItem()!=null && label.contains("[")) {
+			int indexOpenBracket = label.indexOf("[");
+			int indexCloseBracket = label.indexOf("]");
+			template = new LabelTemplate(label, 
+					label.substring(0, indexOpenBracket + 1), 
+					label.substring(indexOpenBracket + 1, indexCloseBracket), 
+					label.substring(indexCloseBracket),
+					// TODO: TEE: we should find a more generic solution here! When
+					// using indexes in formatString this 'contains' will fail again
+					// and will cause an 'java.util.IllegalFormatConversionException:
+					// d != java.lang.String' later on when trying to format a String
+					// as %d (number).
+					label.contains("%d"));
+		} else {
+			template = new LabelTemplate(label);
+		}
+
+		if(cachedWidget!=null) {
+			cachedWidget.label = template;
+		}
+		return template;
+	}
+
 	private String getLabelFromWidget(Widget w) {
 		String label = null;
 		if (w.getLabel() != null) {
@@ -344,22 +409,7 @@ public class ItemUIRegistryImpl implements ItemUIRegistry {
 	 * {@inheritDoc}
 	 */
 	public String getIcon(Widget w) {
-		String widgetTypeName = w.eClass().getInstanceTypeName().substring(w.eClass().getInstanceTypeName().lastIndexOf(".")+1);
-		
-		// the default is the widget type name, e.g. "switch"
-		String icon = widgetTypeName.toLowerCase();
-		
-		// if an icon is defined for the widget, use it
-		if(w.getIcon()!=null) {
-			icon = w.getIcon();
-		} else {
-			// otherwise check if any item ui provider provides an icon for this item			
-			String itemName = w.getItem();
-			if(itemName!=null) {
-				String result = getIcon(itemName);
-				if(result!=null) icon = result;
-			}
-		}
+		String icon = getIconFromWidget(w);
 
 		// now add the state, if the string does not already contain a state
 		// information
@@ -398,6 +448,35 @@ public class ItemUIRegistryImpl implements ItemUIRegistry {
 		}
 	}
 
+	private String getIconFromWidget(Widget w) {
+		CachedWidget cachedWidget = getCachedWidget(w);
+		if(cachedWidget!=null && cachedWidget.icon!=null) {
+			return cachedWidget.icon;
+		}
+
+		String widgetTypeName = w.eClass().getInstanceTypeName().substring(w.eClass().getInstanceTypeName().lastIndexOf(".")+1);
+		
+		// the default is the widget type name, e.g. "switch"
+		String icon = widgetTypeName.toLowerCase();
+		
+		// if an icon is defined for the widget, use it
+		if(w.getIcon()!=null) {
+			icon = w.getIcon();
+		} else {
+			// otherwise check if any item ui provider provides an icon for this item			
+			String itemName = w.getItem();
+			if(itemName!=null) {
+				String result = getIcon(itemName);
+				if(result!=null) icon = result;
+			}
+		}
+
+		if(cachedWidget!=null) {
+			cachedWidget.icon = icon;
+		}
+		return icon;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -598,6 +677,11 @@ public class ItemUIRegistryImpl implements ItemUIRegistry {
 	 * {@inheritDoc}
 	 */
 	public String getWidgetId(Widget w) {
+		CachedWidget cachedWidget = getCachedWidget(w);
+		if(cachedWidget!=null) {
+			return cachedWidget.id;
+		}
+
 		String id = "";
 		while(w.eContainer() instanceof Widget) {
 			Widget parent = (Widget) w.eContainer();
@@ -622,6 +706,11 @@ public class ItemUIRegistryImpl implements ItemUIRegistry {
 		return id;
 	}
 
+	private CachedWidget getCachedWidget(Widget w) {
+		// without the model repository, we would not notice if a sitemap is reloaded
+		return modelRepository!=null ? sitemapCache.get(w) : null;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2010-2014, openHAB.org and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.ui.internal.items;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.ecore.EObject;
+import org.openhab.model.sitemap.LinkableWidget;
+import org.openhab.model.sitemap.Sitemap;
+import org.openhab.model.sitemap.Widget;
+
+/**
+ * This class caches those parts of the widgets of a sitemap, which do not depend on
+ * the state of any item. When a widget of a sitemap is accessed for the first time,
+ * the ids of all widgets of this sitemap are computed in a single pass instead of
+ * searching each widget in the children of its parents. The label templates and icon
+ * names are then added per widget when they are needed.
+ *
+ * Widgets which are not contained in a sitemap (e.g. the dynamically created children
+ * of a group) are not cached. The cache has to be cleared whenever a sitemap or an
+ * item ui provider changes.
+ *
+ * @author Kai Kreuzer
+ * @since 1.6.0
+ *
+ */
+class SitemapCache {
+
+	private final Map<Sitemap, Map<Widget, CachedWidget>> sitemaps = new IdentityHashMap<Sitemap, Map<Widget, CachedWidget>>();
+
+	/**
+	 * Returns the cached data of a widget.
+	 *
+	 * @param w the widget to get the cached data for
+	 * @return the cached data or <code>null</code>, if the widget is not part of a sitemap
+	 */
+	public synchronized CachedWidget get(Widget w) {
+		EObject root = w.eContainer();
+		while(root!=null && !(root instanceof Sitemap)) {
+			root = root.eContainer();
+		}
+		if(root==null) {
+			return null;
+		}
+		Sitemap sitemap = (Sitemap) root;
+		Map<Widget, CachedWidget> widgets = sitemaps.get(sitemap);
+		if(widgets==null) {
+			widgets = new IdentityHashMap<Widget, CachedWidget>();
+			addWidgets(widgets, sitemap.getChildren(), "");
+			sitemaps.put(sitemap, widgets);
+		}
+		return widgets.get(w);
+	}
+
+	/**
+	 * Removes all cached data.
+	 */
+	public synchronized void clear() {
+		sitemaps.clear();
+	}
+
+	private static void addWidgets(Map<Widget, CachedWidget> widgets, List<Widget> children, String parentId) {
+		for(int i = 0; i < children.size(); i++) {
+			Widget child = children.get(i);
+			String index = String.valueOf(i);
+			if(index.length()==1) index = "0" + index; // make it two digits
+			String id = parentId + index;
+			widgets.put(child, new CachedWidget(id));
+			if(child instanceof LinkableWidget) {
+				addWidgets(widgets, ((LinkableWidget) child).getChildren(), id);
+			}
+		}
+	}
+
+	/**
+	 * The cached data of a single widget.
+	 */
+	static class CachedWidget {
+
+		final String id;
+
+		volatile LabelTemplate label;
+
+		volatile String icon;
+
+		CachedWidget(String id) {
+			this.id = id;
+		}
+	}
+
+	/**
+	 * The label of a widget, which is split around the format pattern for the item state.
+	 */
+	static class LabelTemplate {
+
+		/** the complete label as defined for the widget or its item */
+		final String label;
+
+		/** the label up to and including the opening bracket, or <code>null</code> if there is no format pattern */
+		final String prefix;
+
+		/** the format pattern between the brackets */
+		final String formatPattern;
+
+		/** the label starting with the closing bracket */
+		final String suffix;
+
+		/** whether the format pattern requests a number */
+		final boolean decimal;
+
+		/** the formatted value if the item state is undefined; it is set when it is needed for the first time */
+		volatile String undefinedValue;
+
+		LabelTemplate(String label) {
+			this.label = label;
+			this.prefix = null;
+			this.formatPattern = null;
+			this.suffix = null;
+			this.decimal = false;
+		}
+
+		LabelTemplate(String label, String prefix, String formatPattern, String suffix, boolean decimal) {
+			this.label = label;
+			this.prefix = prefix;
+			this.formatPattern = formatPattern;
+			this.suffix = suffix;
+			this.decimal = decimal;
+		}
+	}
+
+}